@@ -1,9 +1,18 @@
 package com.dangdang.config.face.controller;
 
+import com.dangdang.config.face.entity.CloneProgress;
 import com.dangdang.config.face.entity.CommonResponse;
+import com.dangdang.config.face.entity.GroupDiff;
+import com.dangdang.config.face.entity.OperationResult;
 import com.dangdang.config.face.entity.PropertyItem;
 import com.dangdang.config.face.entity.PropertyItemVO;
+import com.dangdang.config.face.entity.PropertyOperation;
+import com.dangdang.config.face.entity.SearchResult;
 import com.dangdang.config.face.service.NodeService;
+import com.dangdang.config.face.service.SearchService;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Charsets;
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
@@ -12,6 +21,7 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
 import org.apache.commons.io.IOUtils;
@@ -22,21 +32,35 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.ByteArrayOutputStream;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -47,15 +71,46 @@ public class IndexController {
     @Autowired
     private NodeService nodeService;
 
+    @Autowired
+    private SearchService searchService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     private static final String ZIP = ".zip";
     private static final String PROPERTIES = ".properties";
     /**
      * 表示为配置项注释信息，加在版本号后面
      */
     private static final String COMMENT_SUFFIX = "$";
+    /**
+     * 暂存修改的根节点, 在所有配置根节点之外, 客户端不会监听
+     */
+    private static final String STAGING_ROOT = "/config-face/staging";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(IndexController.class);
 
+    /**
+     * 目标版本节点 -> 正在进行的克隆进度
+     */
+    private final ConcurrentMap<String, CloneProgress> clones = Maps.newConcurrentMap();
+
+    /**
+     * 导出版本时预先读取的配置组数
+     */
+    private static final int EXPORT_PREFETCH = 4;
+
+    /**
+     * 搜索时每页的最大数量
+     */
+    private static final int MAX_SEARCH_SIZE = 200;
+
+    /**
+     * 导出和比较版本时读取配置组的线程, 所有请求共用
+     */
+    private final ExecutorService exportExecutor = Executors.newFixedThreadPool(EXPORT_PREFETCH,
+            new ThreadFactoryBuilder().setNameFormat("config-face-export-%d").setDaemon(true).build());
+
     @RequestMapping(value = {"", "/config-web"}, method = RequestMethod.GET)
     public String index() {
         return "redirect:/version";
@@ -65,7 +120,8 @@ public class IndexController {
      * 首页界面
      */
     @GetMapping(value = {"/version", "/version/{version:.+}"})
-    public ModelAndView rootNode(@PathVariable(required = false) String version) {
+    public ModelAndView rootNode(@PathVariable(required = false) String version,
+                                 @RequestParam(required = false) String failedGroups) {
         final String root = getRoot();
 
         //过滤掉配置项的注释信息，返回所有版本信息
@@ -81,6 +137,7 @@ public class IndexController {
         mv.addObject("root", root);
         mv.addObject("versions", versions);
         mv.addObject("theVersion", theVersion);
+        mv.addObject("failedGroups", failedGroups);
 
         //查询的版本在所有版本信息中，返回此版本的分组信息
         if (Iterables.contains(versions, theVersion)) {
@@ -102,6 +159,7 @@ public class IndexController {
         final ModelAndView mv = new ModelAndView("data", "items", items);
         mv.addObject("version", version);
         mv.addObject("group", group);
+        mv.addObject("staged", nodeService.findStagedOperations(makeStagingPath(getRoot(), version, group)));
 
         return mv;
     }
@@ -148,7 +206,7 @@ public class IndexController {
 
         final String groupPath = makePaths(root, version, newGroup);
 
-        nodeService.createProperty(groupPath);
+        nodeService.createGroup(groupPath);
 
         return new ModelAndView("redirect:/version/" + version);
     }
@@ -175,8 +233,16 @@ public class IndexController {
                 nodeService.createProperty(versionNode + COMMENT_SUFFIX);
                 if (!Strings.isNullOrEmpty(fromVersion)) {
                     final String fromVersionNode = makePaths(root, fromVersion);
-                    cloneVersion(fromVersionNode, versionNode);
-                    cloneVersion(fromVersionNode + COMMENT_SUFFIX, versionNode + COMMENT_SUFFIX);
+                    final CloneProgress progress = new CloneProgress();
+                    clones.put(versionNode, progress);
+                    try {
+                        if (!nodeService.cloneGroups(fromVersionNode, versionNode, true, progress)
+                                || !nodeService.cloneGroups(fromVersionNode + COMMENT_SUFFIX, versionNode + COMMENT_SUFFIX, false, progress)) {
+                            return new CommonResponse<>(false, null, "Clone failed: " + progress);
+                        }
+                    } finally {
+                        clones.remove(versionNode);
+                    }
                 }
 
                 return new CommonResponse<>(true, "/version/" + version, null);
@@ -187,24 +253,27 @@ public class IndexController {
     }
 
     /**
-     * 把sourceVersionPath节点的子节点信息拷贝至destinationVersionPath
+     * 查询正在进行的版本克隆进度
      */
-    private void cloneVersion(String sourceVersionPath, String destinationVersionPath) {
-        List<String> sourceGroups = nodeService.listChildren(sourceVersionPath);
-        if (sourceGroups != null) {
-            for (String sourceGroup : sourceGroups) {
-                String sourceGroupFullPath = makePaths(sourceVersionPath, sourceGroup);
-                String destinationGroupFullPath = makePaths(destinationVersionPath, sourceGroup);
+    @GetMapping(value = "/version/{version}/progress")
+    public @ResponseBody
+    CommonResponse<CloneProgress> cloneProgress(@PathVariable String version) {
+        final CloneProgress progress = clones.get(makePaths(getRoot(), StringUtils.trim(version)));
+        return new CommonResponse<>(progress != null, progress, null);
+    }
 
-                nodeService.createProperty(destinationGroupFullPath, null);
-                List<PropertyItem> sourceProperties = nodeService.findProperties(sourceGroupFullPath);
-                if (sourceProperties != null) {
-                    for (PropertyItem sourceProperty : sourceProperties) {
-                        nodeService.createProperty(makePaths(destinationGroupFullPath, sourceProperty.getName()), sourceProperty.getValue());
-                    }
-                }
-            }
+    /**
+     * 搜索当前根节点下所有版本的配置项, 匹配key或值
+     */
+    @GetMapping(value = "/search")
+    public @ResponseBody
+    CommonResponse<SearchResult> search(@RequestParam String q, @RequestParam(defaultValue = "0") int page,
+                                        @RequestParam(defaultValue = "20") int size) {
+        if (StringUtils.isBlank(q) || page < 0 || size < 1 || size > MAX_SEARCH_SIZE) {
+            return new CommonResponse<>(false, null, "Invalid Args");
         }
+        final SearchResult result = searchService.search(getRoot(), q, page, size);
+        return new CommonResponse<>(true, result, result.isReady() ? null : "Index is being built, results may be incomplete.");
     }
 
     /**
@@ -224,8 +293,8 @@ public class IndexController {
 
         final String root = getRoot();
 
-        final String propPath = makePaths(root, version, group, key);
-        final boolean suc = nodeService.createProperty(propPath, value);
+        final String groupPath = makePaths(root, version, group);
+        final boolean suc = nodeService.applyGroupOperations(groupPath, Lists.newArrayList(PropertyOperation.create(key, value)));
 
         if (suc) {
             if (!Strings.isNullOrEmpty(comment)) {
@@ -245,9 +314,10 @@ public class IndexController {
      */
     @PutMapping(value = "/prop")
     public @ResponseBody
-    CommonResponse<Object> updateProp(String version, String group, String key, String value, String comment) {
-        LOGGER.debug("Update property version: {}, group: {}, key: {}, value: {}, comment: {}",
-                version, group, key, value, comment);
+    CommonResponse<Object> updateProp(String version, String group, String key, String value, String comment,
+                                      @RequestParam(defaultValue = "-1") int dataVersion) {
+        LOGGER.debug("Update property version: {}, group: {}, key: {}, value: {}, comment: {}, data version: {}",
+                version, group, key, value, comment, dataVersion);
 
         version = StringUtils.trim(version);
         group = StringUtils.trim(group);
@@ -257,15 +327,17 @@ public class IndexController {
 
         final String root = getRoot();
 
-        final String propPath = makePaths(root, version, group, key);
+        final String groupPath = makePaths(root, version, group);
         final String commentPath = makePaths(root, version + COMMENT_SUFFIX, group, key);
 
-        nodeService.updateProperty(propPath, value);
+        //页面打开后配置项已被其他人修改时不覆盖
+        final boolean suc = nodeService.applyGroupOperations(groupPath, Lists.newArrayList(PropertyOperation.update(key, value, dataVersion)));
+        if (!suc) {
+            return new CommonResponse<>(false, null, "Update failed, the property may have been modified by others, please refresh.");
+        }
         nodeService.updateProperty(commentPath, comment);
 
         return new CommonResponse<>(true, null, null);
-
-
     }
 
     /**
@@ -278,12 +350,166 @@ public class IndexController {
 
         final String root = getRoot();
 
-        final String propPath = makePaths(root, version, group, key);
+        final String groupPath = makePaths(root, version, group);
+
+        nodeService.applyGroupOperations(groupPath, Lists.newArrayList(PropertyOperation.delete(key)));
+
+        return new CommonResponse<>(true, null, null);
+
+    }
+
+    /**
+     * 暂存配置项的修改, 发布前不写入配置组
+     * @param dataVersion 修改时配置项的数据版本, 发布时不一致则发布失败; -1表示不检查
+     */
+    @PostMapping(value = "/stage")
+    public @ResponseBody
+    CommonResponse<Object> stageProp(String version, String group, String key, String value, String comment,
+                                     @RequestParam PropertyOperation.Type type, @RequestParam(defaultValue = "-1") int dataVersion) {
+        LOGGER.debug("Stage property version: {}, group: {}, key: {}, value: {}, comment: {}, type: {}, data version: {}",
+                version, group, key, value, comment, type, dataVersion);
+
+        version = StringUtils.trim(version);
+        group = StringUtils.trim(group);
+        key = StringUtils.trim(key);
+        if (StringUtils.isAnyBlank(version, group, key)) {
+            return new CommonResponse<>(false, null, "Invalid Args");
+        }
+
+        final PropertyOperation operation = new PropertyOperation(type, key, StringUtils.trim(value));
+        operation.setComment(StringUtils.trimToNull(comment));
+        operation.setExpectedVersion(dataVersion);
+        if (!nodeService.stageOperation(makeStagingPath(getRoot(), version, group), operation)) {
+            return new CommonResponse<>(false, null, "Stage failed, too many staged changes?");
+        }
+        return new CommonResponse<>(true, null, null);
+    }
+
+    /**
+     * 在一个事务中发布配置组暂存的修改, 客户端只重新加载一次
+     */
+    @PostMapping(value = "/stage/{version}/{group:.+}")
+    public @ResponseBody
+    CommonResponse<Object> publishStaged(@PathVariable String version, @PathVariable String group) {
+        final String root = getRoot();
+
+        final List<PropertyOperation> published = nodeService.publishStaged(makeStagingPath(root, version, group),
+                makePaths(root, version, group));
+        if (published == null) {
+            return new CommonResponse<>(false, null, "Publish failed, the properties or staged changes may have been modified by others, please refresh.");
+        }
 
-        nodeService.deleteProperty(propPath);
+        final List<PropertyOperation> commentOperations = Lists.newArrayList();
+        for (PropertyOperation operation : published) {
+            if (operation.getType() == PropertyOperation.Type.DELETE) {
+                commentOperations.add(PropertyOperation.delete(operation.getKey()));
+            } else if (operation.getComment() != null) {
+                commentOperations.add(PropertyOperation.update(operation.getKey(), operation.getComment()));
+            }
+        }
+        if (!commentOperations.isEmpty()) {
+            nodeService.applyOperations(makePaths(root, version + COMMENT_SUFFIX, group), commentOperations);
+        }
+        return new CommonResponse<>(true, published.size(), null);
+    }
 
+    /**
+     * 放弃配置组暂存的修改
+     */
+    @DeleteMapping(value = "/stage/{version}/{group:.+}")
+    public @ResponseBody
+    CommonResponse<Object> discardStaged(@PathVariable String version, @PathVariable String group) {
+        nodeService.deleteProperty(makeStagingPath(getRoot(), version, group));
         return new CommonResponse<>(true, null, null);
+    }
+
+    private String makeStagingPath(String root, String version, String group) {
+        return makePaths(STAGING_ROOT + root, version, group);
+    }
+
+    /**
+     * 批量修改配置组, 按顺序分批在事务中提交, 返回每个操作的结果
+     */
+    @PostMapping(value = "/batch/{version}/{group:.+}")
+    public @ResponseBody
+    CommonResponse<List<OperationResult>> batchGroup(@PathVariable String version, @PathVariable String group,
+                                                     @RequestBody List<PropertyOperation> operations) {
+        final String root = getRoot();
+        if (!isValidBatch(group, operations)) {
+            return new CommonResponse<>(false, null, "Invalid Args");
+        }
+        if (nodeService.listChildren(makePaths(root, version)) == null) {
+            return new CommonResponse<>(false, null, "Version not found");
+        }
+        return new CommonResponse<>(true, batchOperations(root, version, group, operations), null);
+    }
+
+    /**
+     * 批量修改版本下的多个配置组
+     * @param operations 配置组 -> 修改操作
+     */
+    @PostMapping(value = "/batch/{version:.+}")
+    public @ResponseBody
+    CommonResponse<Map<String, List<OperationResult>>> batchVersion(@PathVariable String version,
+                                                                    @RequestBody Map<String, List<PropertyOperation>> operations) {
+        final String root = getRoot();
+        for (Map.Entry<String, List<PropertyOperation>> entry : operations.entrySet()) {
+            if (!isValidBatch(entry.getKey(), entry.getValue())) {
+                return new CommonResponse<>(false, null, "Invalid Args");
+            }
+        }
+        if (nodeService.listChildren(makePaths(root, version)) == null) {
+            return new CommonResponse<>(false, null, "Version not found");
+        }
+
+        final Map<String, List<OperationResult>> results = Maps.newLinkedHashMap();
+        for (Map.Entry<String, List<PropertyOperation>> entry : operations.entrySet()) {
+            results.put(entry.getKey(), batchOperations(root, version, entry.getKey(), entry.getValue()));
+        }
+        return new CommonResponse<>(true, results, null);
+    }
 
+    private boolean isValidBatch(String group, List<PropertyOperation> operations) {
+        if (StringUtils.isBlank(group) || StringUtils.contains(group, '/') || operations == null) {
+            return false;
+        }
+        for (PropertyOperation operation : operations) {
+            if (operation == null || operation.getType() == null || StringUtils.isBlank(operation.getKey())
+                    || StringUtils.contains(operation.getKey(), '/')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 成功的操作的注释另外批量写入注释节点
+     */
+    private List<OperationResult> batchOperations(String root, String version, String group, List<PropertyOperation> operations) {
+        final List<PropertyOperation> dataOperations = Lists.newArrayListWithCapacity(operations.size());
+        for (PropertyOperation operation : operations) {
+            final PropertyOperation dataOperation = new PropertyOperation(operation.getType(), operation.getKey(), operation.getValue());
+            dataOperation.setExpectedVersion(operation.getExpectedVersion());
+            dataOperations.add(dataOperation);
+        }
+        final List<OperationResult> results = nodeService.batchGroupOperations(makePaths(root, version, group), dataOperations);
+
+        final List<PropertyOperation> commentOperations = Lists.newArrayList();
+        for (int i = 0; i < operations.size(); i++) {
+            final PropertyOperation operation = operations.get(i);
+            if (!results.get(i).isSuccess()) {
+                continue;
+            }
+            if (operation.getType() == PropertyOperation.Type.DELETE) {
+                commentOperations.add(PropertyOperation.delete(operation.getKey()));
+            } else if (operation.getComment() != null) {
+                commentOperations.add(PropertyOperation.update(operation.getKey(), operation.getComment()));
+            }
+        }
+        if (!commentOperations.isEmpty()) {
+            nodeService.applyOperations(makePaths(root, version + COMMENT_SUFFIX, group), commentOperations);
+        }
+        return results;
     }
 
     /**
@@ -305,7 +531,10 @@ public class IndexController {
         final String root = getRoot();
         final String versionPath = makePaths(root, version, group);
 
-        nodeService.deleteProperty(versionPath);
+        if (!nodeService.deleteGroup(versionPath)) {
+            return new CommonResponse<>(false, null, "Delete failed, properties were added concurrently, please retry.");
+        }
+        nodeService.deleteProperty(makeStagingPath(root, version, group));
 
         return new CommonResponse<>(true, null, null);
     }
@@ -323,59 +552,176 @@ public class IndexController {
         return path;
     }
 
-    @GetMapping(value = {"/export/{version:.+}", "/export/{version}/{group:.+}"})
+    /**
+     * 导出配置组
+     */
+    @GetMapping(value = "/export/{version}/{group:.+}")
     public @ResponseBody
-    HttpEntity<byte[]> exportData(@PathVariable String version, @PathVariable(required = false) String group) {
+    HttpEntity<byte[]> exportData(@PathVariable String version, @PathVariable String group) {
+        final String root = getRoot();
+
+        final List<PropertyItemVO> items = getItems(root, version, group);
+        final List<String> lines = formatPropertyLines(root, version, group, items);
+
+        byte[] document = Joiner.on("\r\n").join(lines).getBytes();
+        HttpHeaders header = new HttpHeaders();
+        header.setContentType(new MediaType("application", "properties"));
+        header.set("Content-Disposition", "inline; filename=" + group + ".property");
+        header.setContentLength(document.length);
+        return new HttpEntity<>(document, header);
+    }
+
+    /**
+     * 导出版本, zip直接写入响应流, 后续的配置组在后台预先读取
+     */
+    @GetMapping(value = "/export/{version:.+}")
+    public ResponseEntity<StreamingResponseBody> exportVersion(@PathVariable String version) {
+        //响应流在其他线程写入, 需要先取出当前用户
+        final String root = getRoot();
+
+        final List<String> groups = nodeService.listChildren(makePaths(root, version));
+        if (groups == null || groups.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        HttpHeaders header = new HttpHeaders();
+        header.setContentType(new MediaType("application", "zip"));
+        header.set("Content-Disposition", "inline; filename=" + StringUtils.replace(root, "/", "-") + ZIP);
+        return new ResponseEntity<>(out -> writeVersion(root, version, groups, out), header, HttpStatus.OK);
+    }
+
+    /**
+     * 按顺序写入各配置组, 最多预先读取{@link #EXPORT_PREFETCH}个配置组, 内存占用与版本大小无关
+     */
+    private void writeVersion(String root, String version, List<String> groups, OutputStream out) throws IOException {
+        final Deque<Future<List<String>>> prefetched = new ArrayDeque<>();
+        final Iterator<String> toFetch = groups.iterator();
+        try {
+            while (prefetched.size() < EXPORT_PREFETCH && toFetch.hasNext()) {
+                prefetched.add(prefetch(root, version, toFetch.next()));
+            }
+
+            // 不关闭响应流, 由容器处理
+            final ZipOutputStream zipOutputStream = new ZipOutputStream(out);
+            for (String groupName : groups) {
+                final List<String> lines = prefetched.poll().get();
+                if (toFetch.hasNext()) {
+                    prefetched.add(prefetch(root, version, toFetch.next()));
+                }
+
+                zipOutputStream.putNextEntry(new ZipEntry(groupName + PROPERTIES));
+                IOUtils.writeLines(lines, "\r\n", zipOutputStream, Charsets.UTF_8.displayName());
+                zipOutputStream.closeEntry();
+            }
+            zipOutputStream.finish();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            for (Future<List<String>> future : prefetched) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private Future<List<String>> prefetch(String root, String version, String group) {
+        return exportExecutor.submit(() -> formatPropertyLines(root, version, group, getItems(root, version, group)));
+    }
+
+    /**
+     * 比较两个版本, 按配置组名称顺序流式输出新增、删除和修改的配置项
+     * @param from 原版本
+     * @param to 新版本
+     * @param group 只比较指定的配置组, 为空时比较所有配置组
+     */
+    @GetMapping(value = "/diff")
+    public ResponseEntity<StreamingResponseBody> diffVersions(@RequestParam String from, @RequestParam String to,
+                                                              @RequestParam(required = false) String group) {
+        //响应流在其他线程写入, 需要先取出当前用户
         final String root = getRoot();
 
-        if (!Strings.isNullOrEmpty(group)) {
-            //export group
-            final List<PropertyItemVO> items = getItems(root, version, group);
-            final List<String> lines = formatPropertyLines(root, version, group, items);
-
-            byte[] document = Joiner.on("\r\n").join(lines).getBytes();
-            HttpHeaders header = new HttpHeaders();
-            header.setContentType(new MediaType("application", "properties"));
-            header.set("Content-Disposition", "inline; filename=" + group + ".property");
-            header.setContentLength(document.length);
-            return new HttpEntity<>(document, header);
+        final List<String> fromGroups = nodeService.listChildren(makePaths(root, from));
+        final List<String> toGroups = nodeService.listChildren(makePaths(root, to));
+        if (fromGroups == null || toGroups == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        final Set<String> groups = new TreeSet<>();
+        if (StringUtils.isNotBlank(group)) {
+            groups.add(group);
         } else {
-            //export version
-            final String versionPath = makePaths(root, version);
-            List<String> groups = nodeService.listChildren(versionPath);
-            if (groups != null && !groups.isEmpty()) {
-                try {
-                    ByteArrayOutputStream out = new ByteArrayOutputStream();
-                    try(ZipOutputStream zipOutputStream = new ZipOutputStream(out)) {
-                        for (String groupName : groups) {
-                            String groupPath = makePaths(versionPath, groupName);
-                            String fileName = ZKPaths.getNodeFromPath(groupPath) + PROPERTIES;
-
-                            List<PropertyItemVO> items = getItems(root, version, groupName);
-                            List<String> lines = formatPropertyLines(root, version, groupName, items);
-                            if (!lines.isEmpty()) {
-                                ZipEntry zipEntry = new ZipEntry(fileName);
-                                zipOutputStream.putNextEntry(zipEntry);
-                                IOUtils.writeLines(lines, "\r\n", zipOutputStream, Charsets.UTF_8.displayName());
-                                zipOutputStream.closeEntry();
-                            }
-                        }
-                    }
+            groups.addAll(fromGroups);
+            groups.addAll(toGroups);
+        }
+
+        HttpHeaders header = new HttpHeaders();
+        header.setContentType(MediaType.APPLICATION_JSON);
+        return new ResponseEntity<>(out -> writeDiff(root, from, to, groups, out), header, HttpStatus.OK);
+    }
+
+    /**
+     * 每个配置组在两个版本中各读取一次后归并比较, 只输出有差异的配置组, 最多预先比较{@link #EXPORT_PREFETCH}个配置组
+     */
+    private void writeDiff(String root, String from, String to, Set<String> groups, OutputStream out) throws IOException {
+        final Deque<Future<GroupDiff>> prefetched = new ArrayDeque<>();
+        final Iterator<String> toFetch = groups.iterator();
+        try {
+            while (prefetched.size() < EXPORT_PREFETCH && toFetch.hasNext()) {
+                prefetched.add(prefetchDiff(root, from, to, toFetch.next()));
+            }
+
+            // 不关闭响应流, 由容器处理
+            final JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+            generator.writeStartObject();
+            generator.writeStringField("from", from);
+            generator.writeStringField("to", to);
+            generator.writeFieldName("groups");
+            generator.writeStartArray();
+            int added = 0;
+            int changed = 0;
+            int removed = 0;
+            while (!prefetched.isEmpty()) {
+                final GroupDiff diff = prefetched.poll().get();
+                if (toFetch.hasNext()) {
+                    prefetched.add(prefetchDiff(root, from, to, toFetch.next()));
+                }
 
-                    byte[] document = out.toByteArray();
-                    HttpHeaders header = new HttpHeaders();
-                    header.setContentType(new MediaType("application", "zip"));
-                    header.set("Content-Disposition", "inline; filename=" + StringUtils.replace(root, "/", "-") + ZIP);
-                    header.setContentLength(document.length);
-                    return new HttpEntity<>(document, header);
-                } catch (IOException e) {
-                    LOGGER.error(e.getMessage(), e);
+                if (!diff.isEmpty()) {
+                    generator.writeObject(diff);
+                    added += diff.getAdded().size();
+                    changed += diff.getChanged().size();
+                    removed += diff.getRemoved().size();
                 }
             }
-            return null;
+            generator.writeEndArray();
+            generator.writeNumberField("added", added);
+            generator.writeNumberField("changed", changed);
+            generator.writeNumberField("removed", removed);
+            generator.writeEndObject();
+            generator.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            for (Future<GroupDiff> future : prefetched) {
+                future.cancel(true);
+            }
         }
     }
 
+    private Future<GroupDiff> prefetchDiff(String root, String from, String to, String group) {
+        return exportExecutor.submit(() -> GroupDiff.merge(group, nodeService.findProperties(makePaths(root, from, group)),
+                nodeService.findProperties(makePaths(root, to, group))));
+    }
+
+    @PreDestroy
+    private void destroy() {
+        exportExecutor.shutdownNow();
+    }
+
     /**
      * 拼接配置项信息成list
      */
@@ -394,49 +740,110 @@ public class IndexController {
     }
 
     /**
-     * 导入
+     * 导入, 只写入与当前配置的差异; 写入失败的配置组通过failedGroups参数带回首页
+     * @param prune 是否删除文件中没有的配置项
      */
     @PostMapping("/import/{version:.+}")
-    public ModelAndView importData(@PathVariable String version, MultipartFile file){
+    public ModelAndView importData(@PathVariable String version, MultipartFile file,
+                                   @RequestParam(defaultValue = "false") boolean prune) {
+        final List<GroupDiff> diffs = importGroups(version, file, prune, false);
+        final ModelAndView mv = new ModelAndView("redirect:/version/" + version);
+        if (diffs != null) {
+            final List<String> failedGroups = diffs.stream().filter(GroupDiff::isFailed)
+                    .map(GroupDiff::getGroup).collect(Collectors.toList());
+            if (!failedGroups.isEmpty()) {
+                mv.addObject("failedGroups", Joiner.on(',').join(failedGroups));
+            }
+        }
+        return mv;
+    }
+
+    /**
+     * 只计算导入文件与当前配置的差异, 不写入
+     */
+    @PostMapping("/import/{version}/diff")
+    public @ResponseBody
+    CommonResponse<List<GroupDiff>> importDiff(@PathVariable String version, MultipartFile file) {
+        final List<GroupDiff> diffs = importGroups(version, file, false, true);
+        return new CommonResponse<>(diffs != null, diffs, diffs != null ? null : "Invalid File");
+    }
+
+    /**
+     * 解析上传的properties或zip文件, 逐个配置组计算差异
+     * @param dryRun 为true时只返回差异
+     * @return 各配置组的差异, 读取文件失败时返回null
+     */
+    private List<GroupDiff> importGroups(String version, MultipartFile file, boolean prune, boolean dryRun) {
         final String fileName = file.getOriginalFilename();
-        LOGGER.info("Upload file : {}", fileName);
+        LOGGER.info("Upload file : {}, prune: {}, dry run: {}", fileName, prune, dryRun);
+        final List<GroupDiff> diffs = Lists.newArrayList();
         try (InputStream in = file.getInputStream()) {
             if (fileName.endsWith(PROPERTIES)) {
-                saveGroup(version, fileName, in);
+                diffs.add(saveGroup(version, fileName, in, prune, dryRun));
 
             } else if (fileName.endsWith(ZIP)) {
                 try (ZipArchiveInputStream input = new ZipArchiveInputStream(in)) {
                     ArchiveEntry nextEntry = null;
                     while ((nextEntry = input.getNextEntry()) != null) {
                         String entryName = nextEntry.getName();
-                        saveGroup(version, entryName, input);
+                        diffs.add(saveGroup(version, entryName, input, prune, dryRun));
                     }
                 }
             }
         } catch (IOException e) {
             LOGGER.error(e.getMessage(), e);
+            return null;
         }
-
-        return new ModelAndView("redirect:/version/" + version);
+        return diffs;
     }
 
     /**
-     * 保存流中的配置项信息
+     * 比较流中的配置项与配置组当前内容, 在批量事务中只写入差异
      */
-    private void saveGroup(@PathVariable String version, String fileName, InputStream in) throws IOException {
-        List<PropertyItemVO> items = parseInputFile(in);
-        if(!items.isEmpty()) {
-            final String group = Files.getNameWithoutExtension(fileName);
-            final String dataPath = makePaths(getRoot(), version, group);
-            final String commentPath = makePaths(getRoot(), version + COMMENT_SUFFIX, group);
+    private GroupDiff saveGroup(String version, String fileName, InputStream in, boolean prune, boolean dryRun) throws IOException {
+        final String group = Files.getNameWithoutExtension(fileName);
+        final String dataPath = makePaths(getRoot(), version, group);
+        final String commentPath = makePaths(getRoot(), version + COMMENT_SUFFIX, group);
+
+        //文件中重复的key以第一次出现为准
+        final Map<String, String> values = Maps.newLinkedHashMap();
+        final Map<String, String> comments = Maps.newLinkedHashMap();
+        for (PropertyItemVO item : parseInputFile(in)) {
+            final String key = StringUtils.trim(item.getName());
+            if (!values.containsKey(key)) {
+                values.put(key, Strings.nullToEmpty(StringUtils.trim(item.getValue())));
+                comments.put(key, Strings.nullToEmpty(StringUtils.trim(item.getComment())));
+            }
+        }
+
+        final GroupDiff diff = GroupDiff.compute(group, toMap(nodeService.findProperties(dataPath)), values);
+        if (dryRun || values.isEmpty()) {
+            return diff;
+        }
+
+        final List<PropertyOperation> operations = diff.toOperations(prune);
+        if (!operations.isEmpty() && !nodeService.applyGroupOperations(dataPath, operations)) {
+            // 配置项未写入时不更新注释, 避免注释与配置项不一致
+            LOGGER.warn("Import group {} failed, skip comments.", dataPath);
+            diff.setFailed(true);
+            return diff;
+        }
 
-            items.forEach(item -> {
-                nodeService.createProperty(makePaths(dataPath, StringUtils.trim(item.getName())), StringUtils.trim(item.getValue()));
-                nodeService.createProperty(makePaths(commentPath, StringUtils.trim(item.getName())), StringUtils.trim(item.getComment()));
-            });
+        final Map<String, String> currentComments = toMap(nodeService.findProperties(commentPath));
+        final List<PropertyOperation> commentOperations = GroupDiff.compute(group, currentComments, comments).toOperations(prune);
+        if (!commentOperations.isEmpty()) {
+            nodeService.applyOperations(commentPath, commentOperations);
         }
+        return diff;
     }
 
+    private static Map<String, String> toMap(List<PropertyItem> items) {
+        final Map<String, String> map = Maps.newHashMap();
+        for (PropertyItem item : items) {
+            map.put(item.getName(), Strings.nullToEmpty(item.getValue()));
+        }
+        return map;
+    }
 
     /**
      * 以=号隔除至两段
@@ -0,0 +1,83 @@
+package com.dangdang.config.face.entity;
+
+import java.io.Serializable;
+
+/**
+ * 克隆版本的进度, 由克隆线程更新, 其他请求可随时读取
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public class CloneProgress implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * 已读取的配置组数
+	 */
+	private volatile int groups;
+
+	/**
+	 * 已提交的配置组数
+	 */
+	private volatile int clonedGroups;
+
+	/**
+	 * 已读取的配置项数
+	 */
+	private volatile int properties;
+
+	/**
+	 * 已提交的配置项数
+	 */
+	private volatile int clonedProperties;
+
+	/**
+	 * 失败原因, 已提交的批次不回滚
+	 */
+	private volatile String error;
+
+	public void groupsRead(int count) {
+		groups += count;
+	}
+
+	public void propertiesRead(int count) {
+		properties += count;
+	}
+
+	public void committed(int groupCount, int propertyCount) {
+		clonedGroups += groupCount;
+		clonedProperties += propertyCount;
+	}
+
+	public void fail(String error) {
+		this.error = error;
+	}
+
+	public int getGroups() {
+		return groups;
+	}
+
+	public int getClonedGroups() {
+		return clonedGroups;
+	}
+
+	public int getProperties() {
+		return properties;
+	}
+
+	public int getClonedProperties() {
+		return clonedProperties;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	@Override
+	public String toString() {
+		return "CloneProgress [groups=" + groups + ", clonedGroups=" + clonedGroups + ", properties=" + properties
+				+ ", clonedProperties=" + clonedProperties + ", error=" + error + "]";
+	}
+
+}
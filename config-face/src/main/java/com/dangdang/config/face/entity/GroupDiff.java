@@ -0,0 +1,207 @@
+package com.dangdang.config.face.entity;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 配置组当前内容与导入内容的差异, 按key排序
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public class GroupDiff implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String group;
+
+	private final List<Change> added = Lists.newArrayList();
+
+	private final List<Change> changed = Lists.newArrayList();
+
+	/**
+	 * 当前存在但导入内容中没有的配置项, 只有指定prune时才删除
+	 */
+	private final List<Change> removed = Lists.newArrayList();
+
+	/**
+	 * 写入差异的事务是否失败
+	 */
+	private boolean failed;
+
+	public GroupDiff(String group) {
+		super();
+		this.group = group;
+	}
+
+	/**
+	 * @param group 配置组名称
+	 * @param current 当前配置项, 空值为空字符串
+	 * @param imported 导入的配置项
+	 * @return
+	 */
+	public static GroupDiff compute(String group, Map<String, String> current, Map<String, String> imported) {
+		final GroupDiff diff = new GroupDiff(group);
+		final TreeSet<String> keys = new TreeSet<>(current.keySet());
+		keys.addAll(imported.keySet());
+		for (String key : keys) {
+			final String oldValue = current.get(key);
+			final String newValue = imported.get(key);
+			if (oldValue == null) {
+				diff.added.add(new Change(key, null, newValue));
+			} else if (newValue == null) {
+				diff.removed.add(new Change(key, oldValue, null));
+			} else if (!Objects.equal(oldValue, newValue)) {
+				diff.changed.add(new Change(key, oldValue, newValue));
+			}
+		}
+		return diff;
+	}
+
+	/**
+	 * 对按key排序的两组配置项做一次归并, 比较两个版本中的同一配置组
+	 * @param group 配置组名称
+	 * @param from 原配置项, 不存在的配置组为空
+	 * @param to 新配置项, 不存在的配置组为空
+	 * @return
+	 */
+	public static GroupDiff merge(String group, List<PropertyItem> from, List<PropertyItem> to) {
+		final GroupDiff diff = new GroupDiff(group);
+		final List<PropertyItem> oldItems = sortByName(from);
+		final List<PropertyItem> newItems = sortByName(to);
+		int i = 0;
+		int j = 0;
+		while (i < oldItems.size() || j < newItems.size()) {
+			final PropertyItem oldItem = i < oldItems.size() ? oldItems.get(i) : null;
+			final PropertyItem newItem = j < newItems.size() ? newItems.get(j) : null;
+			final int order = oldItem == null ? 1 : newItem == null ? -1 : oldItem.getName().compareTo(newItem.getName());
+			if (order < 0) {
+				diff.removed.add(new Change(oldItem.getName(), oldItem.getValue(), null));
+				i++;
+			} else if (order > 0) {
+				diff.added.add(new Change(newItem.getName(), null, newItem.getValue()));
+				j++;
+			} else {
+				if (!Objects.equal(oldItem.getValue(), newItem.getValue())) {
+					diff.changed.add(new Change(oldItem.getName(), oldItem.getValue(), newItem.getValue()));
+				}
+				i++;
+				j++;
+			}
+		}
+		return diff;
+	}
+
+	private static List<PropertyItem> sortByName(List<PropertyItem> items) {
+		final List<PropertyItem> sorted = Lists.newArrayList(items);
+		Collections.sort(sorted, new Comparator<PropertyItem>() {
+			@Override
+			public int compare(PropertyItem o1, PropertyItem o2) {
+				return o1.getName().compareTo(o2.getName());
+			}
+		});
+		return sorted;
+	}
+
+	/**
+	 * 转换为只包含差异的修改操作
+	 * @param prune 是否删除导入内容中没有的配置项
+	 * @return
+	 */
+	public List<PropertyOperation> toOperations(boolean prune) {
+		final List<PropertyOperation> operations = Lists.newArrayList();
+		// 新增的配置项可能已被并发创建, 统一按更新处理
+		for (Change change : added) {
+			operations.add(PropertyOperation.update(change.getKey(), change.getNewValue()));
+		}
+		for (Change change : changed) {
+			operations.add(PropertyOperation.update(change.getKey(), change.getNewValue()));
+		}
+		if (prune) {
+			for (Change change : removed) {
+				operations.add(PropertyOperation.delete(change.getKey()));
+			}
+		}
+		return operations;
+	}
+
+	public boolean isEmpty() {
+		return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+	}
+
+	public boolean isFailed() {
+		return failed;
+	}
+
+	public void setFailed(boolean failed) {
+		this.failed = failed;
+	}
+
+	public String getGroup() {
+		return group;
+	}
+
+	public List<Change> getAdded() {
+		return Collections.unmodifiableList(added);
+	}
+
+	public List<Change> getChanged() {
+		return Collections.unmodifiableList(changed);
+	}
+
+	public List<Change> getRemoved() {
+		return Collections.unmodifiableList(removed);
+	}
+
+	@Override
+	public String toString() {
+		return "GroupDiff [group=" + group + ", added=" + added + ", changed=" + changed + ", removed=" + removed + ", failed=" + failed + "]";
+	}
+
+	/**
+	 * 单个配置项的变化, 新增时oldValue为null, 删除时newValue为null
+	 */
+	public static class Change implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String key;
+
+		private final String oldValue;
+
+		private final String newValue;
+
+		public Change(String key, String oldValue, String newValue) {
+			super();
+			this.key = key;
+			this.oldValue = oldValue;
+			this.newValue = newValue;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public String getOldValue() {
+			return oldValue;
+		}
+
+		public String getNewValue() {
+			return newValue;
+		}
+
+		@Override
+		public String toString() {
+			return key + ": " + oldValue + " -> " + newValue;
+		}
+
+	}
+
+}
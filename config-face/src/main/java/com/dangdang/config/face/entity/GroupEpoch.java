@@ -0,0 +1,66 @@
+package com.dangdang.config.face.entity;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * 配置组epoch, 写入配置组节点的数据中, 客户端只需监听配置组节点即可获知变更的key<br>
+ * <br>
+ * 数据格式为UTF-8文本, 第一行为单调递增的版本号, 之后每行一个本次变更的key, 单独一行{@code *}表示需要全量加载
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public class GroupEpoch {
+
+	private static final String ALL_KEYS = "*";
+
+	/**
+	 * 变更的key超过此数量时, 通知客户端全量加载
+	 */
+	private static final int MAX_CHANGED_KEYS = 128;
+
+	private final long revision;
+
+	private final Collection<String> changedKeys;
+
+	public GroupEpoch(long revision, Collection<String> changedKeys) {
+		super();
+		this.revision = revision;
+		this.changedKeys = changedKeys;
+	}
+
+	/**
+	 * 新建配置组时的epoch, 没有变更的key
+	 */
+	public static GroupEpoch initial() {
+		return new GroupEpoch(0L, Collections.<String>emptyList());
+	}
+
+	public long getRevision() {
+		return revision;
+	}
+
+	public Collection<String> getChangedKeys() {
+		return changedKeys;
+	}
+
+	public byte[] toBytes() {
+		final StringBuilder builder = new StringBuilder().append(revision).append('\n');
+		if (changedKeys.size() > MAX_CHANGED_KEYS) {
+			builder.append(ALL_KEYS);
+		} else {
+			Joiner.on('\n').appendTo(builder, changedKeys);
+		}
+		return builder.toString().getBytes(Charsets.UTF_8);
+	}
+
+	@Override
+	public String toString() {
+		return "GroupEpoch [revision=" + revision + ", changedKeys=" + changedKeys + "]";
+	}
+
+}
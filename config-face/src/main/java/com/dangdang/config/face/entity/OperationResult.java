@@ -0,0 +1,73 @@
+package com.dangdang.config.face.entity;
+
+import java.io.Serializable;
+
+/**
+ * 批量修改中单个操作的结果
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public class OperationResult implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String key;
+
+	private final PropertyOperation.Type type;
+
+	private final boolean success;
+
+	/**
+	 * 成功后节点的数据版本, 可作为下次更新的期望版本; 删除或失败时为-1
+	 */
+	private final int dataVersion;
+
+	/**
+	 * 失败原因, 为zookeeper的错误码, 如BADVERSION、NODEEXISTS
+	 */
+	private final String error;
+
+	private OperationResult(String key, PropertyOperation.Type type, boolean success, int dataVersion, String error) {
+		super();
+		this.key = key;
+		this.type = type;
+		this.success = success;
+		this.dataVersion = dataVersion;
+		this.error = error;
+	}
+
+	public static OperationResult success(PropertyOperation operation, int dataVersion) {
+		return new OperationResult(operation.getKey(), operation.getType(), true, dataVersion, null);
+	}
+
+	public static OperationResult failure(PropertyOperation operation, String error) {
+		return new OperationResult(operation.getKey(), operation.getType(), false, -1, error);
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public PropertyOperation.Type getType() {
+		return type;
+	}
+
+	public boolean isSuccess() {
+		return success;
+	}
+
+	public int getDataVersion() {
+		return dataVersion;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	@Override
+	public String toString() {
+		return "OperationResult [key=" + key + ", type=" + type + ", success=" + success + ", dataVersion=" + dataVersion + ", error=" + error + "]";
+	}
+
+}
@@ -15,6 +15,10 @@ public class PropertyItem implements Serializable {
 
 	private String name;
 	private String value;
+	/**
+	 * 节点的数据版本, 更新时用于检测并发修改, -1表示未知
+	 */
+	private int dataVersion = -1;
 
 	public PropertyItem(String name, String value) {
 		super();
@@ -22,6 +26,11 @@ public class PropertyItem implements Serializable {
 		this.value = value;
 	}
 
+	public PropertyItem(String name, String value, int dataVersion) {
+		this(name, value);
+		this.dataVersion = dataVersion;
+	}
+
 	public String getName() {
 		return name;
 	}
@@ -38,4 +47,12 @@ public class PropertyItem implements Serializable {
 		this.value = value;
 	}
 
+	public int getDataVersion() {
+		return dataVersion;
+	}
+
+	public void setDataVersion(int dataVersion) {
+		this.dataVersion = dataVersion;
+	}
+
 }
@@ -31,6 +31,7 @@ public class PropertyItemVO implements Serializable, Comparable<PropertyItemVO>
 	private String name;
 	private String value;
 	private String comment;
+	private int dataVersion = -1;
 
 	public PropertyItemVO() {
 		super();
@@ -41,6 +42,7 @@ public class PropertyItemVO implements Serializable, Comparable<PropertyItemVO>
 		this.name = propertyItem.getName();
 		this.oriName = propertyItem.getName();
 		this.value = propertyItem.getValue();
+		this.dataVersion = propertyItem.getDataVersion();
 	}
 
 	public PropertyItemVO(String name, String value) {
@@ -81,9 +83,17 @@ public class PropertyItemVO implements Serializable, Comparable<PropertyItemVO>
 		this.comment = comment;
 	}
 
+	public int getDataVersion() {
+		return dataVersion;
+	}
+
+	public void setDataVersion(int dataVersion) {
+		this.dataVersion = dataVersion;
+	}
+
 	@Override
 	public String toString() {
-		return "PropertyItemVO [oriName=" + oriName + ", name=" + name + ", value=" + value + ", comment=" + comment + "]";
+		return "PropertyItemVO [oriName=" + oriName + ", name=" + name + ", value=" + value + ", comment=" + comment + ", dataVersion=" + dataVersion + "]";
 	}
 
 	/* (non-Javadoc)
@@ -0,0 +1,131 @@
+package com.dangdang.config.face.entity;
+
+import java.io.Serializable;
+
+/**
+ * 配置组下单个配置项的修改操作
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public class PropertyOperation implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public enum Type {
+		/**
+		 * 新建配置项, 已存在时失败
+		 */
+		CREATE,
+		/**
+		 * 更新配置项, 不存在时新建; 指定期望版本时必须已存在
+		 */
+		UPDATE,
+		/**
+		 * 删除配置项, 不存在时忽略
+		 */
+		DELETE
+	}
+
+	private Type type;
+	private String key;
+	private String value;
+	/**
+	 * 更新时期望的节点数据版本, 不一致时整个事务失败, -1表示不检查
+	 */
+	private int expectedVersion = -1;
+	/**
+	 * 配置项的注释, 由调用方写入注释树, 不会写入配置项节点
+	 */
+	private String comment;
+
+	public PropertyOperation() {
+		super();
+	}
+
+	public PropertyOperation(Type type, String key, String value) {
+		super();
+		this.type = type;
+		this.key = key;
+		this.value = value;
+	}
+
+	public static PropertyOperation create(String key, String value) {
+		return new PropertyOperation(Type.CREATE, key, value);
+	}
+
+	public static PropertyOperation create(String key, String value, String comment) {
+		final PropertyOperation operation = create(key, value);
+		operation.setComment(comment);
+		return operation;
+	}
+
+	public static PropertyOperation update(String key, String value) {
+		return new PropertyOperation(Type.UPDATE, key, value);
+	}
+
+	/**
+	 * 只有节点的数据版本仍为expectedVersion时才更新
+	 */
+	public static PropertyOperation update(String key, String value, int expectedVersion) {
+		final PropertyOperation operation = update(key, value);
+		operation.setExpectedVersion(expectedVersion);
+		return operation;
+	}
+
+	public static PropertyOperation update(String key, String value, String comment, int expectedVersion) {
+		final PropertyOperation operation = update(key, value, expectedVersion);
+		operation.setComment(comment);
+		return operation;
+	}
+
+	public static PropertyOperation delete(String key) {
+		return new PropertyOperation(Type.DELETE, key, null);
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public void setType(Type type) {
+		this.type = type;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public void setKey(String key) {
+		this.key = key;
+	}
+
+	public String getValue() {
+		return value;
+	}
+
+	public void setValue(String value) {
+		this.value = value;
+	}
+
+	public String getComment() {
+		return comment;
+	}
+
+	public void setComment(String comment) {
+		this.comment = comment;
+	}
+
+	public int getExpectedVersion() {
+		return expectedVersion;
+	}
+
+	public void setExpectedVersion(int expectedVersion) {
+		this.expectedVersion = expectedVersion;
+	}
+
+	@Override
+	public String toString() {
+		return "PropertyOperation [type=" + type + ", key=" + key + ", value=" + value + ", comment=" + comment + ", expectedVersion=" + expectedVersion + "]";
+	}
+
+}
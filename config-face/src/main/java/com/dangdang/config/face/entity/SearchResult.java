@@ -0,0 +1,109 @@
+package com.dangdang.config.face.entity;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 跨版本搜索配置项的一页结果
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public class SearchResult implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * 索引是否已建立完成, 未完成时结果可能不全
+	 */
+	private final boolean ready;
+
+	private final int total;
+
+	private final int page;
+
+	private final int size;
+
+	private final List<Hit> hits;
+
+	public SearchResult(boolean ready, int total, int page, int size, List<Hit> hits) {
+		super();
+		this.ready = ready;
+		this.total = total;
+		this.page = page;
+		this.size = size;
+		this.hits = hits;
+	}
+
+	public boolean isReady() {
+		return ready;
+	}
+
+	public int getTotal() {
+		return total;
+	}
+
+	public int getPage() {
+		return page;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public List<Hit> getHits() {
+		return hits;
+	}
+
+	@Override
+	public String toString() {
+		return "SearchResult [ready=" + ready + ", total=" + total + ", page=" + page + ", size=" + size + ", hits=" + hits + "]";
+	}
+
+	/**
+	 * 匹配的配置项
+	 */
+	public static class Hit implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String version;
+
+		private final String group;
+
+		private final String key;
+
+		private final String value;
+
+		public Hit(String version, String group, String key, String value) {
+			super();
+			this.version = version;
+			this.group = group;
+			this.key = key;
+			this.value = value;
+		}
+
+		public String getVersion() {
+			return version;
+		}
+
+		public String getGroup() {
+			return group;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public String getValue() {
+			return value;
+		}
+
+		@Override
+		public String toString() {
+			return version + "/" + group + "/" + key + "=" + value;
+		}
+
+	}
+
+}
@@ -16,12 +16,17 @@
 package com.dangdang.config.face.service;
 
 
+import com.dangdang.config.face.entity.CloneProgress;
+import com.dangdang.config.face.entity.OperationResult;
 import com.dangdang.config.face.entity.PropertyItem;
+import com.dangdang.config.face.entity.PropertyOperation;
 
 import java.util.List;
 
 public interface INodeService {
 
+	void addChangeListener(NodeChangeListener listener);
+
 	List<PropertyItem> findProperties(String node);
 
 	List<String> listChildren(String node);
@@ -34,5 +39,23 @@ public interface INodeService {
 
 	void deleteProperty(String node);
 
+	boolean createGroup(String groupNode);
+
+	boolean deleteGroup(String groupNode);
+
 	String getValue(String node);
+
+	boolean applyGroupOperations(String groupNode, List<PropertyOperation> operations);
+
+	boolean applyOperations(String parentNode, List<PropertyOperation> operations);
+
+	List<OperationResult> batchGroupOperations(String groupNode, List<PropertyOperation> operations);
+
+	boolean stageOperation(String stagingNode, PropertyOperation operation);
+
+	List<PropertyOperation> findStagedOperations(String stagingNode);
+
+	List<PropertyOperation> publishStaged(String stagingNode, String groupNode);
+
+	boolean cloneGroups(String sourceNode, String targetNode, boolean withEpoch, CloneProgress progress);
 }
@@ -0,0 +1,17 @@
+package com.dangdang.config.face.service;
+
+/**
+ * 节点变化的监听, 由{@link NodeService}的读缓存在watcher触发或本服务修改节点时通知
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public interface NodeChangeListener {
+
+	/**
+	 * 在zookeeper的事件线程或修改节点的线程中调用, 实现不能阻塞
+	 * @param path 变化的节点, 其子节点可能同样变化; 为"/"时表示全部缓存已失效
+	 */
+	void nodeChanged(String path);
+
+}
@@ -0,0 +1,311 @@
+package com.dangdang.config.face.service;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
+import org.apache.curator.framework.state.ConnectionState;
+import org.apache.curator.framework.state.ConnectionStateListener;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * zookeeper节点的读缓存, 读取时注册watcher, 节点变化时删除对应的缓存, 下次读取时重新加载并注册watcher.<br>
+ * <br>
+ * 读取前先放入该节点的占位项, 读取完成后只替换同一个占位项; 读取期间该节点的缓存被删除时占位项随之删除, 读到的结果不保留.
+ * 其他节点的变化不影响正在进行的读取. 连接中断时清空全部缓存, 因为期间的变化可能没有通知
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+class NodeReadCache implements Watcher, ConnectionStateListener {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(NodeReadCache.class);
+
+	/**
+	 * 批量读取时同时等待响应的getData请求数
+	 */
+	private static final int MAX_PENDING_READS = 200;
+
+	/**
+	 * 批量读取的超时时间
+	 */
+	private static final long READ_TIMEOUT_SECONDS = 30;
+
+	private final CuratorFramework client;
+
+	/**
+	 * 节点 -> 子节点, 按路径排序以便按前缀删除子树
+	 */
+	private final ConcurrentNavigableMap<String, Entry<List<String>>> children = new ConcurrentSkipListMap<>();
+
+	/**
+	 * 节点 -> 数据
+	 */
+	private final ConcurrentNavigableMap<String, Entry<NodeData>> data = new ConcurrentSkipListMap<>();
+
+	private final List<NodeChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * 连接丢失后尚未重连
+	 */
+	private volatile boolean sessionLost;
+
+	NodeReadCache(CuratorFramework client) {
+		this.client = client;
+		client.getConnectionStateListenable().addListener(this);
+	}
+
+	void addListener(NodeChangeListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * @return 子节点, 节点不存在时返回null
+	 */
+	List<String> getChildren(String path) throws Exception {
+		final Entry<List<String>> entry = startLoading(children, path);
+		if (entry.value != null) {
+			return entry.value;
+		}
+		final List<String> loaded;
+		try {
+			loaded = Collections.unmodifiableList(client.getChildren().usingWatcher(this).forPath(path));
+		} catch (KeeperException.NoNodeException e) {
+			children.remove(path, entry);
+			return null;
+		} catch (Exception e) {
+			children.remove(path, entry);
+			throw e;
+		}
+		children.replace(path, entry, new Entry<>(loaded));
+		return loaded;
+	}
+
+	/**
+	 * @return 节点数据, 节点不存在时返回null
+	 */
+	NodeData getData(String path) throws Exception {
+		final Entry<NodeData> entry = startLoading(data, path);
+		if (entry.value != null) {
+			return entry.value;
+		}
+		final Stat stat = new Stat();
+		final NodeData loaded;
+		try {
+			loaded = new NodeData(client.getData().storingStatIn(stat).usingWatcher(this).forPath(path), stat.getVersion());
+		} catch (KeeperException.NoNodeException e) {
+			data.remove(path, entry);
+			return null;
+		} catch (Exception e) {
+			data.remove(path, entry);
+			throw e;
+		}
+		data.replace(path, entry, new Entry<>(loaded));
+		return loaded;
+	}
+
+	/**
+	 * 批量读取节点数据, 未缓存的节点通过后台getData并发读取, 同时等待响应的请求不超过{@link #MAX_PENDING_READS}
+	 * @return 与paths顺序对应的数据, 不存在的节点为null
+	 */
+	NodeData[] getData(List<String> paths) throws Exception {
+		final NodeData[] result = new NodeData[paths.size()];
+		final Semaphore permits = new Semaphore(MAX_PENDING_READS);
+		final CountDownLatch completed = new CountDownLatch(paths.size());
+		final AtomicReference<KeeperException> failure = new AtomicReference<>();
+
+		for (int i = 0; i < paths.size(); i++) {
+			final int index = i;
+			final String path = paths.get(i);
+			final Entry<NodeData> entry = startLoading(data, path);
+			if (entry.value != null) {
+				result[i] = entry.value;
+				completed.countDown();
+				continue;
+			}
+
+			permits.acquire();
+			try {
+				client.getData().usingWatcher(this).inBackground(new BackgroundCallback() {
+					@Override
+					public void processResult(CuratorFramework client, CuratorEvent event) {
+						try {
+							final KeeperException.Code code = KeeperException.Code.get(event.getResultCode());
+							if (code == KeeperException.Code.OK) {
+								result[index] = new NodeData(event.getData(), event.getStat().getVersion());
+								data.replace(path, entry, new Entry<>(result[index]));
+							} else {
+								data.remove(path, entry);
+								if (code != KeeperException.Code.NONODE) {
+									failure.compareAndSet(null, KeeperException.create(code, event.getPath()));
+								}
+							}
+						} finally {
+							permits.release();
+							completed.countDown();
+						}
+					}
+				}).forPath(path);
+			} catch (Exception e) {
+				data.remove(path, entry);
+				permits.release();
+				throw e;
+			}
+		}
+
+		if (!completed.await(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+			throw new TimeoutException("Read " + paths.size() + " nodes timed out.");
+		}
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+		return result;
+	}
+
+	/**
+	 * 未缓存时放入占位项, 已有占位项时与正在进行的读取共用, 该占位项被删除前读到的结果都可以保留
+	 *
+	 * @return 已缓存的项或占位项
+	 */
+	private static <T> Entry<T> startLoading(ConcurrentMap<String, Entry<T>> cache, String path) {
+		final Entry<T> loading = new Entry<>(null);
+		final Entry<T> existing = cache.putIfAbsent(path, loading);
+		return existing == null ? loading : existing;
+	}
+
+	/**
+	 * 修改节点后立即删除节点及其下所有节点的缓存, 不等待watcher通知
+	 */
+	void invalidateTree(String path) {
+		removeTree(children, path);
+		removeTree(data, path);
+		final int parentEnd = path.lastIndexOf('/');
+		final String parent = parentEnd > 0 ? path.substring(0, parentEnd) : "/";
+		children.remove(parent);
+		notifyListeners(parent);
+	}
+
+	/**
+	 * 子节点路径都以path + '/'开头, 按排序范围删除, 只访问子树内的缓存项
+	 */
+	private static void removeTree(ConcurrentNavigableMap<String, ?> cache, String path) {
+		final String prefix = path.endsWith("/") ? path : path + "/";
+		cache.remove(path);
+		cache.subMap(prefix, prefix.substring(0, prefix.length() - 1) + '0').clear();
+	}
+
+	void clear() {
+		children.clear();
+		data.clear();
+		notifyListeners("/");
+	}
+
+	private void notifyListeners(String path) {
+		for (NodeChangeListener listener : listeners) {
+			try {
+				listener.nodeChanged(path);
+			} catch (RuntimeException e) {
+				LOGGER.warn("Notify change of " + path + " failed.", e);
+			}
+		}
+	}
+
+	@Override
+	public void process(WatchedEvent event) {
+		final String path = event.getPath();
+		if (path == null) {
+			return;
+		}
+		switch (event.getType()) {
+			case NodeChildrenChanged:
+				children.remove(path);
+				break;
+			case NodeDataChanged:
+				data.remove(path);
+				break;
+			default:
+				children.remove(path);
+				data.remove(path);
+				break;
+		}
+		notifyListeners(path);
+	}
+
+	/**
+	 * 连接暂时断开时会话仍在, 重连后zookeeper补发期间的watch事件, 缓存继续有效;
+	 * 只有会话丢失时watch随之失效, 丢失时及之后的重连时清空缓存
+	 */
+	@Override
+	public void stateChanged(CuratorFramework client, ConnectionState newState) {
+		switch (newState) {
+			case LOST:
+				sessionLost = true;
+				LOGGER.debug("Connection lost, clear cache.");
+				clear();
+				break;
+			case RECONNECTED:
+				if (sessionLost) {
+					sessionLost = false;
+					LOGGER.debug("Reconnected after connection lost, clear cache.");
+					clear();
+				}
+				break;
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * 缓存项, value为null时是正在读取的占位项, 按实例区分
+	 */
+	private static final class Entry<T> {
+
+		private final T value;
+
+		Entry(T value) {
+			this.value = value;
+		}
+
+	}
+
+	/**
+	 * 节点数据及其版本
+	 */
+	static final class NodeData {
+
+		private final byte[] bytes;
+
+		private final int version;
+
+		NodeData(byte[] bytes, int version) {
+			this.bytes = bytes;
+			this.version = version;
+		}
+
+		byte[] getBytes() {
+			return bytes;
+		}
+
+		int getVersion() {
+			return version;
+		}
+
+	}
+
+}
@@ -15,17 +15,26 @@
  */
 package com.dangdang.config.face.service;
 
+import com.dangdang.config.face.entity.CloneProgress;
+import com.dangdang.config.face.entity.GroupEpoch;
+import com.dangdang.config.face.entity.OperationResult;
 import com.dangdang.config.face.entity.PropertyItem;
+import com.dangdang.config.face.entity.PropertyOperation;
 import com.google.common.base.Charsets;
 import com.google.common.base.Objects;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
-import org.apache.curator.framework.api.GetChildrenBuilder;
-import org.apache.curator.framework.api.GetDataBuilder;
+import org.apache.curator.framework.api.transaction.CuratorTransaction;
+import org.apache.curator.framework.api.transaction.CuratorTransactionFinal;
+import org.apache.curator.framework.api.transaction.CuratorTransactionResult;
+import org.apache.curator.framework.api.transaction.OperationType;
 import org.apache.curator.retry.ExponentialBackoffRetry;
 import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.OpResult;
 import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,7 +43,13 @@ import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 /**
  * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
@@ -53,9 +68,15 @@ public class NodeService implements INodeService {
 
 	private CuratorFramework client;
 
+	/**
+	 * 浏览页面及导出的读取都经过缓存, 节点变化时由watcher删除
+	 */
+	private NodeReadCache cache;
+
 	@PostConstruct
 	private void init() {
 		client = CuratorFrameworkFactory.newClient(zkAddress, new ExponentialBackoffRetry(1000, 3));
+		cache = new NodeReadCache(client);
 		client.start();
 	}
 
@@ -69,7 +90,36 @@ public class NodeService implements INodeService {
 	private static final Logger LOGGER = LoggerFactory.getLogger(NodeService.class);
 
 	/**
-	 * 查询对应节点下面的配置项信息
+	 * 单个事务中最多包含的操作数, 避免超过zookeeper的jute.maxbuffer
+	 */
+	private static final int MAX_OPERATIONS_PER_TRANSACTION = 500;
+
+	/**
+	 * 配置组epoch被并发修改时的重试次数
+	 */
+	private static final int EPOCH_RETRIES = 3;
+
+	/**
+	 * 单个配置组最多暂存的修改数, 发布时每个修改还要删除对应的暂存节点, 需要在一个事务中完成
+	 */
+	private static final int MAX_STAGED_OPERATIONS = (MAX_OPERATIONS_PER_TRANSACTION - 2) / 2;
+
+	/**
+	 * 暂存节点数据中操作类型、期望版本和注释长度的长度
+	 */
+	private static final int STAGED_HEADER_LENGTH = 9;
+
+	/**
+	 * 监听节点变化, 只包含经过本服务读取或修改的节点
+	 * @param listener
+	 */
+	@Override
+	public void addChangeListener(NodeChangeListener listener) {
+		cache.addListener(listener);
+	}
+
+	/**
+	 * 查询对应节点下面的配置项信息, 优先读取缓存, 未缓存的子节点数据通过异步getData并发读取
 	 * @param node
 	 * @return
 	 */
@@ -78,18 +128,9 @@ public class NodeService implements INodeService {
 		LOGGER.debug("Find properties in node: [{}]", node);
 		List<PropertyItem> properties = Lists.newArrayList();
 		try {
-			Stat stat = client.checkExists().forPath(node);
-			if (stat != null) {
-				GetChildrenBuilder childrenBuilder = client.getChildren();
-				List<String> children = childrenBuilder.forPath(node);
-				GetDataBuilder dataBuilder = client.getData();
-				if (children != null) {
-					for (String child : children) {
-						String propPath = ZKPaths.makePath(node, child);
-						PropertyItem item = new PropertyItem(child, new String(dataBuilder.forPath(propPath), Charsets.UTF_8));
-						properties.add(item);
-					}
-				}
+			List<String> children = cache.getChildren(node);
+			if (children != null) {
+				properties = readProperties(node, children);
 			}
 		} catch (Exception e) {
 			LOGGER.error(e.getMessage(), e);
@@ -97,6 +138,25 @@ public class NodeService implements INodeService {
 		return properties;
 	}
 
+	/**
+	 * 读取子节点数据, 读取期间被删除的节点忽略
+	 */
+	private List<PropertyItem> readProperties(String node, List<String> children) throws Exception {
+		final List<String> paths = Lists.newArrayListWithCapacity(children.size());
+		for (String child : children) {
+			paths.add(ZKPaths.makePath(node, child));
+		}
+		final NodeReadCache.NodeData[] data = cache.getData(paths);
+
+		final List<PropertyItem> properties = Lists.newArrayListWithCapacity(children.size());
+		for (int i = 0; i < children.size(); i++) {
+			if (data[i] != null) {
+				properties.add(new PropertyItem(children.get(i), new String(data[i].getBytes(), Charsets.UTF_8), data[i].getVersion()));
+			}
+		}
+		return properties;
+	}
+
 	/**
 	 * 获取指定节点下面子节点信息
 	 * @param node
@@ -107,11 +167,7 @@ public class NodeService implements INodeService {
 		LOGGER.debug("Find children of node: [{}]", node);
 		List<String> children = null;
 		try {
-			Stat stat = client.checkExists().forPath(node);
-			if (stat != null) {
-				GetChildrenBuilder childrenBuilder = client.getChildren();
-				children = childrenBuilder.forPath(node);
-			}
+			children = cache.getChildren(node);
 		} catch (Exception e) {
 			LOGGER.error(e.getMessage(), e);
 		}
@@ -139,16 +195,17 @@ public class NodeService implements INodeService {
 		LOGGER.debug("Create property : [{}] = [{}]", node, value);
 		boolean suc = false;
 		try {
-			//判断节点是否已存在，不存在时才会新建
-			Stat stat = client.checkExists().forPath(node);
-			if (stat == null) {
-				final byte[] data = Strings.isNullOrEmpty(value) ? new byte[]{} : value.getBytes(Charsets.UTF_8);
-				//利用Curator创建zookeeper的节点数据信息，这个会触发zookeeper的watch监听，是实现热加载的重要操作
-				String opResult = client.create().creatingParentsIfNeeded().forPath(node, data);
-				suc = Objects.equal(node, opResult);
-			}
+			final byte[] data = Strings.isNullOrEmpty(value) ? new byte[]{} : value.getBytes(Charsets.UTF_8);
+			//利用Curator创建zookeeper的节点数据信息，这个会触发zookeeper的watch监听，是实现热加载的重要操作
+			String opResult = client.create().creatingParentsIfNeeded().forPath(node, data);
+			suc = Objects.equal(node, opResult);
+		} catch (KeeperException.NodeExistsException e) {
+			//节点已存在时不覆盖
+			LOGGER.debug("Property [{}] already exists.", node);
 		} catch (Exception e) {
 			LOGGER.error(e.getMessage(), e);
+		} finally {
+			cache.invalidateTree(node);
 		}
 		return suc;
 	}
@@ -161,16 +218,19 @@ public class NodeService implements INodeService {
 		LOGGER.debug("Update property: [{}] = [{}]", node, value);
 		boolean suc = false;
 		try {
-			Stat stat = client.checkExists().forPath(node);
-			if (stat != null) {
-				Stat opResult = client.setData().forPath(node, value.getBytes(Charsets.UTF_8));
+			final byte[] data = Strings.isNullOrEmpty(value) ? new byte[]{} : value.getBytes(Charsets.UTF_8);
+			try {
+				Stat opResult = client.setData().forPath(node, data);
 				suc = opResult != null;
-			} else {
-				String opResult = client.create().creatingParentsIfNeeded().forPath(node, value.getBytes(Charsets.UTF_8));
+			} catch (KeeperException.NoNodeException e) {
+				//不存在时新建, 期间被其他人创建时返回失败
+				String opResult = client.create().creatingParentsIfNeeded().forPath(node, data);
 				suc = Objects.equal(node, opResult);
 			}
 		} catch (Exception e) {
 			LOGGER.error(e.getMessage(), e);
+		} finally {
+			cache.invalidateTree(node);
 		}
 		return suc;
 	}
@@ -182,13 +242,61 @@ public class NodeService implements INodeService {
 	public void deleteProperty(String node) {
 		LOGGER.debug("Delete property: [{}]", node);
 		try {
-			Stat stat = client.checkExists().forPath(node);
-			if (stat != null) {
-				client.delete().deletingChildrenIfNeeded().forPath(node);
+			client.delete().deletingChildrenIfNeeded().forPath(node);
+		} catch (KeeperException.NoNodeException e) {
+			LOGGER.debug("Property [{}] not exists.", node);
+		} catch (Exception e) {
+			LOGGER.error(e.getMessage(), e);
+		} finally {
+			cache.invalidateTree(node);
+		}
+	}
+
+	/**
+	 * 创建配置组, 节点数据为初始epoch
+	 */
+	@Override
+	public boolean createGroup(String groupNode) {
+		LOGGER.debug("Create group: [{}]", groupNode);
+		try {
+			client.create().creatingParentsIfNeeded().forPath(groupNode, GroupEpoch.initial().toBytes());
+			return true;
+		} catch (KeeperException.NodeExistsException e) {
+			LOGGER.debug("Group [{}] already exists.", groupNode);
+		} catch (Exception e) {
+			LOGGER.error(e.getMessage(), e);
+		} finally {
+			cache.invalidateTree(groupNode);
+		}
+		return false;
+	}
+
+	/**
+	 * 删除配置组, 先通过epoch删除所有配置项, 再删除空的配置组节点, 跟随epoch的客户端也能收到每个变更
+	 * @return 期间有配置项被新建时返回false
+	 */
+	@Override
+	public boolean deleteGroup(String groupNode) {
+		LOGGER.debug("Delete group: [{}]", groupNode);
+		try {
+			final List<PropertyOperation> operations = Lists.newArrayList();
+			for (String key : client.getChildren().forPath(groupNode)) {
+				operations.add(PropertyOperation.delete(key));
+			}
+			if (!operations.isEmpty() && !applyGroupOperations(groupNode, operations)) {
+				return false;
 			}
+			client.delete().forPath(groupNode);
+			return true;
+		} catch (KeeperException.NoNodeException e) {
+			LOGGER.debug("Group [{}] not exists.", groupNode);
+			return true;
 		} catch (Exception e) {
 			LOGGER.error(e.getMessage(), e);
+		} finally {
+			cache.invalidateTree(groupNode);
 		}
+		return false;
 	}
 
 	/**
@@ -197,11 +305,10 @@ public class NodeService implements INodeService {
 	@Override
 	public String getValue(String node) {
 		try {
-			// 判断节点是否存在
-			Stat stat = client.checkExists().forPath(node);
-			if (stat != null) {
-				byte[] data = client.getData().forPath(node);
-				return new String(data);
+			// 节点不存在时返回null
+			NodeReadCache.NodeData data = cache.getData(node);
+			if (data != null) {
+				return new String(data.getBytes(), Charsets.UTF_8);
 			}
 		} catch (Exception e) {
 			LOGGER.error(e.getMessage(), e);
@@ -209,4 +316,601 @@ public class NodeService implements INodeService {
 		return null;
 	}
 
+	/**
+	 * 修改配置组下的配置项, 每个事务同时递增配置组节点上的epoch, 客户端只需监听配置组节点即可获知变更的key
+	 * @param groupNode 配置组节点
+	 * @param operations 修改操作, 超过单个事务上限时分批提交
+	 * @return
+	 */
+	@Override
+	public boolean applyGroupOperations(String groupNode, List<PropertyOperation> operations) {
+		return applyOperations(groupNode, operations, true);
+	}
+
+	/**
+	 * 修改节点下的子节点, 分批在事务中提交但不写epoch, 用于注释等客户端不监听的节点
+	 * @param parentNode 父节点, 不存在时创建
+	 * @param operations 修改操作
+	 * @return
+	 */
+	@Override
+	public boolean applyOperations(String parentNode, List<PropertyOperation> operations) {
+		return applyOperations(parentNode, operations, false);
+	}
+
+	private boolean applyOperations(String groupNode, List<PropertyOperation> operations, boolean withEpoch) {
+		LOGGER.debug("Apply {} operations to group: [{}]", operations.size(), groupNode);
+		try {
+			int groupVersion = ensureGroup(groupNode, withEpoch).getVersion();
+
+			//更新和删除需要知道配置项是否已存在
+			Set<String> existingKeys = Sets.newHashSet();
+			for (PropertyOperation operation : operations) {
+				if (operation.getType() != PropertyOperation.Type.CREATE) {
+					existingKeys.addAll(client.getChildren().forPath(groupNode));
+					break;
+				}
+			}
+
+			for (List<PropertyOperation> chunk : Lists.partition(operations, MAX_OPERATIONS_PER_TRANSACTION)) {
+				groupVersion = commitGroupOperations(groupNode, groupVersion, chunk, existingKeys, withEpoch);
+			}
+			return true;
+		} catch (Exception e) {
+			LOGGER.error(e.getMessage(), e);
+		} finally {
+			cache.invalidateTree(groupNode);
+		}
+		return false;
+	}
+
+	/**
+	 * 在一个事务中提交配置项的修改, withEpoch时同时写入配置组epoch
+	 * @return 提交后配置组节点的版本
+	 */
+	private int commitGroupOperations(String groupNode, int groupVersion, List<PropertyOperation> operations, Set<String> existingKeys,
+			boolean withEpoch) throws Exception {
+		for (int retry = 0; ; retry++) {
+			CuratorTransaction transaction = client.inTransaction();
+			final Set<String> keys = Sets.newHashSet(existingKeys);
+			final List<String> changedKeys = Lists.newArrayList();
+			for (PropertyOperation operation : operations) {
+				final CuratorTransactionFinal added = addOperation(transaction, groupNode, operation, keys);
+				if (added != null) {
+					transaction = added;
+					changedKeys.add(operation.getKey());
+				}
+			}
+
+			if (changedKeys.isEmpty()) {
+				return groupVersion;
+			}
+			if (!withEpoch) {
+				((CuratorTransactionFinal) transaction).commit();
+				updateExistingKeys(operations, existingKeys);
+				return groupVersion;
+			}
+
+			final GroupEpoch epoch = new GroupEpoch(groupVersion + 1L, changedKeys);
+			try {
+				transaction.setData().withVersion(groupVersion).forPath(groupNode, epoch.toBytes()).and().commit();
+			} catch (KeeperException.BadVersionException e) {
+				//只有epoch的版本冲突可以重试, 配置项的版本冲突说明已被其他人修改
+				if (retry >= EPOCH_RETRIES || failedOperation(e) != changedKeys.size()) {
+					throw e;
+				}
+				LOGGER.debug("Epoch of group [{}] changed concurrently, retry.", groupNode);
+				groupVersion = ensureGroup(groupNode, true).getVersion();
+				continue;
+			}
+
+			updateExistingKeys(operations, existingKeys);
+			return groupVersion + 1;
+		}
+	}
+
+	/**
+	 * 把单个修改加入事务
+	 * @param keys 事务中已加入的修改生效后存在的配置项, 加入后随之更新, 同一事务中对同一个key的多次修改按顺序生效
+	 * @return 加入后的事务, 删除不存在的配置项时不加入, 返回null
+	 */
+	private static CuratorTransactionFinal addOperation(CuratorTransaction transaction, String groupNode, PropertyOperation operation,
+			Set<String> keys) throws Exception {
+		final String key = operation.getKey();
+		final String path = ZKPaths.makePath(groupNode, key);
+		//注释写入注释树, 配置项节点只存放值, 所有版本的客户端都能直接读取
+		final byte[] data = Strings.isNullOrEmpty(operation.getValue()) ? new byte[]{} : operation.getValue().getBytes(Charsets.UTF_8);
+		switch (operation.getType()) {
+			case CREATE:
+				keys.add(key);
+				return transaction.create().forPath(path, data).and();
+			case UPDATE:
+				if (operation.getExpectedVersion() >= 0) {
+					//节点版本不一致或已被删除时整个事务失败
+					keys.add(key);
+					return transaction.setData().withVersion(operation.getExpectedVersion()).forPath(path, data).and();
+				} else if (!keys.add(key)) {
+					return transaction.setData().forPath(path, data).and();
+				} else {
+					return transaction.create().forPath(path, data).and();
+				}
+			case DELETE:
+				return keys.remove(key) ? transaction.delete().forPath(path).and() : null;
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * 批量修改配置组下的配置项, 按顺序分批在事务中提交并递增epoch.<br>
+	 * 与{@link #applyGroupOperations}不同, 单个操作失败时只把该操作记为失败, 同一批的其他操作重新提交
+	 * @param groupNode 配置组节点
+	 * @param operations 修改操作
+	 * @return 与operations顺序对应的结果
+	 */
+	@Override
+	public List<OperationResult> batchGroupOperations(String groupNode, List<PropertyOperation> operations) {
+		LOGGER.debug("Batch {} operations to group: [{}]", operations.size(), groupNode);
+		final OperationResult[] results = new OperationResult[operations.size()];
+		try {
+			int groupVersion = ensureGroup(groupNode, true).getVersion();
+			final Set<String> existingKeys = Sets.newHashSet(client.getChildren().forPath(groupNode));
+			for (int from = 0; from < operations.size(); from += MAX_OPERATIONS_PER_TRANSACTION) {
+				final int to = Math.min(from + MAX_OPERATIONS_PER_TRANSACTION, operations.size());
+				groupVersion = commitBatch(groupNode, groupVersion, operations, from, to, existingKeys, results);
+			}
+		} catch (Exception e) {
+			LOGGER.error(e.getMessage(), e);
+			final String error = e instanceof KeeperException ? ((KeeperException) e).code().name() : e.getClass().getSimpleName();
+			for (int i = 0; i < results.length; i++) {
+				if (results[i] == null) {
+					results[i] = OperationResult.failure(operations.get(i), error);
+				}
+			}
+		} finally {
+			cache.invalidateTree(groupNode);
+		}
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * 在一个事务中提交operations[from, to)中尚未失败的操作, 事务因某个操作失败时记录该操作的结果后重新提交其余操作.<br>
+	 * 不带期望版本的更新和删除因并发创建或删除失败时, 按节点当前状态修正一次后重试
+	 * @return 提交后配置组节点的版本
+	 */
+	private int commitBatch(String groupNode, int groupVersion, List<PropertyOperation> operations, int from, int to,
+			Set<String> existingKeys, OperationResult[] results) throws Exception {
+		final Set<Integer> corrected = Sets.newHashSet();
+		for (int epochRetry = 0; ; ) {
+			CuratorTransaction transaction = client.inTransaction();
+			final Set<String> keys = Sets.newHashSet(existingKeys);
+			final List<Integer> included = Lists.newArrayList();
+			final List<String> changedKeys = Lists.newArrayList();
+			for (int i = from; i < to; i++) {
+				if (results[i] != null && !results[i].isSuccess()) {
+					continue;
+				}
+				final PropertyOperation operation = operations.get(i);
+				final CuratorTransactionFinal added = addOperation(transaction, groupNode, operation, keys);
+				if (added == null) {
+					results[i] = OperationResult.success(operation, -1);
+				} else {
+					transaction = added;
+					included.add(i);
+					changedKeys.add(operation.getKey());
+				}
+			}
+			if (included.isEmpty()) {
+				return groupVersion;
+			}
+
+			final GroupEpoch epoch = new GroupEpoch(groupVersion + 1L, changedKeys);
+			final Collection<CuratorTransactionResult> committed;
+			try {
+				committed = transaction.setData().withVersion(groupVersion).forPath(groupNode, epoch.toBytes()).and().commit();
+			} catch (KeeperException e) {
+				final int failed = failedOperation(e);
+				if (failed < 0) {
+					throw e;
+				}
+				if (failed == included.size()) {
+					if (++epochRetry > EPOCH_RETRIES) {
+						throw e;
+					}
+					LOGGER.debug("Epoch of group [{}] changed concurrently, retry.", groupNode);
+					groupVersion = ensureGroup(groupNode, true).getVersion();
+					continue;
+				}
+
+				final int index = included.get(failed);
+				final PropertyOperation operation = operations.get(index);
+				final KeeperException.Code code = KeeperException.Code.get(((OpResult.ErrorResult) e.getResults().get(failed)).getErr());
+				if (operation.getType() != PropertyOperation.Type.CREATE && operation.getExpectedVersion() < 0 && corrected.add(index)) {
+					if (code == KeeperException.Code.NODEEXISTS) {
+						existingKeys.add(operation.getKey());
+						continue;
+					} else if (code == KeeperException.Code.NONODE) {
+						existingKeys.remove(operation.getKey());
+						continue;
+					}
+				}
+				results[index] = OperationResult.failure(operation, code.name());
+				continue;
+			}
+
+			final Iterator<CuratorTransactionResult> iterator = committed.iterator();
+			for (int index : included) {
+				final CuratorTransactionResult result = iterator.next();
+				final PropertyOperation operation = operations.get(index);
+				final int dataVersion;
+				if (result.getType() == OperationType.DELETE) {
+					dataVersion = -1;
+				} else {
+					dataVersion = result.getResultStat() != null ? result.getResultStat().getVersion() : 0;
+				}
+				results[index] = OperationResult.success(operation, dataVersion);
+				if (operation.getType() == PropertyOperation.Type.DELETE) {
+					existingKeys.remove(operation.getKey());
+				} else {
+					existingKeys.add(operation.getKey());
+				}
+			}
+			return groupVersion + 1;
+		}
+	}
+
+	/**
+	 * 把sourceNode下的配置组及配置项复制到targetNode下, 目标配置组不能已存在.<br>
+	 * 源节点按配置组流水线读取, 写入时多个配置组合并为分批事务, 每批全部成功或全部失败;
+	 * 复制配置项时每批同时递增配置组epoch, 复制注释时不写epoch
+	 * @param sourceNode 源版本节点
+	 * @param targetNode 目标版本节点
+	 * @param withEpoch 是否写入配置组epoch
+	 * @param progress 复制进度
+	 * @return
+	 */
+	@Override
+	public boolean cloneGroups(String sourceNode, String targetNode, boolean withEpoch, CloneProgress progress) {
+		LOGGER.debug("Clone groups from [{}] to [{}]", sourceNode, targetNode);
+		try {
+			final List<String> groups;
+			try {
+				groups = client.getChildren().forPath(sourceNode);
+			} catch (KeeperException.NoNodeException e) {
+				return true;
+			}
+			progress.groupsRead(groups.size());
+
+			final CloneBatch batch = new CloneBatch(progress);
+			for (String group : groups) {
+				final String sourceGroup = ZKPaths.makePath(sourceNode, group);
+				final List<PropertyItem> items = readProperties(sourceGroup, client.getChildren().forPath(sourceGroup));
+				progress.propertiesRead(items.size());
+
+				final String targetGroup = ZKPaths.makePath(targetNode, group);
+				if (items.isEmpty()) {
+					batch.reserve(1);
+					batch.createGroup(targetGroup, withEpoch);
+				}
+				// 配置组节点的版本, 每批事务写入epoch时递增
+				int groupVersion = -1;
+				for (List<PropertyItem> chunk : Lists.partition(items, MAX_OPERATIONS_PER_TRANSACTION - 2)) {
+					batch.reserve(chunk.size() + 2);
+					if (groupVersion < 0) {
+						batch.createGroup(targetGroup, withEpoch);
+						groupVersion = 0;
+					}
+					final List<String> keys = Lists.newArrayListWithCapacity(chunk.size());
+					for (PropertyItem item : chunk) {
+						batch.createProperty(ZKPaths.makePath(targetGroup, item.getName()), item.getValue());
+						keys.add(item.getName());
+					}
+					if (withEpoch) {
+						batch.setEpoch(targetGroup, groupVersion, new GroupEpoch(groupVersion + 1L, keys));
+						groupVersion++;
+					}
+				}
+				batch.groupCompleted();
+			}
+			batch.commit();
+			return true;
+		} catch (Exception e) {
+			LOGGER.error(e.getMessage(), e);
+			progress.fail(e.toString());
+		} finally {
+			cache.invalidateTree(targetNode);
+		}
+		return false;
+	}
+
+	/**
+	 * 复制版本时累积的一批写操作, 超过单个事务上限前提交
+	 */
+	private final class CloneBatch {
+
+		private final CloneProgress progress;
+
+		private CuratorTransaction transaction;
+
+		private int operations;
+
+		private int groups;
+
+		private int properties;
+
+		CloneBatch(CloneProgress progress) {
+			this.progress = progress;
+		}
+
+		/**
+		 * 当前事务放不下count个操作时先提交
+		 */
+		void reserve(int count) throws Exception {
+			if (operations + count > MAX_OPERATIONS_PER_TRANSACTION) {
+				commit();
+			}
+			if (transaction == null) {
+				transaction = client.inTransaction();
+			}
+		}
+
+		void createGroup(String path, boolean withEpoch) throws Exception {
+			transaction = transaction.create().forPath(path, withEpoch ? GroupEpoch.initial().toBytes() : new byte[]{}).and();
+			operations++;
+		}
+
+		void createProperty(String path, String value) throws Exception {
+			final byte[] data = Strings.isNullOrEmpty(value) ? new byte[]{} : value.getBytes(Charsets.UTF_8);
+			transaction = transaction.create().forPath(path, data).and();
+			operations++;
+			properties++;
+		}
+
+		void setEpoch(String path, int version, GroupEpoch epoch) throws Exception {
+			transaction = transaction.setData().withVersion(version).forPath(path, epoch.toBytes()).and();
+			operations++;
+		}
+
+		void groupCompleted() {
+			groups++;
+		}
+
+		void commit() throws Exception {
+			if (operations > 0) {
+				((CuratorTransactionFinal) transaction).commit();
+				LOGGER.debug("Committed {} operations.", operations);
+			}
+			// 跨批次的配置组在最后一批提交后计入
+			progress.committed(groups, properties);
+			transaction = null;
+			operations = 0;
+			groups = 0;
+			properties = 0;
+		}
+
+	}
+
+	/**
+	 * 暂存配置项的修改, 同一配置项只保留最后一次修改, 发布前客户端不会收到通知
+	 * @param stagingNode 暂存的配置组节点
+	 * @param operation 修改操作
+	 * @return 暂存的修改已达上限或写入失败时返回false
+	 */
+	@Override
+	public boolean stageOperation(String stagingNode, PropertyOperation operation) {
+		LOGGER.debug("Stage {} in node: [{}]", operation, stagingNode);
+		final String path = ZKPaths.makePath(stagingNode, operation.getKey());
+		final byte[] data = encodeStaged(operation);
+		try {
+			try {
+				client.setData().forPath(path, data);
+				return true;
+			} catch (KeeperException.NoNodeException e) {
+				LOGGER.debug("Staged property [{}] not exists, create it.", path);
+			}
+			final Stat stat = client.checkExists().forPath(stagingNode);
+			if (stat != null && stat.getNumChildren() >= MAX_STAGED_OPERATIONS) {
+				LOGGER.warn("Too many staged operations in node: [{}]", stagingNode);
+				return false;
+			}
+			client.create().creatingParentsIfNeeded().forPath(path, data);
+			return true;
+		} catch (Exception e) {
+			LOGGER.error(e.getMessage(), e);
+		} finally {
+			cache.invalidateTree(path);
+		}
+		return false;
+	}
+
+	/**
+	 * 查询暂存的修改, 按key排序
+	 * @param stagingNode 暂存的配置组节点
+	 * @return
+	 */
+	@Override
+	public List<PropertyOperation> findStagedOperations(String stagingNode) {
+		final List<PropertyOperation> operations = Lists.newArrayList();
+		try {
+			for (StagedOperation staged : readStaged(stagingNode)) {
+				operations.add(staged.operation);
+			}
+		} catch (Exception e) {
+			LOGGER.error(e.getMessage(), e);
+		}
+		return operations;
+	}
+
+	/**
+	 * 在一个事务中把暂存的修改写入配置组、递增配置组epoch并删除暂存节点, 客户端只收到一次通知.<br>
+	 * 暂存节点在读取后被修改或新增时事务失败, 不会发布未读取到的修改
+	 * @param stagingNode 暂存的配置组节点
+	 * @param groupNode 配置组节点
+	 * @return 发布的修改, 带有注释, 由调用方写入注释树; 失败时返回null
+	 */
+	@Override
+	public List<PropertyOperation> publishStaged(String stagingNode, String groupNode) {
+		LOGGER.debug("Publish staged node [{}] to group: [{}]", stagingNode, groupNode);
+		try {
+			final List<StagedOperation> staged = readStaged(stagingNode);
+			if (staged.isEmpty()) {
+				return Lists.newArrayList();
+			}
+			final List<PropertyOperation> operations = Lists.newArrayListWithCapacity(staged.size());
+			for (StagedOperation item : staged) {
+				operations.add(item.operation);
+			}
+
+			int groupVersion = ensureGroup(groupNode, true).getVersion();
+			final Set<String> existingKeys = Sets.newHashSet(client.getChildren().forPath(groupNode));
+			for (int retry = 0; ; retry++) {
+				CuratorTransaction transaction = client.inTransaction();
+				final Set<String> keys = Sets.newHashSet(existingKeys);
+				final List<String> changedKeys = Lists.newArrayList();
+				for (PropertyOperation operation : operations) {
+					final CuratorTransactionFinal added = addOperation(transaction, groupNode, operation, keys);
+					if (added != null) {
+						transaction = added;
+						changedKeys.add(operation.getKey());
+					}
+				}
+				for (StagedOperation item : staged) {
+					transaction = transaction.delete().withVersion(item.version).forPath(ZKPaths.makePath(stagingNode, item.operation.getKey())).and();
+				}
+				transaction = transaction.delete().forPath(stagingNode).and();
+				if (!changedKeys.isEmpty()) {
+					final GroupEpoch epoch = new GroupEpoch(groupVersion + 1L, changedKeys);
+					transaction = transaction.setData().withVersion(groupVersion).forPath(groupNode, epoch.toBytes()).and();
+				}
+
+				try {
+					((CuratorTransactionFinal) transaction).commit();
+					return operations;
+				} catch (KeeperException.BadVersionException e) {
+					//epoch在最后, 只有epoch的版本冲突可以重试
+					if (retry >= EPOCH_RETRIES || changedKeys.isEmpty() || failedOperation(e) != changedKeys.size() + staged.size() + 1) {
+						throw e;
+					}
+					LOGGER.debug("Epoch of group [{}] changed concurrently, retry.", groupNode);
+					groupVersion = ensureGroup(groupNode, true).getVersion();
+				}
+			}
+		} catch (Exception e) {
+			LOGGER.error(e.getMessage(), e);
+		} finally {
+			cache.invalidateTree(groupNode);
+			cache.invalidateTree(stagingNode);
+		}
+		return null;
+	}
+
+	private List<StagedOperation> readStaged(String stagingNode) throws Exception {
+		final List<String> children = cache.getChildren(stagingNode);
+		if (children == null) {
+			return Lists.newArrayList();
+		}
+		final List<String> keys = Lists.newArrayList(children);
+		Collections.sort(keys);
+		final List<String> paths = Lists.newArrayListWithCapacity(keys.size());
+		for (String key : keys) {
+			paths.add(ZKPaths.makePath(stagingNode, key));
+		}
+		final NodeReadCache.NodeData[] data = cache.getData(paths);
+
+		final List<StagedOperation> staged = Lists.newArrayListWithCapacity(keys.size());
+		for (int i = 0; i < keys.size(); i++) {
+			if (data[i] != null) {
+				staged.add(new StagedOperation(decodeStaged(keys.get(i), data[i].getBytes()), data[i].getVersion()));
+			}
+		}
+		return staged;
+	}
+
+	/**
+	 * 暂存节点的数据: 1字节操作类型, 4字节大端的期望版本, 4字节大端的注释长度(没有注释时为-1), UTF-8注释, 之后是UTF-8的值
+	 */
+	private static byte[] encodeStaged(PropertyOperation operation) {
+		final byte[] comment = operation.getComment() == null ? new byte[]{} : operation.getComment().getBytes(Charsets.UTF_8);
+		final byte[] value = Strings.nullToEmpty(operation.getValue()).getBytes(Charsets.UTF_8);
+		final ByteBuffer buffer = ByteBuffer.allocate(STAGED_HEADER_LENGTH + comment.length + value.length);
+		buffer.put((byte) operation.getType().ordinal()).putInt(operation.getExpectedVersion())
+				.putInt(operation.getComment() == null ? -1 : comment.length).put(comment).put(value);
+		return buffer.array();
+	}
+
+	private static PropertyOperation decodeStaged(String key, byte[] data) {
+		final ByteBuffer buffer = ByteBuffer.wrap(data);
+		final PropertyOperation.Type type = PropertyOperation.Type.values()[buffer.get()];
+		final int expectedVersion = buffer.getInt();
+		final int commentLength = buffer.getInt();
+		final int valueOffset = STAGED_HEADER_LENGTH + Math.max(commentLength, 0);
+		final PropertyOperation operation = new PropertyOperation(type, key,
+				type == PropertyOperation.Type.DELETE ? null : new String(data, valueOffset, data.length - valueOffset, Charsets.UTF_8));
+		if (commentLength >= 0) {
+			operation.setComment(new String(data, STAGED_HEADER_LENGTH, commentLength, Charsets.UTF_8));
+		}
+		operation.setExpectedVersion(expectedVersion);
+		return operation;
+	}
+
+	/**
+	 * 暂存的修改及暂存节点的数据版本
+	 */
+	private static final class StagedOperation {
+
+		private final PropertyOperation operation;
+
+		private final int version;
+
+		StagedOperation(PropertyOperation operation, int version) {
+			this.operation = operation;
+			this.version = version;
+		}
+
+	}
+
+	/**
+	 * @return 事务中导致失败的操作序号, 无法确定时返回-1
+	 */
+	private static int failedOperation(KeeperException e) {
+		final List<OpResult> results = e.getResults();
+		if (results != null) {
+			for (int i = 0; i < results.size(); i++) {
+				if (results.get(i) instanceof OpResult.ErrorResult) {
+					final int err = ((OpResult.ErrorResult) results.get(i)).getErr();
+					if (err != KeeperException.Code.OK.intValue() && err != KeeperException.Code.RUNTIMEINCONSISTENCY.intValue()) {
+						return i;
+					}
+				}
+			}
+		}
+		return -1;
+	}
+
+	private static void updateExistingKeys(List<PropertyOperation> operations, Set<String> existingKeys) {
+		for (PropertyOperation operation : operations) {
+			if (operation.getType() == PropertyOperation.Type.DELETE) {
+				existingKeys.remove(operation.getKey());
+			} else {
+				existingKeys.add(operation.getKey());
+			}
+		}
+	}
+
+	/**
+	 * 获取配置组节点状态, 不存在时创建, withEpoch时写入初始epoch
+	 */
+	private Stat ensureGroup(String groupNode, boolean withEpoch) throws Exception {
+		Stat stat = client.checkExists().forPath(groupNode);
+		if (stat == null) {
+			try {
+				client.create().creatingParentsIfNeeded().forPath(groupNode, withEpoch ? GroupEpoch.initial().toBytes() : new byte[]{});
+			} catch (KeeperException.NodeExistsException e) {
+				LOGGER.debug("Group [{}] created concurrently.", groupNode);
+			}
+			stat = client.checkExists().forPath(groupNode);
+		}
+		return stat;
+	}
+
 }
@@ -0,0 +1,350 @@
+package com.dangdang.config.face.service;
+
+import com.dangdang.config.face.entity.PropertyItem;
+import com.dangdang.config.face.entity.SearchResult;
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Objects;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.curator.utils.ZKPaths;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 一个根节点下所有版本和配置组的倒排索引, 按词前缀匹配配置项的key和值.<br>
+ * <br>
+ * 只由一个线程建立和更新, 查询可以并发进行; 更新期间的查询可能看到部分更新的结果
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+final class PropertyIndex {
+
+	/**
+	 * 版本名称的后缀, 表示该版本的注释信息, 不建立索引
+	 */
+	private static final String COMMENT_SUFFIX = "$";
+
+	private static final Splitter TOKENIZER = Splitter.on(CharMatcher.JAVA_LETTER_OR_DIGIT.negate()).omitEmptyStrings();
+
+	private static final Splitter PATH_SPLITTER = Splitter.on('/').omitEmptyStrings();
+
+	private static final Comparator<Posting> ORDER = new Comparator<Posting>() {
+		@Override
+		public int compare(Posting o1, Posting o2) {
+			int result = o2.version.compareTo(o1.version);
+			if (result == 0) {
+				result = o1.group.compareTo(o2.group);
+			}
+			return result != 0 ? result : o1.key.compareTo(o2.key);
+		}
+	};
+
+	private final String root;
+
+	private final INodeService nodeService;
+
+	/**
+	 * 版本 -> 配置组 -> key -> value
+	 */
+	private final ConcurrentMap<String, ConcurrentMap<String, Map<String, String>>> versions = new ConcurrentHashMap<>();
+
+	/**
+	 * 小写的词 -> 包含该词的配置项
+	 */
+	private final ConcurrentSkipListMap<String, Set<Posting>> tokens = new ConcurrentSkipListMap<>();
+
+	private volatile boolean ready;
+
+	PropertyIndex(String root, INodeService nodeService) {
+		this.root = root;
+		this.nodeService = nodeService;
+	}
+
+	/**
+	 * 读取全部版本并建立索引
+	 */
+	void build() {
+		syncVersions(true);
+		ready = true;
+	}
+
+	/**
+	 * 根据变化的节点更新索引, 同一配置组的多次变化只重新读取一次
+	 * @param paths 变化的节点
+	 */
+	void refresh(Collection<String> paths) {
+		final Set<String> changedVersions = Sets.newHashSet();
+		final Map<String, Set<String>> changedGroups = Maps.newHashMap();
+		for (String path : paths) {
+			if ("/".equals(path) || root.startsWith(path + "/")) {
+				syncVersions(true);
+				return;
+			}
+			if (!path.equals(root) && !path.startsWith(root + "/")) {
+				continue;
+			}
+			final List<String> parts = PATH_SPLITTER.splitToList(path.substring(root.length()));
+			if (parts.isEmpty()) {
+				syncVersions(false);
+			} else if (!parts.get(0).endsWith(COMMENT_SUFFIX)) {
+				if (parts.size() == 1) {
+					changedVersions.add(parts.get(0));
+				} else {
+					Set<String> groups = changedGroups.get(parts.get(0));
+					if (groups == null) {
+						groups = Sets.newHashSet();
+						changedGroups.put(parts.get(0), groups);
+					}
+					groups.add(parts.get(1));
+				}
+			}
+		}
+		for (String version : changedVersions) {
+			syncGroups(version, false);
+		}
+		for (Map.Entry<String, Set<String>> entry : changedGroups.entrySet()) {
+			if (versions.containsKey(entry.getKey())) {
+				for (String group : entry.getValue()) {
+					indexGroup(entry.getKey(), group);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param reindex 是否重新读取已索引的版本, 否则只处理新增和删除的版本
+	 */
+	private void syncVersions(boolean reindex) {
+		final List<String> children = nodeService.listChildren(root);
+		final Set<String> current = Sets.newHashSet();
+		if (children != null) {
+			for (String version : children) {
+				if (!version.endsWith(COMMENT_SUFFIX)) {
+					current.add(version);
+				}
+			}
+		}
+		for (String version : Lists.newArrayList(versions.keySet())) {
+			if (!current.contains(version)) {
+				removeVersion(version);
+			}
+		}
+		for (String version : current) {
+			if (reindex || !versions.containsKey(version)) {
+				syncGroups(version, true);
+			}
+		}
+	}
+
+	/**
+	 * @param reindex 是否重新读取已索引的配置组, 否则只处理新增和删除的配置组
+	 */
+	private void syncGroups(String version, boolean reindex) {
+		final List<String> children = nodeService.listChildren(ZKPaths.makePath(root, version));
+		if (children == null) {
+			removeVersion(version);
+			return;
+		}
+		ConcurrentMap<String, Map<String, String>> groups = versions.get(version);
+		if (groups == null) {
+			groups = new ConcurrentHashMap<>();
+			versions.put(version, groups);
+		}
+		for (String group : Lists.newArrayList(groups.keySet())) {
+			if (!children.contains(group)) {
+				unindex(version, group, groups.remove(group));
+			}
+		}
+		for (String group : children) {
+			if (reindex || !groups.containsKey(group)) {
+				indexGroup(version, group);
+			}
+		}
+	}
+
+	private void indexGroup(String version, String group) {
+		final ConcurrentMap<String, Map<String, String>> groups = versions.get(version);
+		if (groups == null) {
+			return;
+		}
+		final List<PropertyItem> items = nodeService.findProperties(ZKPaths.makePath(root, version, group));
+		final Map<String, String> properties = Maps.newHashMapWithExpectedSize(items.size());
+		for (PropertyItem item : items) {
+			properties.put(item.getName(), item.getValue() == null ? "" : item.getValue());
+		}
+
+		final Map<String, String> previous = groups.put(group, properties);
+		for (Map.Entry<String, String> entry : properties.entrySet()) {
+			if (previous == null || !Objects.equal(previous.get(entry.getKey()), entry.getValue())) {
+				final Set<String> oldTokens = previous == null ? Collections.<String> emptySet()
+						: tokenize(entry.getKey(), previous.get(entry.getKey()));
+				final Set<String> newTokens = tokenize(entry.getKey(), entry.getValue());
+				final Posting posting = new Posting(version, group, entry.getKey());
+				removePostings(Sets.difference(oldTokens, newTokens), posting);
+				addPostings(Sets.difference(newTokens, oldTokens), posting);
+			}
+		}
+		if (previous != null) {
+			for (Map.Entry<String, String> entry : previous.entrySet()) {
+				if (!properties.containsKey(entry.getKey())) {
+					removePostings(tokenize(entry.getKey(), entry.getValue()), new Posting(version, group, entry.getKey()));
+				}
+			}
+		}
+	}
+
+	private void removeVersion(String version) {
+		final ConcurrentMap<String, Map<String, String>> groups = versions.remove(version);
+		if (groups != null) {
+			for (Map.Entry<String, Map<String, String>> entry : groups.entrySet()) {
+				unindex(version, entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	private void unindex(String version, String group, Map<String, String> properties) {
+		if (properties != null) {
+			for (Map.Entry<String, String> entry : properties.entrySet()) {
+				removePostings(tokenize(entry.getKey(), entry.getValue()), new Posting(version, group, entry.getKey()));
+			}
+		}
+	}
+
+	private void addPostings(Set<String> words, Posting posting) {
+		for (String word : words) {
+			Set<Posting> postings = tokens.get(word);
+			if (postings == null) {
+				postings = Collections.newSetFromMap(new ConcurrentHashMap<Posting, Boolean>());
+				tokens.put(word, postings);
+			}
+			postings.add(posting);
+		}
+	}
+
+	private void removePostings(Set<String> words, Posting posting) {
+		for (String word : words) {
+			final Set<Posting> postings = tokens.get(word);
+			if (postings != null && postings.remove(posting) && postings.isEmpty()) {
+				tokens.remove(word, postings);
+			}
+		}
+	}
+
+	/**
+	 * 查询包含所有查询词的配置项, 查询词按前缀匹配key或值中的词
+	 * @param query 查询内容, 按非字母数字的字符分词, 不区分大小写
+	 * @param page 从0开始的页码
+	 * @param size 每页数量
+	 * @return
+	 */
+	SearchResult search(String query, int page, int size) {
+		Set<Posting> matched = null;
+		for (String word : tokenize(query)) {
+			final Set<Posting> postings = Sets.newHashSet();
+			final ConcurrentNavigableMap<String, Set<Posting>> prefixed = tokens.subMap(word, true, word + Character.MAX_VALUE, true);
+			for (Set<Posting> set : prefixed.values()) {
+				if (matched == null) {
+					postings.addAll(set);
+				} else {
+					for (Posting posting : set) {
+						if (matched.contains(posting)) {
+							postings.add(posting);
+						}
+					}
+				}
+			}
+			matched = postings;
+			if (matched.isEmpty()) {
+				break;
+			}
+		}
+		if (matched == null) {
+			matched = Collections.emptySet();
+		}
+
+		final List<Posting> sorted = Lists.newArrayList(matched);
+		Collections.sort(sorted, ORDER);
+		final int from = (int) Math.min((long) page * size, sorted.size());
+		final int to = Math.min(from + size, sorted.size());
+		final List<SearchResult.Hit> hits = Lists.newArrayListWithCapacity(to - from);
+		for (Posting posting : sorted.subList(from, to)) {
+			hits.add(new SearchResult.Hit(posting.version, posting.group, posting.key, valueOf(posting)));
+		}
+		return new SearchResult(ready, sorted.size(), page, size, hits);
+	}
+
+	/**
+	 * @return 配置项当前的值, 更新期间已删除时为null
+	 */
+	private String valueOf(Posting posting) {
+		final Map<String, Map<String, String>> groups = versions.get(posting.version);
+		final Map<String, String> properties = groups == null ? null : groups.get(posting.group);
+		return properties == null ? null : properties.get(posting.key);
+	}
+
+	private static Set<String> tokenize(String key, String value) {
+		final Set<String> words = tokenize(key);
+		words.addAll(tokenize(value));
+		return words;
+	}
+
+	private static Set<String> tokenize(String text) {
+		final Set<String> words = Sets.newHashSet();
+		if (text != null) {
+			for (String word : TOKENIZER.split(text.toLowerCase(Locale.ROOT))) {
+				words.add(word);
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * 索引中的配置项
+	 */
+	private static final class Posting {
+
+		private final String version;
+
+		private final String group;
+
+		private final String key;
+
+		Posting(String version, String group, String key) {
+			this.version = version;
+			this.group = group;
+			this.key = key;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(version, group, key);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Posting)) {
+				return false;
+			}
+			final Posting other = (Posting) obj;
+			return version.equals(other.version) && group.equals(other.group) && key.equals(other.key);
+		}
+
+	}
+
+}
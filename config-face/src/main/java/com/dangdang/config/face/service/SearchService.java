@@ -0,0 +1,125 @@
+package com.dangdang.config.face.service;
+
+import com.dangdang.config.face.entity.SearchResult;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 跨版本搜索配置项. 每个根节点第一次搜索时在后台建立索引, 之后根据节点变化的通知更新.<br>
+ * <br>
+ * 索引读取节点时经过{@link NodeService}的读缓存, 读过的节点都注册了watcher, 所以外部的修改同样会通知到
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+@Service
+public class SearchService implements NodeChangeListener {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SearchService.class);
+
+	/**
+	 * 收到变化通知后等待的时间, 合并同一时间段内的多次变化
+	 */
+	private static final long REFRESH_DELAY_MILLIS = 500;
+
+	@Autowired
+	private INodeService nodeService;
+
+	/**
+	 * 根节点 -> 索引
+	 */
+	private final ConcurrentMap<String, PropertyIndex> indexes = Maps.newConcurrentMap();
+
+	private final Set<String> changedPaths = ConcurrentHashMap.newKeySet();
+
+	private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+
+	/**
+	 * 建立和更新索引都在这一个线程中进行
+	 */
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactoryBuilder().setNameFormat("config-face-index").setDaemon(true).build());
+
+	@PostConstruct
+	private void init() {
+		nodeService.addChangeListener(this);
+	}
+
+	@PreDestroy
+	private void destroy() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * 搜索根节点下所有版本的配置项, 索引未建立完成时返回已建立部分的结果
+	 * @param root 根节点
+	 * @param query 查询内容
+	 * @param page 从0开始的页码
+	 * @param size 每页数量
+	 * @return
+	 */
+	public SearchResult search(String root, String query, int page, int size) {
+		PropertyIndex index = indexes.get(root);
+		if (index == null) {
+			final PropertyIndex created = new PropertyIndex(root, nodeService);
+			index = indexes.putIfAbsent(root, created);
+			if (index == null) {
+				index = created;
+				LOGGER.info("Build search index of {}.", root);
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						created.build();
+					}
+				});
+			}
+		}
+		return index.search(query, page, size);
+	}
+
+	@Override
+	public void nodeChanged(String path) {
+		if (indexes.isEmpty()) {
+			return;
+		}
+		changedPaths.add(path);
+		if (refreshScheduled.compareAndSet(false, true)) {
+			executor.schedule(new Runnable() {
+				@Override
+				public void run() {
+					refresh();
+				}
+			}, REFRESH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void refresh() {
+		refreshScheduled.set(false);
+		final List<String> paths = Lists.newArrayList(changedPaths);
+		changedPaths.removeAll(paths);
+		for (PropertyIndex index : indexes.values()) {
+			try {
+				index.refresh(paths);
+			} catch (RuntimeException e) {
+				LOGGER.error("Refresh search index failed.", e);
+			}
+		}
+	}
+
+}
@@ -79,6 +79,16 @@ IndexPage = {
             var newVersionForm = $(this).parents("form:first");
             var version = newVersionForm.find("input[name=version]:first").val();
             var fromVersion = newVersionForm.find("select[name=fromVersion]:first").val();
+            var button = $(this);
+            button.prop("disabled", true);
+            // Show progress while cloning
+            var progressTimer = fromVersion ? setInterval(function () {
+                $.get("/version/" + version + "/progress", function (data) {
+                    if(data.suc) {
+                        button.text(data.body.clonedProperties + " / " + data.body.properties);
+                    }
+                });
+            }, 1000) : null;
             $.ajax({
                 url: "/version/" + version,
                 method: "post",
@@ -91,6 +101,10 @@ IndexPage = {
                     }else {
                         alert(data.message);
                     }
+                },
+                complete: function () {
+                    clearInterval(progressTimer);
+                    button.prop("disabled", false).text("Submit");
                 }
             });
         });
@@ -125,6 +139,60 @@ IndexPage = {
             });
         });
 
+        // Stage property changes, written to the group only when published
+        var stage = function (data, onSuccess) {
+            $.ajax({
+                url: "/stage",
+                method: "post",
+                data: data,
+                success: function (data) {
+                    if(data.suc) {
+                        if(onSuccess) {
+                            onSuccess();
+                        }
+                        IndexPage.findSelectedGroup().click();
+                    } else {
+                        alert(data.message);
+                    }
+                }
+            });
+        };
+        $("#dataD").on("click", "button[name=stageNewProp]", function (e) {
+            e.preventDefault();
+            var inputGroup = $(this).parents(".input-group:first");
+            stage({
+                "version": inputGroup.find("[name=version]:first").val(),
+                "group": inputGroup.find("[name=group]:first").val(),
+                "key": inputGroup.find("[name=key]:first").val(),
+                "value": inputGroup.find("[name=value]:first").val(),
+                "comment": inputGroup.find("[name=comment]:first").val(),
+                "type": "CREATE"
+            });
+        });
+
+        // Publish or discard staged changes
+        $("#dataD").on("click", "button[name=publishStaged],button[name=discardStaged]", function (e) {
+            e.preventDefault();
+            var button = $(this);
+            var publish = button.attr("name") === "publishStaged";
+            if(!publish && !window.confirm("Discard staged changes?")) {
+                return;
+            }
+            button.prop("disabled", true);
+            $.ajax({
+                url: "/stage/" + button.attr("version") + "/" + button.attr("group"),
+                method: publish ? "post" : "delete",
+                success: function (data) {
+                    if(data.suc) {
+                        IndexPage.findSelectedGroup().click();
+                    } else {
+                        alert(data.message);
+                        button.prop("disabled", false);
+                    }
+                }
+            });
+        });
+
         // Remove property
         $("#dataD").on("click", "a[delprop]", function (e) {
             e.preventDefault();
@@ -133,6 +201,16 @@ IndexPage = {
             var group = delpropA.attr("group");
             var key = delpropA.attr("delprop");
 
+            if(e.shiftKey) {
+                stage({
+                    "version": version,
+                    "group": group,
+                    "key": key,
+                    "type": "DELETE",
+                    "dataVersion": delpropA.attr("dataversion")
+                });
+                return;
+            }
             if(window.confirm("Remove key " + key + "?")) {
                 $.ajax({
                     url: "/prop/" + version + "/" + group + "/" + key,
@@ -157,6 +235,7 @@ IndexPage = {
             $("#updateVersion").val(updatepropA.attr("version"));
             $("#updateGroup").val(updatepropA.attr("group"));
             $("#updateKey").val(updatepropA.attr("updateprop"));
+            $("#updateDataVersion").val(updatepropA.attr("dataversion"));
             $("#updateValue").val(theRow.find("td[name=value]:first").text());
             $("#updateComment").val(theRow.find("td[name=comment]:first").text());
             $("#updatePropModal").modal("show");
@@ -172,6 +251,7 @@ IndexPage = {
             var key = $("#updateKey").val();
             var value = $("#updateValue").val();
             var comment = $("#updateComment").val();
+            var dataVersion = $("#updateDataVersion").val();
 
             $.ajax({
                 url: "/prop",
@@ -181,7 +261,8 @@ IndexPage = {
                     "group": group,
                     "key": key,
                     "value": value,
-                    "comment": comment
+                    "comment": comment,
+                    "dataVersion": dataVersion
                 },
                 success: function (data) {
                     if(data.suc){
@@ -194,6 +275,57 @@ IndexPage = {
             });
         });
 
+        updatePropModal.on("click", "button[name=stageButton]", function (e) {
+            e.preventDefault();
+            stage({
+                "version": $("#updateVersion").val(),
+                "group": $("#updateGroup").val(),
+                "key": $("#updateKey").val(),
+                "value": $("#updateValue").val(),
+                "comment": $("#updateComment").val(),
+                "type": "UPDATE",
+                "dataVersion": $("#updateDataVersion").val()
+            }, function () {
+                $("#updatePropModal").modal("hide");
+            });
+        });
+
+        // Search properties of all versions
+        var searchModal = $("#searchModal");
+        var search = function (q, page) {
+            $.get("/search", {"q": q, "page": page, "size": 20}, function (data) {
+                if(!data.suc) {
+                    alert(data.message);
+                    return;
+                }
+                var result = data.body;
+                var hits = $("#searchHits").empty();
+                $.each(result.hits, function (i, hit) {
+                    $("<tr>")
+                        .append($("<td>").append($("<a>").attr("href", "/version/" + encodeURIComponent(hit.version)).text(hit.version)))
+                        .append($("<td>").text(hit.group))
+                        .append($("<td>").text(hit.key))
+                        .append($("<td>").text(hit.value))
+                        .appendTo(hits);
+                });
+                $("#searchLabel").text(result.total + " found" + (data.message ? ", " + data.message : ""));
+                searchModal.data("q", q).data("page", page);
+                searchModal.find("button[name=prevPage]").prop("disabled", page <= 0);
+                searchModal.find("button[name=nextPage]").prop("disabled", (page + 1) * result.size >= result.total);
+                searchModal.modal("show");
+            });
+        };
+        $("#searchForm").on("submit", function (e) {
+            e.preventDefault();
+            search($(this).find("input[name=q]:first").val(), 0);
+        });
+        searchModal.on("click", "button[name=prevPage]", function (e) {
+            search(searchModal.data("q"), searchModal.data("page") - 1);
+        });
+        searchModal.on("click", "button[name=nextPage]", function (e) {
+            search(searchModal.data("q"), searchModal.data("page") + 1);
+        });
+
         // display upload file name
         var importFile = $("#importFile");
         importFile.on("change", function () {
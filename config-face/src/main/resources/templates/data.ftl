@@ -9,7 +9,31 @@
         <input type="hidden" name="group" value="${group}">
     </div>
     <button name="newProp" class="btn btn-outline-secondary" style="font-size: small;" type="button">Add</button>
+    <button name="stageNewProp" class="btn btn-outline-secondary" style="font-size: small;" type="button">Stage</button>
 </div>
+[#if staged?? && staged?has_content]
+<div class="border rounded p-2 mb-2">
+    <div class="d-flex justify-content-between align-items-center mb-1">
+        <span>${staged?size} staged changes, clients see them after publish</span>
+        <div>
+            <button name="publishStaged" version="${version}" group="${group}" class="btn btn-sm btn-outline-dark" type="button">Publish</button>
+            <button name="discardStaged" version="${version}" group="${group}" class="btn btn-sm btn-outline-secondary" type="button">Discard</button>
+        </div>
+    </div>
+    <table class="table table-sm mb-0">
+        <tbody>
+        [#list staged as operation]
+            <tr>
+                <td style="width: 5em;">${operation.type}</td>
+                <td>${operation.key}</td>
+                <td>${operation.value!""}</td>
+                <td>${operation.comment!""}</td>
+            </tr>
+        [/#list]
+        </tbody>
+    </table>
+</div>
+[/#if]
 <div class="table-responsive datas">
     <table class="table table-sm">
         <thead>
@@ -26,8 +50,8 @@
                 <tr>
                     <td>
                         <div style="width: 4em;">
-                            <a version="${version}" group="${group}" updateprop="${item.name}" href="#"><img src="/image/pencil.png"></a>
-                            <a version="${version}" group="${group}" delprop="${item.name}" href="#"><img src="/image/trash.png"></a>
+                            <a version="${version}" group="${group}" updateprop="${item.name}" dataversion="${item.dataVersion?c}" href="#"><img src="/image/pencil.png"></a>
+                            <a version="${version}" group="${group}" delprop="${item.name}" dataversion="${item.dataVersion?c}" title="Shift+click to stage the removal" href="#"><img src="/image/trash.png"></a>
                         </div>
                     </td>
                     <td name="name">${item.name}</td>
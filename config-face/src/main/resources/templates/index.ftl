@@ -33,7 +33,10 @@
         </button>
 
         <div class="collapse navbar-collapse" id="navbarSupportedContent">
-            <button class="btn btn-sm btn-outline-secondary mr-auto mybtn" type="button" data-toggle="modal" data-target="#newModal">New</button>
+            <button class="btn btn-sm btn-outline-secondary mybtn" type="button" data-toggle="modal" data-target="#newModal">New</button>
+            <form class="form-inline ml-2 mr-auto" id="searchForm">
+                <input type="search" required spellcheck="false" name="q" class="form-control form-control-sm" placeholder="Search all versions" aria-label="search">
+            </form>
             <button class="btn btn-sm btn-outline-secondary mybtn" [#if theVersion??][#else]disabled[/#if] type="button" data-toggle="modal" data-target="#importModal">Import</button>
             <button class="btn btn-sm btn-outline-secondary mybtn" [#if theVersion??][#else]disabled[/#if] type="button" data-toggle="modal" data-target="#exportModal">Export</button>
             <a href="/logout"><img class="ml-4" style="margin-top: 0.4em;" src="/image/account-logout.svg"></a>
@@ -41,6 +44,12 @@
     </nav>
 
     <div class="container-fluid">
+        [#if failedGroups??]
+            <div class="alert alert-danger alert-dismissible" role="alert">
+                Import failed for groups: ${failedGroups?html}
+                <button type="button" class="close" data-dismiss="alert" aria-label="Close"><span aria-hidden="true">&times;</span></button>
+            </div>
+        [/#if]
         <div class="row">
             <div class="col-3" style="font-size: smaller;">
                 <div class="groups">
@@ -146,9 +155,11 @@
                     </div>
                     <input type="hidden" name="updateVersion" id="updateVersion">
                     <input type="hidden" name="updateGroup" id="updateGroup">
+                    <input type="hidden" name="updateDataVersion" id="updateDataVersion">
                 </div>
                 <div class="modal-footer">
                     <button type="button" class="btn btn-outline-dark" name="updateButton">Save changes</button>
+                    <button type="button" class="btn btn-outline-dark" name="stageButton">Stage</button>
                     <button type="button" class="btn btn-outline-dark" data-dismiss="modal">Close</button>
                 </div>
             </div>
@@ -194,10 +205,45 @@
                                 <button type="submit" class="btn btn-outline-secondary">Upload</button>
                             </div>
                         </div>
+                        <div class="form-check">
+                            <input type="checkbox" name="prune" value="true" class="form-check-input" id="importPrune">
+                            <label class="form-check-label" for="importPrune">Delete properties not in file</label>
+                        </div>
                     </form>
                 </div>
             </div>
         </div>
     </div>
+
+    <!-- Search Modal -->
+    <div class="modal fade" id="searchModal" tabindex="-1" role="dialog" aria-labelledby="searchLabel" aria-hidden="true">
+        <div class="modal-dialog modal-lg" role="document">
+            <div class="modal-content">
+                <div class="modal-header">
+                    <h5 class="modal-title" id="searchLabel"></h5>
+                    <button type="button" class="close" data-dismiss="modal" aria-label="Close">
+                        <span aria-hidden="true">&times;</span>
+                    </button>
+                </div>
+                <div class="modal-body" style="font-size: small;">
+                    <table class="table table-sm table-hover" style="table-layout: fixed; word-wrap: break-word;">
+                        <thead>
+                            <tr>
+                                <th style="width: 15%;">Version</th>
+                                <th style="width: 20%;">Group</th>
+                                <th style="width: 25%;">Key</th>
+                                <th>Value</th>
+                            </tr>
+                        </thead>
+                        <tbody id="searchHits"></tbody>
+                    </table>
+                </div>
+                <div class="modal-footer">
+                    <button type="button" class="btn btn-outline-dark" name="prevPage">Prev</button>
+                    <button type="button" class="btn btn-outline-dark" name="nextPage">Next</button>
+                </div>
+            </div>
+        </div>
+    </div>
 </body>
 </html>
\ No newline at end of file
@@ -0,0 +1,234 @@
+package com.dangdang.config.face.service;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.state.ConnectionState;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 缓存命中时返回同一个实例, 重新读取后是新的实例
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public class NodeReadCacheTest {
+
+	private TestingServer server;
+
+	private CuratorFramework client;
+
+	private NodeReadCache cache;
+
+	private final BlockingQueue<String> changes = new LinkedBlockingQueue<>();
+
+	@Before
+	public void setUp() throws Exception {
+		server = new TestingServer();
+		client = CuratorFrameworkFactory.newClient(server.getConnectString(), new RetryOneTime(1000));
+		cache = new NodeReadCache(client);
+		client.start();
+		client.blockUntilConnected();
+		cache.addListener(new NodeChangeListener() {
+			@Override
+			public void nodeChanged(String path) {
+				changes.add(path);
+			}
+		});
+
+		for (String path : Arrays.asList("/t/a/b", "/t/ab", "/t/a0")) {
+			client.create().creatingParentsIfNeeded().forPath(path, bytes(path));
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	public void cachedUntilChanged() throws Exception {
+		final NodeReadCache.NodeData data = cache.getData("/t/ab");
+		assertArrayEquals(bytes("/t/ab"), data.getBytes());
+		assertSame(data, cache.getData("/t/ab"));
+
+		client.setData().forPath("/t/ab", bytes("changed"));
+		assertEquals("/t/ab", changes.poll(10, TimeUnit.SECONDS));
+		final NodeReadCache.NodeData changed = cache.getData("/t/ab");
+		assertArrayEquals(bytes("changed"), changed.getBytes());
+		assertEquals(1, changed.getVersion());
+	}
+
+	@Test
+	public void watcherRemovesOnlyChangedNode() throws Exception {
+		final NodeReadCache.NodeData a = cache.getData("/t/a/b");
+		final NodeReadCache.NodeData ab = cache.getData("/t/ab");
+
+		client.setData().forPath("/t/a/b", bytes("changed"));
+		assertEquals("/t/a/b", changes.poll(10, TimeUnit.SECONDS));
+
+		assertNotSame(a, cache.getData("/t/a/b"));
+		assertSame(ab, cache.getData("/t/ab"));
+	}
+
+	@Test
+	public void invalidateTreeRemovesOnlySubtree() throws Exception {
+		final Object parentChildren = cache.getChildren("/t");
+		final Object children = cache.getChildren("/t/a");
+		final NodeReadCache.NodeData a = cache.getData("/t/a");
+		final NodeReadCache.NodeData b = cache.getData("/t/a/b");
+		final NodeReadCache.NodeData ab = cache.getData("/t/ab");
+		final NodeReadCache.NodeData a0 = cache.getData("/t/a0");
+
+		cache.invalidateTree("/t/a");
+		assertEquals("/t", changes.poll(10, TimeUnit.SECONDS));
+
+		assertNotSame(parentChildren, cache.getChildren("/t"));
+		assertNotSame(children, cache.getChildren("/t/a"));
+		assertNotSame(a, cache.getData("/t/a"));
+		assertNotSame(b, cache.getData("/t/a/b"));
+		// 同一前缀的兄弟节点不受影响
+		assertSame(ab, cache.getData("/t/ab"));
+		assertSame(a0, cache.getData("/t/a0"));
+	}
+
+	@Test
+	public void clearRemovesEverything() throws Exception {
+		final NodeReadCache.NodeData ab = cache.getData("/t/ab");
+		final Object children = cache.getChildren("/t");
+
+		cache.clear();
+
+		assertNotSame(ab, cache.getData("/t/ab"));
+		assertNotSame(children, cache.getChildren("/t"));
+	}
+
+	@Test
+	public void clearOnlyWhenConnectionLost() throws Exception {
+		final NodeReadCache.NodeData ab = cache.getData("/t/ab");
+
+		// 暂时断开后重连, 会话仍在, 缓存有效
+		cache.stateChanged(client, ConnectionState.SUSPENDED);
+		cache.stateChanged(client, ConnectionState.RECONNECTED);
+		assertSame(ab, cache.getData("/t/ab"));
+
+		cache.stateChanged(client, ConnectionState.SUSPENDED);
+		cache.stateChanged(client, ConnectionState.LOST);
+		final NodeReadCache.NodeData lost = cache.getData("/t/ab");
+		assertNotSame(ab, lost);
+
+		// 丢失之后的重连再清空一次, 之后的重连不再清空
+		cache.stateChanged(client, ConnectionState.RECONNECTED);
+		final NodeReadCache.NodeData reconnected = cache.getData("/t/ab");
+		assertNotSame(lost, reconnected);
+		cache.stateChanged(client, ConnectionState.SUSPENDED);
+		cache.stateChanged(client, ConnectionState.RECONNECTED);
+		assertSame(reconnected, cache.getData("/t/ab"));
+	}
+
+	@Test
+	public void missingNodeIsNotCached() throws Exception {
+		assertNull(cache.getData("/t/missing"));
+		assertNull(cache.getChildren("/t/missing"));
+
+		client.create().forPath("/t/missing", bytes("created"));
+		assertArrayEquals(bytes("created"), cache.getData("/t/missing").getBytes());
+		assertEquals(0, cache.getChildren("/t/missing").size());
+	}
+
+	@Test
+	public void batchReadUsesAndFillsCache() throws Exception {
+		final NodeReadCache.NodeData ab = cache.getData("/t/ab");
+
+		final NodeReadCache.NodeData[] data = cache.getData(Arrays.asList("/t/ab", "/t/a0", "/t/missing"));
+		assertSame(ab, data[0]);
+		assertArrayEquals(bytes("/t/a0"), data[1].getBytes());
+		assertNull(data[2]);
+		assertSame(data[1], cache.getData("/t/a0"));
+	}
+
+	@Test
+	public void unrelatedChangeKeepsInFlightRead() throws Exception {
+		final NodeReadCache.NodeData[] data = readWhileInvalidating("/t/a0", "/t/ab");
+		assertSame(data[0], cache.getData("/t/a0"));
+	}
+
+	@Test
+	public void changeDuringReadDropsResult() throws Exception {
+		final NodeReadCache.NodeData[] data = readWhileInvalidating("/t/a0", "/t/a0");
+		assertNotSame(data[0], cache.getData("/t/a0"));
+	}
+
+	/**
+	 * 阻塞zookeeper的事件线程, 使批量读取的回调在删除缓存之后执行
+	 */
+	private NodeReadCache.NodeData[] readWhileInvalidating(final String read, String invalidated) throws Exception {
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		cache.addListener(new NodeChangeListener() {
+			@Override
+			public void nodeChanged(String path) {
+				if ("/t/block".equals(path)) {
+					blocked.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		});
+		client.create().forPath("/t/block");
+		cache.getData("/t/block");
+		client.setData().forPath("/t/block", bytes("block"));
+		assertTrue(blocked.await(10, TimeUnit.SECONDS));
+
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final Future<NodeReadCache.NodeData[]> reading = executor.submit(new Callable<NodeReadCache.NodeData[]>() {
+				@Override
+				public NodeReadCache.NodeData[] call() throws Exception {
+					return cache.getData(Collections.singletonList(read));
+				}
+			});
+			// 等待读取请求发出
+			Thread.sleep(500);
+			cache.invalidateTree(invalidated);
+			release.countDown();
+			final NodeReadCache.NodeData[] data = reading.get(10, TimeUnit.SECONDS);
+			assertArrayEquals(bytes(read), data[0].getBytes());
+			return data;
+		} finally {
+			release.countDown();
+			executor.shutdown();
+		}
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,340 @@
+package com.dangdang.config.face.service;
+
+import com.dangdang.config.face.entity.CloneProgress;
+import com.dangdang.config.face.entity.OperationResult;
+import com.dangdang.config.face.entity.PropertyOperation;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.curator.test.TestingServer;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public class NodeServiceTest {
+
+	private TestingServer server;
+
+	private CuratorFramework client;
+
+	private NodeService nodeService;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new TestingServer();
+		nodeService = new NodeService();
+		ReflectionTestUtils.setField(nodeService, "zkAddress", server.getConnectString());
+		ReflectionTestUtils.invokeMethod(nodeService, "init");
+
+		client = CuratorFrameworkFactory.newClient(server.getConnectString(), new RetryOneTime(1000));
+		client.start();
+		client.blockUntilConnected();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		client.close();
+		ReflectionTestUtils.invokeMethod(nodeService, "destroy");
+		server.close();
+	}
+
+	@Test
+	public void conflictingVersionFailsWholeTransaction() throws Exception {
+		assertTrue(nodeService.applyGroupOperations("/r/v/g", Arrays.asList(PropertyOperation.create("a", "1"), PropertyOperation.create("b", "1"))));
+		assertEquals(1, revision("/r/v/g"));
+
+		// a的期望版本已过期, b的修改也不提交
+		assertFalse(nodeService.applyGroupOperations("/r/v/g", Arrays.asList(
+				PropertyOperation.update("b", "2", 0), PropertyOperation.update("a", "2", 5))));
+		assertEquals("1", value("/r/v/g/a"));
+		assertEquals("1", value("/r/v/g/b"));
+		assertEquals(1, revision("/r/v/g"));
+
+		assertFalse(nodeService.applyGroupOperations("/r/v/g", Collections.singletonList(PropertyOperation.create("a", "3"))));
+		assertTrue(nodeService.applyGroupOperations("/r/v/g", Arrays.asList(
+				PropertyOperation.update("a", "2", 0), PropertyOperation.delete("b"), PropertyOperation.delete("missing"))));
+		assertEquals("2", value("/r/v/g/a"));
+		assertNull(client.checkExists().forPath("/r/v/g/b"));
+		assertEquals(2, revision("/r/v/g"));
+	}
+
+	@Test
+	public void concurrentEpochChangeIsRetried() throws Exception {
+		assertTrue(nodeService.applyGroupOperations("/r/v/g", Collections.singletonList(PropertyOperation.create("a", "1"))));
+
+		// 以过期的配置组版本提交, 只有epoch冲突, 重新读取版本后成功
+		final int groupVersion = ReflectionTestUtils.invokeMethod(nodeService, "commitGroupOperations", "/r/v/g", 0,
+				Collections.singletonList(PropertyOperation.update("a", "2")), new HashSet<>(Collections.singleton("a")), true);
+		assertEquals(2, groupVersion);
+		assertEquals("2", value("/r/v/g/a"));
+		assertEquals(2, revision("/r/v/g"));
+	}
+
+	@Test
+	public void failedOperationIsIndexOfFirstError() throws Exception {
+		client.create().creatingParentsIfNeeded().forPath("/r/v/g/a", bytes("1"));
+		try {
+			client.inTransaction().setData().forPath("/r/v/g/a", bytes("2")).and()
+					.create().forPath("/r/v/g/a", bytes("2")).and()
+					.setData().forPath("/r/v/g", bytes("1")).and().commit();
+			fail();
+		} catch (KeeperException e) {
+			assertEquals(1, (int) ReflectionTestUtils.invokeMethod(nodeService, "failedOperation", e));
+		}
+		assertEquals(-1, (int) ReflectionTestUtils.invokeMethod(nodeService, "failedOperation", new KeeperException.NoNodeException()));
+	}
+
+	@Test
+	public void largeOperationsAreCommittedInChunks() throws Exception {
+		final List<PropertyOperation> operations = new ArrayList<>();
+		for (int i = 0; i < 1001; i++) {
+			operations.add(PropertyOperation.create("k" + i, String.valueOf(i)));
+		}
+		assertTrue(nodeService.applyGroupOperations("/r/v/g", operations));
+		assertEquals(1001, client.getChildren().forPath("/r/v/g").size());
+		// 每批事务递增一次epoch
+		assertEquals(3, revision("/r/v/g"));
+		assertEquals("1000", value("/r/v/g/k1000"));
+	}
+
+	@Test
+	public void failedBatchOperationDoesNotStopOthers() throws Exception {
+		assertTrue(nodeService.applyGroupOperations("/r/v/g", Arrays.asList(
+				PropertyOperation.create("a", "1"), PropertyOperation.create("b", "1"), PropertyOperation.create("c", "1"))));
+
+		final List<OperationResult> results = nodeService.batchGroupOperations("/r/v/g", Arrays.asList(
+				PropertyOperation.create("d", "1"),
+				PropertyOperation.create("a", "2"),
+				PropertyOperation.update("b", "2", 5),
+				PropertyOperation.update("c", "2", 0),
+				PropertyOperation.delete("missing"),
+				PropertyOperation.update("e", "1"),
+				PropertyOperation.delete("d")));
+
+		assertResult(results.get(0), true, 0, null);
+		assertResult(results.get(1), false, -1, "NODEEXISTS");
+		assertResult(results.get(2), false, -1, "BADVERSION");
+		assertResult(results.get(3), true, 1, null);
+		assertResult(results.get(4), true, -1, null);
+		assertResult(results.get(5), true, 0, null);
+		assertResult(results.get(6), true, -1, null);
+		assertEquals("1", value("/r/v/g/a"));
+		assertEquals("1", value("/r/v/g/b"));
+		assertEquals("2", value("/r/v/g/c"));
+		assertEquals("1", value("/r/v/g/e"));
+		assertNull(client.checkExists().forPath("/r/v/g/d"));
+		// 失败的操作不单独提交, 其余操作在同一批中只递增一次epoch
+		assertEquals(2, revision("/r/v/g"));
+	}
+
+	@Test
+	public void concurrentCreateAndDeleteAreCorrected() throws Exception {
+		assertTrue(nodeService.applyGroupOperations("/r/v/g", Collections.singletonList(PropertyOperation.create("a", "1"))));
+		nodeService.findProperties("/r/v/g");
+		final Set<String> existingKeys = new HashSet<>(Collections.singleton("gone"));
+		client.delete().forPath("/r/v/g/a");
+		client.create().forPath("/r/v/g/b", bytes("1"));
+
+		// 按过期的节点状态生成的操作失败后修正一次
+		final OperationResult[] results = new OperationResult[3];
+		ReflectionTestUtils.invokeMethod(nodeService, "commitBatch", "/r/v/g", 1, Arrays.asList(
+				PropertyOperation.update("a", "2"), PropertyOperation.update("b", "2"), PropertyOperation.delete("gone")),
+				0, 3, existingKeys, results);
+		assertResult(results[0], true, 0, null);
+		assertResult(results[1], true, 1, null);
+		assertResult(results[2], true, -1, null);
+		assertEquals("2", value("/r/v/g/a"));
+		assertEquals("2", value("/r/v/g/b"));
+	}
+
+	@Test
+	public void batchFailureAtChunkBoundary() throws Exception {
+		assertTrue(nodeService.applyGroupOperations("/r/v/g", Collections.singletonList(PropertyOperation.create("k499", "0"))));
+		final List<PropertyOperation> operations = new ArrayList<>();
+		for (int i = 0; i < 501; i++) {
+			operations.add(PropertyOperation.create("k" + i, String.valueOf(i)));
+		}
+
+		final List<OperationResult> results = nodeService.batchGroupOperations("/r/v/g", operations);
+		assertEquals(501, results.size());
+		for (int i = 0; i < 501; i++) {
+			assertEquals(i != 499, results.get(i).isSuccess());
+		}
+		assertEquals("NODEEXISTS", results.get(499).getError());
+		assertEquals("0", value("/r/v/g/k499"));
+		assertEquals("500", value("/r/v/g/k500"));
+		assertEquals(3, revision("/r/v/g"));
+	}
+
+	@Test
+	public void stagedOperationsRoundTrip() throws Exception {
+		final PropertyOperation create = PropertyOperation.create("a", "值=1", "注释");
+		final PropertyOperation update = PropertyOperation.update("b", "", 3);
+		final PropertyOperation delete = PropertyOperation.delete("c");
+		delete.setComment("ignored");
+		for (PropertyOperation operation : Arrays.asList(delete, update, create)) {
+			assertTrue(nodeService.stageOperation("/s/v/g", operation));
+		}
+
+		final List<PropertyOperation> staged = nodeService.findStagedOperations("/s/v/g");
+		assertEquals(3, staged.size());
+		assertOperation(create, staged.get(0));
+		assertOperation(update, staged.get(1));
+		assertOperation(delete, staged.get(2));
+
+		// 删除操作的值为null, 注释保留
+		final byte[] data = ReflectionTestUtils.invokeMethod(nodeService, "encodeStaged", delete);
+		assertOperation(delete, (PropertyOperation) ReflectionTestUtils.invokeMethod(nodeService, "decodeStaged", "c", data));
+		assertNull(((PropertyOperation) ReflectionTestUtils.invokeMethod(nodeService, "decodeStaged", "c", data)).getValue());
+	}
+
+	@Test
+	public void stagingIsLimitedToOneTransaction() throws Exception {
+		for (int i = 0; i < 249; i++) {
+			assertTrue(nodeService.stageOperation("/s/v/g", PropertyOperation.create("k" + i, String.valueOf(i))));
+		}
+		assertFalse(nodeService.stageOperation("/s/v/g", PropertyOperation.create("k249", "249")));
+		// 已暂存的key可以继续修改
+		assertTrue(nodeService.stageOperation("/s/v/g", PropertyOperation.create("k0", "changed")));
+
+		// 249个修改、249个暂存节点删除、暂存配置组删除及epoch正好500个操作
+		final List<PropertyOperation> published = nodeService.publishStaged("/s/v/g", "/r/v/g");
+		assertEquals(249, published.size());
+		assertEquals(249, client.getChildren().forPath("/r/v/g").size());
+		assertEquals("changed", value("/r/v/g/k0"));
+		assertEquals(1, revision("/r/v/g"));
+		assertNull(client.checkExists().forPath("/s/v/g"));
+		assertTrue(nodeService.findStagedOperations("/s/v/g").isEmpty());
+	}
+
+	@Test
+	public void conflictingPublishKeepsStagedOperations() throws Exception {
+		assertTrue(nodeService.applyGroupOperations("/r/v/g", Collections.singletonList(PropertyOperation.create("a", "1"))));
+		assertTrue(nodeService.stageOperation("/s/v/g", PropertyOperation.update("a", "2", 0)));
+		assertTrue(nodeService.stageOperation("/s/v/g", PropertyOperation.create("b", "2")));
+		assertTrue(nodeService.applyGroupOperations("/r/v/g", Collections.singletonList(PropertyOperation.update("a", "3", 0))));
+
+		assertNull(nodeService.publishStaged("/s/v/g", "/r/v/g"));
+		assertEquals("3", value("/r/v/g/a"));
+		assertNull(client.checkExists().forPath("/r/v/g/b"));
+		assertEquals(2, revision("/r/v/g"));
+		assertEquals(2, nodeService.findStagedOperations("/s/v/g").size());
+
+		// 修正期望版本后重新发布
+		assertTrue(nodeService.stageOperation("/s/v/g", PropertyOperation.update("a", "2", 1)));
+		assertEquals(2, nodeService.publishStaged("/s/v/g", "/r/v/g").size());
+		assertEquals("2", value("/r/v/g/a"));
+		assertEquals("2", value("/r/v/g/b"));
+		assertEquals(3, revision("/r/v/g"));
+	}
+
+	@Test
+	public void publishWithoutStagedOperations() throws Exception {
+		assertTrue(nodeService.publishStaged("/s/v/g", "/r/v/g").isEmpty());
+	}
+
+	@Test
+	public void commentsAreNotWrittenToPropertyNodes() throws Exception {
+		assertTrue(nodeService.applyGroupOperations("/r/v/g", Arrays.asList(
+				PropertyOperation.create("a", "1", "comment a"),
+				PropertyOperation.update("b", "2", "comment b", -1))));
+		nodeService.batchGroupOperations("/r/v/g", Collections.singletonList(PropertyOperation.create("c", "3", "comment c")));
+		final PropertyOperation staged = PropertyOperation.update("d", "4");
+		staged.setComment("comment d");
+		assertTrue(nodeService.stageOperation("/s/v/g", staged));
+		final List<PropertyOperation> published = nodeService.publishStaged("/s/v/g", "/r/v/g");
+		// 注释由调用方写入注释树
+		assertEquals("comment d", published.get(0).getComment());
+		assertTrue(nodeService.createProperty("/r/v2"));
+		assertTrue(nodeService.cloneGroups("/r/v", "/r/v2", true, new CloneProgress()));
+
+		for (String group : Arrays.asList("/r/v/g", "/r/v2/g")) {
+			assertPlainValue(group + "/a", "1");
+			assertPlainValue(group + "/b", "2");
+			assertPlainValue(group + "/c", "3");
+			assertPlainValue(group + "/d", "4");
+		}
+	}
+
+	@Test
+	public void createGroupWritesInitialEpoch() throws Exception {
+		assertTrue(nodeService.createGroup("/r/v/g"));
+		assertEquals("0\n", new String(client.getData().forPath("/r/v/g"), StandardCharsets.UTF_8));
+		assertFalse(nodeService.createGroup("/r/v/g"));
+	}
+
+	@Test
+	public void deleteGroupBumpsEpochBeforeDeleting() throws Exception {
+		assertTrue(nodeService.createGroup("/r/v/g"));
+		assertTrue(nodeService.applyGroupOperations("/r/v/g", Arrays.asList(PropertyOperation.create("a", "1"), PropertyOperation.create("b", "2"))));
+
+		final BlockingQueue<WatchedEvent> events = new LinkedBlockingQueue<>();
+		client.getData().usingWatcher(new Watcher() {
+			@Override
+			public void process(WatchedEvent event) {
+				events.add(event);
+			}
+		}).forPath("/r/v/g");
+		assertTrue(nodeService.deleteGroup("/r/v/g"));
+
+		// 跟随epoch的客户端先收到删除配置项的epoch, 再收到配置组节点删除
+		assertEquals(Watcher.Event.EventType.NodeDataChanged, events.poll(10, TimeUnit.SECONDS).getType());
+		assertNull(client.checkExists().forPath("/r/v/g"));
+		assertTrue(nodeService.deleteGroup("/r/v/g"));
+	}
+
+	/**
+	 * 客户端直接把节点数据作为值
+	 */
+	private void assertPlainValue(String path, String value) throws Exception {
+		assertEquals(value, value(path));
+	}
+
+	private static void assertResult(OperationResult result, boolean success, int dataVersion, String error) {
+		assertEquals(result.toString(), success, result.isSuccess());
+		assertEquals(result.toString(), dataVersion, result.getDataVersion());
+		assertEquals(result.toString(), error, result.getError());
+	}
+
+	private static void assertOperation(PropertyOperation expected, PropertyOperation actual) {
+		assertEquals(expected.toString(), actual.toString());
+	}
+
+	private String value(String path) throws Exception {
+		return new String(client.getData().forPath(path), StandardCharsets.UTF_8);
+	}
+
+	private long revision(String groupNode) throws Exception {
+		return Long.parseLong(value(groupNode).split("\n")[0]);
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,135 @@
+package com.dangdang.config.service.easyzk.demo.benchmark;
+
+import com.dangdang.config.service.file.contenttype.ContentType;
+import com.dangdang.config.service.file.contenttype.PropertiesContentType;
+import com.dangdang.config.service.file.contenttype.XmlContentType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 解析多MB配置文件的吞吐量及内存分配, 与基于{@link Properties}的解析对比, 并校验结果一致
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ */
+public class ContentTypeBenchmark {
+
+    private static final int ENTRIES = 50000;
+
+    private static final int ROUNDS = 5;
+
+    private static final int PARSES_PER_ROUND = 10;
+
+    private static final String ENCODING = "UTF-8";
+
+    public static void main(String[] args) throws Exception {
+        final byte[] properties = buildProperties();
+        final byte[] xml = buildXml();
+
+        run("properties", properties, new PropertiesContentType(), new ContentType() {
+            @Override
+            public Map<String, String> resolve(byte[] data, String encoding) {
+                final Properties props = new Properties();
+                try {
+                    props.load(new InputStreamReader(new ByteArrayInputStream(data), encoding));
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                return toMap(props);
+            }
+        });
+        run("xml", xml, new XmlContentType(), new ContentType() {
+            @Override
+            public Map<String, String> resolve(byte[] data, String encoding) {
+                final Properties props = new Properties();
+                try {
+                    props.loadFromXML(new ByteArrayInputStream(data));
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                return toMap(props);
+            }
+        });
+    }
+
+    private static void run(String name, byte[] data, ContentType contentType, ContentType baseline) throws Exception {
+        if (!contentType.resolve(data, ENCODING).equals(baseline.resolve(data, ENCODING))) {
+            throw new IllegalStateException("Result of " + contentType.getClass().getSimpleName() + " differs from java.util.Properties.");
+        }
+
+        System.out.printf("%s: %.1f MB, %d entries%n", name, data.length / 1048576.0, ENTRIES);
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.printf("Round %d: java.util.Properties %s, %s %s%n", round, measure(baseline, data),
+                    contentType.getClass().getSimpleName(), measure(contentType, data));
+        }
+    }
+
+    private static String measure(ContentType contentType, byte[] data) throws Exception {
+        final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+
+        int size = 0;
+        final long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        final long start = System.nanoTime();
+        for (int i = 0; i < PARSES_PER_ROUND; i++) {
+            size += contentType.resolve(data, ENCODING).size();
+        }
+        final long elapsed = System.nanoTime() - start;
+        final long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        if (size != ENTRIES * PARSES_PER_ROUND) {
+            throw new IllegalStateException("Unexpected entries: " + size);
+        }
+
+        return String.format("%.1f MB/s %.1f MB allocated/parse", data.length * PARSES_PER_ROUND * 1000.0 / elapsed,
+                allocated / 1048576.0 / PARSES_PER_ROUND);
+    }
+
+    private static byte[] buildProperties() throws IOException {
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < ENTRIES; i++) {
+            if (i % 100 == 0) {
+                content.append("# section ").append(i / 100).append('\n');
+            }
+            content.append("app.module").append(i % 37).append(".key").append(i);
+            switch (i % 10) {
+                case 0:
+                    content.append(" = value with \\u4e2d\\u6587 escapes\\tand tabs\n");
+                    break;
+                case 1:
+                    content.append(": long value continued \\\n    on the next line\n");
+                    break;
+                case 2:
+                    content.append("=配置值").append(i).append('\n');
+                    break;
+                default:
+                    content.append("=jdbc:mysql://db").append(i % 7).append(".example.com:3306/app?useUnicode=true\n");
+            }
+        }
+        return content.toString().getBytes(ENCODING);
+    }
+
+    private static byte[] buildXml() throws IOException {
+        final Properties props = new Properties();
+        for (int i = 0; i < ENTRIES; i++) {
+            props.setProperty("app.module" + (i % 37) + ".key" + i, i % 3 == 0 ? "配置值 & <" + i + ">" : "jdbc:mysql://db" + (i % 7) + ".example.com:3306/app");
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        props.storeToXML(out, "benchmark", ENCODING);
+        return out.toByteArray();
+    }
+
+    private static Map<String, String> toMap(Properties props) {
+        final Map<String, String> map = new HashMap<>();
+        for (String key : props.stringPropertyNames()) {
+            map.put(key, props.getProperty(key));
+        }
+        return map;
+    }
+
+}
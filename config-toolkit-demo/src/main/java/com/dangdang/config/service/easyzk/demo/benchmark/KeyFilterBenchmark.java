@@ -0,0 +1,84 @@
+package com.dangdang.config.service.easyzk.demo.benchmark;
+
+import com.dangdang.config.service.GeneralConfigGroup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 未命中为主的查找吞吐量: 三层internalConfigGroup链, 对比开启布隆过滤器前后
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ */
+public class KeyFilterBenchmark {
+
+    private static final int LAYERS = 3;
+
+    private static final int KEYS_PER_LAYER = 2000;
+
+    private static final int DISTINCT_LOOKUPS = 100000;
+
+    /**
+     * 未命中的比例
+     */
+    private static final double MISS_RATIO = 0.9;
+
+    private static final int ROUNDS = 5;
+
+    private static final int LOOKUPS_PER_ROUND = 20000000;
+
+    public static void main(String[] args) {
+        final String[] lookups = buildLookups();
+
+        final GeneralConfigGroup plain = buildChain();
+        final GeneralConfigGroup filtered = buildChain();
+        filtered.enableKeyFilter();
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.printf("Round %d: without key filter %.1f M lookups/s, with key filter %.1f M lookups/s%n", round,
+                    throughput(plain, lookups), throughput(filtered, lookups));
+        }
+    }
+
+    private static GeneralConfigGroup buildChain() {
+        GeneralConfigGroup group = null;
+        for (int layer = LAYERS - 1; layer >= 0; layer--) {
+            final Map<String, String> configs = new HashMap<>();
+            for (int i = 0; i < KEYS_PER_LAYER; i++) {
+                configs.put("layer" + layer + ".key" + i, "value" + i);
+            }
+            group = new MemoryConfigGroup(group, configs);
+        }
+        return group;
+    }
+
+    private static String[] buildLookups() {
+        final Random random = new Random(7758);
+        final String[] lookups = new String[DISTINCT_LOOKUPS];
+        for (int i = 0; i < lookups.length; i++) {
+            if (random.nextDouble() < MISS_RATIO) {
+                lookups[i] = "missing.key" + random.nextInt(KEYS_PER_LAYER * 10);
+            } else {
+                lookups[i] = "layer" + random.nextInt(LAYERS) + ".key" + random.nextInt(KEYS_PER_LAYER);
+            }
+        }
+        return lookups;
+    }
+
+    private static double throughput(GeneralConfigGroup group, String[] lookups) {
+        int hits = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS_PER_ROUND; i++) {
+            if (group.get(lookups[i % lookups.length]) != null) {
+                hits++;
+            }
+        }
+        final long elapsed = System.nanoTime() - start;
+        if (hits < 0) {
+            System.out.println(hits);
+        }
+        return LOOKUPS_PER_ROUND * 1000.0 / elapsed;
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.dangdang.config.service.easyzk.demo.benchmark;
+
+import com.dangdang.config.service.ConfigGroup;
+import com.dangdang.config.service.GeneralConfigGroup;
+
+import java.util.Map;
+
+/**
+ * 基于内存的配置组, 用于基准测试
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ */
+public class MemoryConfigGroup extends GeneralConfigGroup {
+
+    private static final long serialVersionUID = 1L;
+
+    public MemoryConfigGroup(ConfigGroup internalConfigGroup, Map<String, String> configs) {
+        super(internalConfigGroup);
+        cleanAndPutAll(configs);
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
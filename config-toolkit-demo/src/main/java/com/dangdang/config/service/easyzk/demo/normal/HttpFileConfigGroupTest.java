@@ -0,0 +1,84 @@
+package com.dangdang.config.service.easyzk.demo.normal;
+
+import com.dangdang.config.service.file.FileConfigGroup;
+import com.dangdang.config.service.file.FileConfigProfile;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 用本地HTTP服务模拟配置文件地址, 演示http文件配置组的条件GET轮询
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ */
+public class HttpFileConfigGroupTest {
+
+    public static void main(String[] args) throws Exception {
+        final StubHandler handler = new StubHandler();
+        final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/config.properties", handler);
+        server.start();
+
+        FileConfigProfile fileConfigProfile = new FileConfigProfile("UTF8", "properties");
+        fileConfigProfile.setPollInterval(1000);
+        FileConfigGroup configGroup = new FileConfigGroup(fileConfigProfile,
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/config.properties");
+
+        for (int i = 0; i < 10; i++) {
+            if (i == 5) {
+                handler.revision.incrementAndGet();
+            }
+            System.out.println("int_property_key=" + configGroup.get("int_property_key") + ", requests="
+                    + handler.requests.get() + ", not modified=" + handler.notModified.get());
+            Thread.sleep(1000);
+        }
+
+        configGroup.close();
+        server.stop(0);
+    }
+
+    /**
+     * 支持ETag和gzip的桩服务, revision变化时内容变化
+     */
+    private static class StubHandler implements HttpHandler {
+
+        private final AtomicInteger revision = new AtomicInteger(1);
+
+        private final AtomicInteger requests = new AtomicInteger();
+
+        private final AtomicInteger notModified = new AtomicInteger();
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            final String etag = "\"" + revision.get() + "\"";
+            exchange.getResponseHeaders().set("ETag", etag);
+
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (OutputStream out = new GZIPOutputStream(body)) {
+                out.write(("int_property_key=" + revision.get() + "\n").getBytes("UTF-8"));
+            }
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, body.size());
+            try (OutputStream out = exchange.getResponseBody()) {
+                body.writeTo(out);
+            }
+        }
+
+    }
+
+}
@@ -43,6 +43,11 @@ public abstract class ConfigProfile {
 	 */
 	private Set<String> keysSpecified;
 
+	/**
+	 * 配置项访问统计的采样率, 为N时每N次读取约记录一次, 0表示不统计
+	 */
+	private int accessStatisticsSampleRate = 0;
+
 	public ConfigProfile(String version) {
 		super();
 		this.version = version;
@@ -68,4 +73,12 @@ public abstract class ConfigProfile {
 		this.keysSpecified = keysSpecified;
 	}
 
+	public int getAccessStatisticsSampleRate() {
+		return accessStatisticsSampleRate;
+	}
+
+	public void setAccessStatisticsSampleRate(int accessStatisticsSampleRate) {
+		this.accessStatisticsSampleRate = accessStatisticsSampleRate;
+	}
+
 }
@@ -1,6 +1,9 @@
 package com.dangdang.config.service;
 
+import com.dangdang.config.service.observer.IKeyChangeListener;
 import com.dangdang.config.service.observer.IObserver;
+import com.dangdang.config.service.stat.KeyAccessStatistics;
+import com.dangdang.config.service.util.BloomFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -8,7 +11,9 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
@@ -35,24 +40,403 @@ public abstract class GeneralConfigGroup extends ConcurrentHashMap<String, Strin
      */
     private long lastLoadTime;
 
+    /**
+     * 配置项访问统计, 为null时不统计
+     */
+    private volatile KeyAccessStatistics accessStatistics;
+
+    /**
+     * 合并了internalConfigGroup链后的配置视图, 未开启时为null
+     */
+    private volatile Map<String, String> overlay;
+
+    /**
+     * 合并视图是否完整, 链上有延迟加载的配置组时不完整, 未命中还需按链查找
+     */
+    private volatile boolean overlayComplete;
+
+    private List<GeneralConfigGroup> overlayLayers;
+
+    private IKeyChangeListener overlayListener;
+
+    private final Object overlayLock = new Object();
+
+    /**
+     * 本配置组及internalConfigGroup链上所有key的布隆过滤器, 未开启时为null
+     */
+    private volatile BloomFilter keyFilter;
+
+    private List<GeneralConfigGroup> keyFilterLayers;
+
+    private IKeyChangeListener keyFilterListener;
+
+    private final Object keyFilterLock = new Object();
+
+    /**
+     * 布隆过滤器的误判率
+     */
+    private static final double KEY_FILTER_FPP = 0.01;
+
+    /**
+     * 配置项变化的同步监听列表
+     */
+    private final List<IKeyChangeListener> keyChangeListeners = new CopyOnWriteArrayList<>();
+
     public long getLastLoadTime() {
         return lastLoadTime;
     }
 
     @Override
     public final String get(String key) {
+        final BloomFilter filter = keyFilter;
+        if (filter != null && !filter.mightContain(key)) {
+            return null;
+        }
+
+        final Map<String, String> overlay = this.overlay;
+        if (overlay != null) {
+            final String val = overlay.get(key);
+            if ((val != null && !isPendingAboveOverlayHit(key)) || (val == null && overlayComplete)) {
+                if (val != null && accessStatistics != null && super.get(key) != null) {
+                    recordAccess(key);
+                }
+                return val;
+            }
+        }
+
         String val = super.get(key);
+        if (val == null && loadOnDemand(key)) {
+            val = super.get(key);
+        }
+        if (val != null) {
+            recordAccess(key);
+        }
         if (val == null && internalConfigGroup != null) {
             val = internalConfigGroup.get(key);
         }
         return val;
     }
 
+    private void recordAccess(String key) {
+        final KeyAccessStatistics statistics = accessStatistics;
+        if (statistics != null) {
+            statistics.record(key);
+        }
+    }
+
     @Override
     public final String get(Object key) {
         return get(key.toString());
     }
 
+    public KeyAccessStatistics getAccessStatistics() {
+        return accessStatistics;
+    }
+
+    /**
+     * 开启配置项访问统计并注册到JMX
+     *
+     * @param groupName  统计报告中的配置组名称
+     * @param sampleRate 采样率, 小于1时不开启
+     */
+    protected final void enableAccessStatistics(String groupName, int sampleRate) {
+        if (sampleRate > 0) {
+            final KeyAccessStatistics statistics = new KeyAccessStatistics(groupName, sampleRate);
+            statistics.register();
+            accessStatistics = statistics;
+        }
+    }
+
+    /**
+     * 关闭配置项访问统计并从JMX注销
+     */
+    protected final void disableAccessStatistics() {
+        final KeyAccessStatistics statistics = accessStatistics;
+        if (statistics != null) {
+            statistics.unregister();
+            accessStatistics = null;
+        }
+    }
+
+    /**
+     * 开启合并视图: 预先计算本配置组及internalConfigGroup链上每个key的生效值, 任一层变化时只更新变化的key,
+     * 无论链有多深, 查找都只需一次哈希<br>
+     * 链上的配置组都需继承自GeneralConfigGroup
+     */
+    public final void enableOverlay() {
+        synchronized (overlayLock) {
+            if (overlay != null) {
+                return;
+            }
+
+            final List<GeneralConfigGroup> layers = new ArrayList<>();
+            boolean complete = true;
+            ConfigGroup layer = this;
+            while (layer != null) {
+                if (!(layer instanceof GeneralConfigGroup)) {
+                    throw new IllegalStateException("Overlay requires internal config groups extending GeneralConfigGroup, but found: "
+                            + layer.getClass().getName());
+                }
+                final GeneralConfigGroup generalLayer = (GeneralConfigGroup) layer;
+                layers.add(generalLayer);
+                complete &= generalLayer.isFullyLoaded();
+                layer = generalLayer.internalConfigGroup;
+            }
+
+            // 先注册监听再合并, 合并期间的变化在合并完成后由监听补上
+            overlayListener = new IKeyChangeListener() {
+
+                @Override
+                public void keyChanged(String key) {
+                    refreshOverlay(key);
+                }
+            };
+            for (GeneralConfigGroup generalLayer : layers) {
+                generalLayer.addKeyChangeListener(overlayListener);
+            }
+
+            final Map<String, String> view = new ConcurrentHashMap<>();
+            for (int i = layers.size() - 1; i >= 0; i--) {
+                view.putAll(layers.get(i));
+            }
+
+            overlayLayers = layers;
+            overlayComplete = complete;
+            this.overlay = view;
+        }
+    }
+
+    /**
+     * 合并视图中的值来自链上某一层时, 更高的层里该key可能还未按需加载, 此时合并视图中的值不可信, 需按链查找
+     */
+    private boolean isPendingAboveOverlayHit(String key) {
+        if (overlayComplete) {
+            return false;
+        }
+        final List<GeneralConfigGroup> layers = overlayLayers;
+        if (layers == null) {
+            return false;
+        }
+        for (GeneralConfigGroup layer : layers) {
+            if (layer.getOwnValue(key) != null) {
+                return false;
+            }
+            if (layer.isPending(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 关闭合并视图
+     */
+    public final void disableOverlay() {
+        synchronized (overlayLock) {
+            if (overlay == null) {
+                return;
+            }
+            for (GeneralConfigGroup layer : overlayLayers) {
+                layer.removeKeyChangeListener(overlayListener);
+            }
+            overlay = null;
+            overlayLayers = null;
+            overlayListener = null;
+        }
+    }
+
+    /**
+     * 重新计算单个key在合并视图中的生效值
+     */
+    private void refreshOverlay(String key) {
+        synchronized (overlayLock) {
+            final Map<String, String> view = overlay;
+            if (view == null) {
+                return;
+            }
+
+            String val = null;
+            for (GeneralConfigGroup layer : overlayLayers) {
+                val = layer.getOwnValue(key);
+                if (val != null) {
+                    break;
+                }
+            }
+            if (val != null) {
+                view.put(key, val);
+            } else {
+                view.remove(key);
+            }
+        }
+    }
+
+    /**
+     * 开启布隆过滤器: 记录本配置组及internalConfigGroup链上的所有key, 不存在的key无需查找map和internalConfigGroup链即可返回null<br>
+     * 配置组重新加载时重建, 链上新增的key实时加入; 链上的配置组都需继承自GeneralConfigGroup且不能延迟加载
+     */
+    public final void enableKeyFilter() {
+        synchronized (keyFilterLock) {
+            if (keyFilter != null) {
+                return;
+            }
+
+            final List<GeneralConfigGroup> layers = new ArrayList<>();
+            ConfigGroup layer = this;
+            while (layer != null) {
+                if (!(layer instanceof GeneralConfigGroup) || !((GeneralConfigGroup) layer).isFullyLoaded()) {
+                    throw new IllegalStateException("Key filter requires fully loaded internal config groups extending GeneralConfigGroup, but found: "
+                            + layer.getClass().getName());
+                }
+                layers.add((GeneralConfigGroup) layer);
+                layer = ((GeneralConfigGroup) layer).internalConfigGroup;
+            }
+
+            keyFilterListener = new IKeyChangeListener() {
+
+                @Override
+                public void keyChanged(String key) {
+                    synchronized (keyFilterLock) {
+                        final BloomFilter filter = keyFilter;
+                        if (filter != null && existsInKeyFilterLayers(key)) {
+                            filter.put(key);
+                            if (filter.isSaturated()) {
+                                rebuildKeyFilter();
+                            }
+                        }
+                    }
+                }
+            };
+            for (GeneralConfigGroup generalLayer : layers) {
+                generalLayer.addKeyChangeListener(keyFilterListener);
+            }
+            keyFilterLayers = layers;
+            rebuildKeyFilter();
+        }
+    }
+
+    /**
+     * 关闭布隆过滤器
+     */
+    public final void disableKeyFilter() {
+        synchronized (keyFilterLock) {
+            if (keyFilter == null) {
+                return;
+            }
+            for (GeneralConfigGroup layer : keyFilterLayers) {
+                layer.removeKeyChangeListener(keyFilterListener);
+            }
+            keyFilter = null;
+            keyFilterLayers = null;
+            keyFilterListener = null;
+        }
+    }
+
+    private boolean existsInKeyFilterLayers(String key) {
+        for (GeneralConfigGroup layer : keyFilterLayers) {
+            if (layer.getOwnValue(key) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按链上当前的key重建布隆过滤器, 去掉已删除的key
+     */
+    private void rebuildKeyFilter() {
+        synchronized (keyFilterLock) {
+            if (keyFilterLayers == null) {
+                return;
+            }
+            int size = 0;
+            for (GeneralConfigGroup layer : keyFilterLayers) {
+                size += layer.size();
+            }
+            final BloomFilter filter = new BloomFilter(Math.max(size * 2, 64), KEY_FILTER_FPP);
+            for (GeneralConfigGroup layer : keyFilterLayers) {
+                for (String key : layer.keySet()) {
+                    filter.put(key);
+                }
+            }
+            keyFilter = filter;
+        }
+    }
+
+    /**
+     * 获取本配置组自身的配置, 不查找internalConfigGroup, 不计入访问统计
+     *
+     * @param key
+     * @return
+     */
+    public final String getOwnValue(String key) {
+        return super.get(key);
+    }
+
+    public ConfigGroup getInternalConfigGroup() {
+        return internalConfigGroup;
+    }
+
+    public void addKeyChangeListener(IKeyChangeListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener cannot be null");
+        }
+        keyChangeListeners.add(listener);
+    }
+
+    public void removeKeyChangeListener(IKeyChangeListener listener) {
+        keyChangeListeners.remove(listener);
+    }
+
+    private void fireKeyChanged(String key) {
+        for (IKeyChangeListener listener : keyChangeListeners) {
+            listener.keyChanged(key);
+        }
+    }
+
+    /**
+     * 所有配置项是否都已加载在内存中, 延迟加载的配置组返回false
+     *
+     * @return
+     */
+    protected boolean isFullyLoaded() {
+        return true;
+    }
+
+    /**
+     * 配置项是否存在但还未按需加载到内存中, 默认没有这样的配置项
+     *
+     * @param key
+     * @return
+     */
+    public boolean isPending(String key) {
+        return false;
+    }
+
+    /**
+     * 按需加载未在内存中的配置项, 默认不支持
+     *
+     * @param key
+     * @return 是否加载到了配置项
+     */
+    protected boolean loadOnDemand(String key) {
+        return false;
+    }
+
+    /**
+     * 只保留指定的key, 其余配置项移除
+     *
+     * @param keys
+     */
+    protected final void retainKeys(Set<String> keys) {
+        lastLoadTime = System.currentTimeMillis();
+        for (String key : new HashSet<>(this.keySet())) {
+            if (!keys.contains(key)) {
+                removeKey(key);
+            }
+        }
+        rebuildKeyFilter();
+    }
+
     protected final void cleanAndPutAll(Map<? extends String, ? extends String> configs) {
         lastLoadTime = System.currentTimeMillis();
         if (configs != null && configs.size() > 0) {
@@ -60,7 +444,7 @@ public abstract class GeneralConfigGroup extends ConcurrentHashMap<String, Strin
             if (this.size() > 0) {
                 for (String key : new HashSet<>(this.keySet())) {
                     if (!configs.containsKey(key)) {
-                        super.remove(key);
+                        removeKey(key);
                     }
                 }
             }
@@ -72,7 +456,22 @@ public abstract class GeneralConfigGroup extends ConcurrentHashMap<String, Strin
 
         } else {
             LOGGER.debug("Config group has none keys, clear.");
-            super.clear();
+            for (String key : new HashSet<>(this.keySet())) {
+                removeKey(key);
+            }
+        }
+        rebuildKeyFilter();
+    }
+
+    /**
+     * 移除单个配置项, 用于增量加载时处理被删除的key
+     *
+     * @param key
+     */
+    protected final void removeKey(String key) {
+        if (super.remove(key) != null) {
+            LOGGER.debug("Key {} removed", key);
+            fireKeyChanged(key);
         }
     }
 
@@ -85,6 +484,7 @@ public abstract class GeneralConfigGroup extends ConcurrentHashMap<String, Strin
         if (value != null && !value.equals(preValue)) {
             LOGGER.debug("Key " + key + " change from {} to {}", preValue, value);
             super.put(key, value);
+            fireKeyChanged(key);
 
             // If value change, notify
             if (preValue != null) {
@@ -0,0 +1,266 @@
+package com.dangdang.config.service.file;
+
+import com.dangdang.config.service.ConfigGroup;
+import com.dangdang.config.service.GeneralConfigGroup;
+import com.dangdang.config.service.exception.InvalidPathException;
+import com.dangdang.config.service.file.contenttype.BufferContentType;
+import com.dangdang.config.service.file.contenttype.ContentType;
+import com.dangdang.config.service.file.contenttype.ContentTypes;
+import com.dangdang.config.service.file.protocol.BufferProtocol;
+import com.dangdang.config.service.file.protocol.ProtocolNames;
+import com.dangdang.config.service.file.protocol.Protocols;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Configuration group loaded from all matching files in a local directory.<br>
+ * <br>
+ * 例如file:/etc/app/conf.d/, 默认加载扩展名与内容类型相同的文件(如*.properties), 也可以指定glob.
+ * 初始化时并行解析所有文件, 按文件名排序合并, 同名key以排在后面的文件为准.
+ * 目录由{@link FileWatcher}监听, 文件新建、修改或删除时只重新解析该文件, 事件溢出时重新扫描整个目录
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public class DirectoryConfigGroup extends GeneralConfigGroup implements FileChangeListener {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryConfigGroup.class);
+
+	private final FileConfigProfile configProfile;
+
+	private final Path directory;
+
+	private final PathMatcher matcher;
+
+	private final BufferProtocol protocolBean;
+
+	private final ContentType contentTypeBean;
+
+	/**
+	 * 文件 -> 内容, 按文件名排序
+	 */
+	private final TreeMap<Path, FileContent> files = new TreeMap<>();
+
+	private final AtomicLong skippedReloads = new AtomicLong();
+
+	public DirectoryConfigGroup(FileConfigProfile configProfile, String location) {
+		this(null, configProfile, location);
+	}
+
+	public DirectoryConfigGroup(ConfigGroup internalConfigGroup, FileConfigProfile configProfile, String location) {
+		this(internalConfigGroup, configProfile, location, "*." + configProfile.getContentType());
+	}
+
+	/**
+	 * @param internalConfigGroup
+	 * @param configProfile
+	 * @param location 目录地址, 只支持file协议
+	 * @param glob 文件名匹配规则, 如*.properties
+	 */
+	public DirectoryConfigGroup(ConfigGroup internalConfigGroup, FileConfigProfile configProfile, String location, String glob) {
+		super(internalConfigGroup);
+
+		if (location == null) {
+			throw new IllegalArgumentException("Location cannot be null.");
+		}
+		final FileLocation fileLocation = FileLocation.fromLocation(location);
+		if (!ProtocolNames.FILE.equals(fileLocation.getProtocol())) {
+			throw new IllegalArgumentException("Only file protocol is supported for directory: " + location);
+		}
+
+		this.configProfile = configProfile;
+		this.directory = Paths.get(fileLocation.getFile()).toAbsolutePath().normalize();
+		if (!Files.isDirectory(directory)) {
+			throw new IllegalArgumentException("Location is not a directory: " + location);
+		}
+		this.matcher = directory.getFileSystem().getPathMatcher("glob:" + glob);
+		this.protocolBean = (BufferProtocol) Protocols.getInstance().getProtocol(ProtocolNames.FILE);
+		this.contentTypeBean = ContentTypes.getInstance().getContentType(configProfile.getContentType());
+
+		loadAll();
+		try {
+			FileWatcher.getInstance().subscribeDirectory(directory, this);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		enableAccessStatistics(location, configProfile.getAccessStatisticsSampleRate());
+	}
+
+	/**
+	 * 并行解析目录下所有匹配的文件, 替换之前加载的全部内容
+	 */
+	private synchronized void loadAll() {
+		final List<Path> paths = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (Path path : stream) {
+				if (isMatched(path) && Files.isRegularFile(path)) {
+					paths.add(path);
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		LOGGER.debug("Loading {} files in directory: {}", paths.size(), directory);
+
+		final Map<Path, FileContent> loaded = new HashMap<>();
+		if (paths.size() <= 1) {
+			for (Path path : paths) {
+				loaded.put(path, load(path));
+			}
+		} else {
+			final ExecutorService executor = Executors.newFixedThreadPool(Math.min(paths.size(), Runtime.getRuntime().availableProcessors()));
+			try {
+				final List<Future<FileContent>> futures = new ArrayList<>(paths.size());
+				for (final Path path : paths) {
+					futures.add(executor.submit(new Callable<FileContent>() {
+						@Override
+						public FileContent call() {
+							return load(path);
+						}
+					}));
+				}
+				for (int i = 0; i < paths.size(); i++) {
+					loaded.put(paths.get(i), futures.get(i).get());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			} finally {
+				executor.shutdown();
+			}
+		}
+		files.clear();
+		files.putAll(loaded);
+		merge();
+	}
+
+	@Override
+	public synchronized void fileChanged(Path file) {
+		if (directory.equals(file)) {
+			// 事件溢出, 可能错过了任意文件的变化, 重新扫描整个目录
+			LOGGER.info("Events of directory {} overflowed, reload all files.", directory);
+			loadAll();
+			return;
+		}
+		if (!isMatched(file)) {
+			return;
+		}
+
+		if (!Files.isRegularFile(file)) {
+			if (files.remove(file) != null) {
+				LOGGER.debug("File {} removed.", file);
+				merge();
+			}
+			return;
+		}
+
+		final ByteBuffer data = read(file);
+		final long hash = FileConfigGroup.hash(data);
+		final FileContent current = files.get(file);
+		if (current != null && current.hash == hash) {
+			skippedReloads.incrementAndGet();
+			LOGGER.debug("File {} not changed, skip reloading.", file);
+			return;
+		}
+		files.put(file, new FileContent(hash, resolve(data)));
+		LOGGER.debug("File {} reloaded.", file);
+		merge();
+	}
+
+	private boolean isMatched(Path file) {
+		return directory.equals(file.getParent()) && matcher.matches(file.getFileName());
+	}
+
+	private FileContent load(Path file) {
+		final ByteBuffer data = read(file);
+		return new FileContent(FileConfigGroup.hash(data), resolve(data));
+	}
+
+	private ByteBuffer read(Path file) {
+		try {
+			return protocolBean.readBuffer(new FileLocation(file.toString(), ProtocolNames.FILE));
+		} catch (InvalidPathException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private Map<String, String> resolve(ByteBuffer data) {
+		try {
+			if (contentTypeBean instanceof BufferContentType) {
+				return ((BufferContentType) contentTypeBean).resolve(data, configProfile.getFileEncoding());
+			}
+			final byte[] bytes = new byte[data.remaining()];
+			data.duplicate().get(bytes);
+			return contentTypeBean.resolve(bytes, configProfile.getFileEncoding());
+		} catch (InvalidPathException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * 按文件名顺序合并, 后面的文件覆盖前面的
+	 */
+	private void merge() {
+		final Map<String, String> merged = new HashMap<>();
+		for (FileContent content : files.values()) {
+			merged.putAll(content.configs);
+		}
+		cleanAndPutAll(merged);
+	}
+
+	/**
+	 * 因内容未变化而跳过的重新加载次数
+	 *
+	 * @return
+	 */
+	public long getSkippedReloads() {
+		return skippedReloads.get();
+	}
+
+	public FileConfigProfile getConfigProfile() {
+		return configProfile;
+	}
+
+	@Override
+	public void close() throws IOException {
+		disableAccessStatistics();
+		FileWatcher.getInstance().unsubscribeDirectory(directory, this);
+	}
+
+	private static final class FileContent {
+
+		private final long hash;
+
+		private final Map<String, String> configs;
+
+		FileContent(long hash, Map<String, String> configs) {
+			this.hash = hash;
+			this.configs = configs;
+		}
+
+	}
+
+}
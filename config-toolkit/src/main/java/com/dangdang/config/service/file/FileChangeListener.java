@@ -0,0 +1,18 @@
+package com.dangdang.config.service.file;
+
+import java.nio.file.Path;
+
+/**
+ * 文件变化监听, 由{@link FileWatcher}在其线程中回调
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public interface FileChangeListener {
+
+	/**
+	 * @param file 新建、修改或删除的文件; 订阅目录时, 事件溢出后以目录本身回调, 表示目录下任意文件都可能已变化
+	 */
+	void fileChanged(Path file);
+
+}
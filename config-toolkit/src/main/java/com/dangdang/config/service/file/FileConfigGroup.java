@@ -3,14 +3,24 @@ package com.dangdang.config.service.file;
 import com.dangdang.config.service.ConfigGroup;
 import com.dangdang.config.service.GeneralConfigGroup;
 import com.dangdang.config.service.exception.InvalidPathException;
+import com.dangdang.config.service.file.contenttype.BufferContentType;
 import com.dangdang.config.service.file.contenttype.ContentType;
 import com.dangdang.config.service.file.contenttype.ContentTypes;
+import com.dangdang.config.service.file.protocol.BufferProtocol;
 import com.dangdang.config.service.file.protocol.Protocol;
+import com.dangdang.config.service.file.protocol.ProtocolNames;
 import com.dangdang.config.service.file.protocol.Protocols;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
 
 /**
  * Configuration group loaded from URI location.<br>
@@ -25,11 +35,12 @@ import java.io.IOException;
  * <li>http://www.yoursite.com/config.properties</li>
  * <li>http://www.yoursite.com/config.xml</li>
  * </ul>
+ * 本地目录(如file:/etc/app/conf.d/)由{@link DirectoryConfigGroup}加载, 可以通过{@link #create(ConfigGroup, FileConfigProfile, String)}按地址自动选择
  * 
  * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
  *
  */
-public class FileConfigGroup extends GeneralConfigGroup {
+public class FileConfigGroup extends GeneralConfigGroup implements FileChangeListener {
 
 	private static final long serialVersionUID = 1L;
 
@@ -39,6 +50,17 @@ public class FileConfigGroup extends GeneralConfigGroup {
 
 	private Protocol protocolBean;
 
+	private ContentType contentTypeBean;
+
+	/**
+	 * 上次加载内容的CRC32, 内容未变时跳过解析
+	 */
+	private volatile long contentHash = -1;
+
+	private final AtomicLong skippedReloads = new AtomicLong();
+
+	private static final int HASH_CHUNK_SIZE = 64 * 1024;
+
 	private static final Logger LOGGER = LoggerFactory.getLogger(FileConfigGroup.class);
 
 	public FileConfigGroup(FileConfigProfile configProfile, String location, boolean enumerable) {
@@ -56,6 +78,9 @@ public class FileConfigGroup extends GeneralConfigGroup {
 		if(location == null) {
 			throw new IllegalArgumentException("Location cannot be null.");
 		}
+		if (isDirectory(location)) {
+			throw new IllegalArgumentException("Location is a directory, use DirectoryConfigGroup instead: " + location);
+		}
 
 		this.configProfile = configProfile;
 		this.location = FileLocation.fromLocation(location);
@@ -65,24 +90,135 @@ public class FileConfigGroup extends GeneralConfigGroup {
 		} catch (InvalidPathException e) {
 			throw new RuntimeException(e);
 		}
+		enableAccessStatistics(location, configProfile.getAccessStatisticsSampleRate());
+	}
+
+	/**
+	 * 按地址创建配置组, 本地目录(以/结尾或是已存在的目录)创建{@link DirectoryConfigGroup}, 其他地址创建FileConfigGroup
+	 *
+	 * @param internalConfigGroup
+	 * @param configProfile
+	 * @param location
+	 * @return
+	 */
+	public static GeneralConfigGroup create(ConfigGroup internalConfigGroup, FileConfigProfile configProfile, String location) {
+		if (location != null && isDirectory(location)) {
+			return new DirectoryConfigGroup(internalConfigGroup, configProfile, location);
+		}
+		return new FileConfigGroup(internalConfigGroup, configProfile, location);
+	}
+
+	private static boolean isDirectory(String location) {
+		final FileLocation fileLocation = FileLocation.fromLocation(location);
+		if (!ProtocolNames.FILE.equals(fileLocation.getProtocol())) {
+			return false;
+		}
+		final String file = fileLocation.getFile();
+		return file.endsWith("/") || file.endsWith(File.separator) || Files.isDirectory(Paths.get(file));
 	}
 
 	protected void initConfigs() {
 		LOGGER.debug("Loading file: {}", location);
 		try {
-			protocolBean = Protocols.getInstance().get(location.getProtocol()).newInstance();
-
-			ContentType contentTypeBean = ContentTypes.getInstance().get(configProfile.getContentType()).newInstance();
-			cleanAndPutAll(contentTypeBean.resolve(protocolBean.read(location), configProfile.getFileEncoding()));
+			if (protocolBean == null) {
+				protocolBean = Protocols.getInstance().getProtocol(location.getProtocol());
+			}
+			if (contentTypeBean == null) {
+				contentTypeBean = ContentTypes.getInstance().getContentType(configProfile.getContentType());
+			}
+
+			if (protocolBean instanceof BufferProtocol && contentTypeBean instanceof BufferContentType) {
+				loadBuffer();
+			} else {
+				loadBytes();
+			}
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
 	}
 
+	/**
+	 * 分块读取到缓冲区后直接解析, 不再复制为字节数组
+	 */
+	private void loadBuffer() throws InvalidPathException {
+		final ByteBuffer data = ((BufferProtocol) protocolBean).readBuffer(location);
+		final long hash = hash(data);
+		if (isChanged(hash)) {
+			cleanAndPutAll(((BufferContentType) contentTypeBean).resolve(data, configProfile.getFileEncoding()));
+			contentHash = hash;
+		}
+	}
+
+	private void loadBytes() throws InvalidPathException {
+		final byte[] data = protocolBean.read(location);
+		final long hash = hash(data);
+		if (isChanged(hash)) {
+			cleanAndPutAll(contentTypeBean.resolve(data, configProfile.getFileEncoding()));
+			contentHash = hash;
+		}
+	}
+
+	/**
+	 * 重新加载文件, 由协议的变化通知触发
+	 */
+	public void reload() {
+		initConfigs();
+	}
+
+	@Override
+	public void fileChanged(Path file) {
+		initConfigs();
+	}
+
+	public FileConfigProfile getConfigProfile() {
+		return configProfile;
+	}
+
+	private boolean isChanged(long hash) {
+		if (hash == contentHash) {
+			skippedReloads.incrementAndGet();
+			LOGGER.debug("File {} not changed, skip reloading.", location);
+			return false;
+		}
+		return true;
+	}
+
+	private static long hash(byte[] data) {
+		final CRC32 crc32 = new CRC32();
+		crc32.update(data);
+		return crc32.getValue();
+	}
+
+	static long hash(ByteBuffer data) {
+		final CRC32 crc32 = new CRC32();
+		final ByteBuffer buffer = data.duplicate();
+		final byte[] chunk = new byte[Math.min(HASH_CHUNK_SIZE, buffer.remaining())];
+		while (buffer.hasRemaining()) {
+			final int length = Math.min(chunk.length, buffer.remaining());
+			buffer.get(chunk, 0, length);
+			crc32.update(chunk, 0, length);
+		}
+		return crc32.getValue();
+	}
+
+	/**
+	 * 因内容未变化而跳过的重新加载次数
+	 *
+	 * @return
+	 */
+	public long getSkippedReloads() {
+		return skippedReloads.get();
+	}
+
 	@Override
 	public void close() throws IOException {
+		disableAccessStatistics();
 		if (protocolBean != null) {
-			protocolBean.close();
+			try {
+				protocolBean.unwatch(location, this);
+			} catch (InvalidPathException e) {
+				throw new IOException(e);
+			}
 		}
 	}
 
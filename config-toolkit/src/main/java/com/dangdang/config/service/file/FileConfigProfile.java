@@ -13,6 +13,11 @@ public class FileConfigProfile extends ConfigProfile {
 	private String fileEncoding;
 
 	private String contentType;
+
+	/**
+	 * http/https文件的轮询间隔(毫秒), 小于等于0时不轮询
+	 */
+	private long pollInterval = 60000;
 	
 	public FileConfigProfile(String fileEncoding, String contentType) {
 		this(null, fileEncoding, contentType);
@@ -40,9 +45,17 @@ public class FileConfigProfile extends ConfigProfile {
 		this.contentType = contentType;
 	}
 
+	public long getPollInterval() {
+		return pollInterval;
+	}
+
+	public void setPollInterval(long pollInterval) {
+		this.pollInterval = pollInterval;
+	}
+
 	@Override
 	public String toString() {
-		return "FileConfigProfile [fileEncoding=" + fileEncoding + ", contentType=" + contentType + "]";
+		return "FileConfigProfile [fileEncoding=" + fileEncoding + ", contentType=" + contentType + ", pollInterval=" + pollInterval + "]";
 	}
 
 }
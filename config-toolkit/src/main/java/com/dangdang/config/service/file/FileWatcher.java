@@ -0,0 +1,348 @@
+package com.dangdang.config.service.file;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 进程内共享的文件监听器<br>
+ * <br>
+ * 所有本地文件配置组共用一个WatchService和一个守护线程, 同一目录只注册一次, 文件变化时通知订阅该文件或其所在目录的监听,
+ * 短时间内的多次变化只通知一次. 目录的事件溢出(OVERFLOW)时, 以目录本身通知订阅该目录的监听, 并通知订阅目录下各文件的监听.
+ * 最后一个订阅取消后关闭WatchService, 线程随之退出, 再次订阅时重新创建
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public final class FileWatcher {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FileWatcher.class);
+
+	private static final String THREAD_NAME = "config-toolkit-file-watcher";
+
+	/**
+	 * 编辑器保存文件时通常触发多次修改事件, 在此窗口内合并
+	 */
+	private static final long DEBOUNCE_MILLIS = 200;
+
+	private static final FileWatcher INSTANCE = new FileWatcher();
+
+	private WatchService watchService;
+
+	/**
+	 * 目录 -> WatchKey
+	 */
+	private final Map<Path, WatchKey> directories = new HashMap<>();
+
+	/**
+	 * 文件 -> 订阅该文件的监听
+	 */
+	private final Map<Path, List<FileChangeListener>> fileListeners = new HashMap<>();
+
+	/**
+	 * 目录 -> 订阅目录下所有文件的监听
+	 */
+	private final Map<Path, List<FileChangeListener>> directoryListeners = new HashMap<>();
+
+	private FileWatcher() {
+	}
+
+	public static FileWatcher getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * 订阅文件的新建和修改, 只支持默认文件系统中的文件
+	 *
+	 * @param file
+	 * @param listener
+	 * @return 是否订阅成功
+	 * @throws IOException
+	 */
+	public synchronized boolean subscribe(Path file, FileChangeListener listener) throws IOException {
+		if (!isWatchable(file)) {
+			return false;
+		}
+		final Path watchedFile = file.toAbsolutePath().normalize();
+		register(watchedFile.getParent());
+		add(fileListeners, watchedFile, listener);
+		return true;
+	}
+
+	/**
+	 * 取消订阅, 目录下没有订阅时注销该目录
+	 *
+	 * @param file
+	 * @param listener
+	 */
+	public synchronized void unsubscribe(Path file, FileChangeListener listener) {
+		final Path watchedFile = file.toAbsolutePath().normalize();
+		if (remove(fileListeners, watchedFile, listener)) {
+			unregisterIfUnused(watchedFile.getParent());
+		}
+	}
+
+	/**
+	 * 订阅目录下文件的新建、修改和删除, 不包含子目录
+	 *
+	 * @param directory
+	 * @param listener
+	 * @return 是否订阅成功
+	 * @throws IOException
+	 */
+	public synchronized boolean subscribeDirectory(Path directory, FileChangeListener listener) throws IOException {
+		if (!isWatchable(directory)) {
+			return false;
+		}
+		final Path watchedDirectory = directory.toAbsolutePath().normalize();
+		register(watchedDirectory);
+		add(directoryListeners, watchedDirectory, listener);
+		return true;
+	}
+
+	public synchronized void unsubscribeDirectory(Path directory, FileChangeListener listener) {
+		final Path watchedDirectory = directory.toAbsolutePath().normalize();
+		if (remove(directoryListeners, watchedDirectory, listener)) {
+			unregisterIfUnused(watchedDirectory);
+		}
+	}
+
+	private static boolean isWatchable(Path path) {
+		if (path.getFileSystem() != FileSystems.getDefault()) {
+			LOGGER.debug("Path {} is not in the default file system, will not be watched.", path);
+			return false;
+		}
+		return true;
+	}
+
+	private void register(Path directory) throws IOException {
+		if (watchService == null) {
+			start();
+		}
+		if (!directories.containsKey(directory)) {
+			directories.put(directory, directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE));
+			LOGGER.debug("Directory {} registered.", directory);
+		}
+	}
+
+	private void unregisterIfUnused(Path directory) {
+		if (!isDirectoryWatched(directory)) {
+			final WatchKey key = directories.remove(directory);
+			if (key != null) {
+				key.cancel();
+			}
+		}
+		if (fileListeners.isEmpty() && directoryListeners.isEmpty()) {
+			stop();
+		}
+	}
+
+	private boolean isDirectoryWatched(Path directory) {
+		if (directoryListeners.containsKey(directory)) {
+			return true;
+		}
+		for (Path watchedFile : fileListeners.keySet()) {
+			if (directory.equals(watchedFile.getParent())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void add(Map<Path, List<FileChangeListener>> listeners, Path path, FileChangeListener listener) {
+		List<FileChangeListener> list = listeners.get(path);
+		if (list == null) {
+			list = new ArrayList<>();
+			listeners.put(path, list);
+		}
+		list.add(listener);
+	}
+
+	/**
+	 * 按引用移除, 配置组的equals比较的是配置内容
+	 */
+	private static boolean remove(Map<Path, List<FileChangeListener>> listeners, Path path, FileChangeListener listener) {
+		final List<FileChangeListener> list = listeners.get(path);
+		if (list == null) {
+			return false;
+		}
+		for (Iterator<FileChangeListener> iterator = list.iterator(); iterator.hasNext();) {
+			if (iterator.next() == listener) {
+				iterator.remove();
+				if (list.isEmpty()) {
+					listeners.remove(path);
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void start() throws IOException {
+		final WatchService service = FileSystems.getDefault().newWatchService();
+		final Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				watch(service);
+			}
+		}, THREAD_NAME);
+		thread.setDaemon(true);
+		watchService = service;
+		thread.start();
+	}
+
+	private void stop() {
+		directories.clear();
+		if (watchService != null) {
+			try {
+				watchService.close();
+			} catch (IOException e) {
+				LOGGER.warn("Close watch service failed.", e);
+			}
+			watchService = null;
+		}
+	}
+
+	private void watch(WatchService service) {
+		// 变化的文件 -> 通知的时间
+		final Map<Path, Long> pendingFiles = new HashMap<>();
+		// 事件溢出的目录 -> 通知的时间
+		final Map<Path, Long> overflowedDirectories = new HashMap<>();
+		while (true) {
+			final WatchKey key;
+			try {
+				if (pendingFiles.isEmpty() && overflowedDirectories.isEmpty()) {
+					key = service.take();
+				} else {
+					final List<Long> notifyTimes = new ArrayList<>(pendingFiles.values());
+					notifyTimes.addAll(overflowedDirectories.values());
+					final long delay = TimeUnit.NANOSECONDS.toMillis(Collections.min(notifyTimes) - System.nanoTime());
+					key = delay > 0 ? service.poll(delay, TimeUnit.MILLISECONDS) : service.poll();
+				}
+			} catch (InterruptedException | ClosedWatchServiceException e) {
+				LOGGER.debug("File watcher stopped.");
+				return;
+			}
+
+			if (key != null) {
+				collectChangedFiles(key, pendingFiles, overflowedDirectories);
+			}
+			notifyDueFiles(pendingFiles);
+			notifyDueOverflows(overflowedDirectories);
+		}
+	}
+
+	private void collectChangedFiles(WatchKey key, Map<Path, Long> pendingFiles, Map<Path, Long> overflowedDirectories) {
+		final Path directory = (Path) key.watchable();
+		final long notifyTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DEBOUNCE_MILLIS);
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				// 事件已丢失, 无法知道哪些文件变化了
+				LOGGER.warn("Events overflowed in directory {}.", directory);
+				overflowedDirectories.put(directory, notifyTime);
+				continue;
+			}
+
+			final Path changedFile = directory.resolve((Path) event.context());
+			LOGGER.debug("File {} changed: {}.", changedFile, event.kind());
+			// 窗口内的多次变化合并为一次通知
+			pendingFiles.put(changedFile, notifyTime);
+		}
+
+		if (!key.reset()) {
+			synchronized (this) {
+				if (directories.get(directory) == key) {
+					directories.remove(directory);
+				}
+			}
+		}
+	}
+
+	private void notifyDueFiles(Map<Path, Long> pendingFiles) {
+		for (Path file : removeDue(pendingFiles)) {
+			fireFileChanged(file, getListeners(file));
+		}
+	}
+
+	private void notifyDueOverflows(Map<Path, Long> overflowedDirectories) {
+		for (Path directory : removeDue(overflowedDirectories)) {
+			for (Map.Entry<Path, List<FileChangeListener>> entry : getOverflowListeners(directory).entrySet()) {
+				fireFileChanged(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	private static List<Path> removeDue(Map<Path, Long> pending) {
+		final long now = System.nanoTime();
+		final List<Path> due = new ArrayList<>();
+		final Iterator<Map.Entry<Path, Long>> iterator = pending.entrySet().iterator();
+		while (iterator.hasNext()) {
+			final Map.Entry<Path, Long> entry = iterator.next();
+			if (entry.getValue() - now <= 0) {
+				iterator.remove();
+				due.add(entry.getKey());
+			}
+		}
+		return due;
+	}
+
+	private static void fireFileChanged(Path file, List<FileChangeListener> listeners) {
+		for (FileChangeListener listener : listeners) {
+			try {
+				listener.fileChanged(file);
+			} catch (Throwable e) {
+				// 单个监听失败(包括Error)不能终止监听线程, 否则其他配置组也不再重新加载
+				LOGGER.error("Reload file " + file + " failed.", e);
+			}
+		}
+	}
+
+	private synchronized List<FileChangeListener> getListeners(Path file) {
+		final List<FileChangeListener> listeners = new ArrayList<>();
+		final List<FileChangeListener> ofDirectory = directoryListeners.get(file.getParent());
+		if (ofDirectory != null) {
+			listeners.addAll(ofDirectory);
+		}
+		// 文件已被删除时不通知订阅该文件的监听
+		final List<FileChangeListener> ofFile = fileListeners.get(file);
+		if (ofFile != null && Files.exists(file)) {
+			listeners.addAll(ofFile);
+		}
+		return listeners;
+	}
+
+	/**
+	 * 事件溢出时需要通知的监听: 订阅该目录的监听以目录本身通知, 订阅目录下文件的监听以各自的文件通知
+	 */
+	private synchronized Map<Path, List<FileChangeListener>> getOverflowListeners(Path directory) {
+		final Map<Path, List<FileChangeListener>> listeners = new HashMap<>();
+		final List<FileChangeListener> ofDirectory = directoryListeners.get(directory);
+		if (ofDirectory != null) {
+			listeners.put(directory, new ArrayList<>(ofDirectory));
+		}
+		for (Map.Entry<Path, List<FileChangeListener>> entry : fileListeners.entrySet()) {
+			if (directory.equals(entry.getKey().getParent()) && Files.exists(entry.getKey())) {
+				listeners.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+			}
+		}
+		return listeners;
+	}
+
+}
@@ -0,0 +1,18 @@
+package com.dangdang.config.service.file.contenttype;
+
+import com.dangdang.config.service.exception.InvalidPathException;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * 可选能力: 直接从ByteBuffer流式解析, 与{@link com.dangdang.config.service.file.protocol.BufferProtocol}配合使用
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public interface BufferContentType extends ContentType {
+
+	Map<String, String> resolve(ByteBuffer data, String encoding) throws InvalidPathException;
+
+}
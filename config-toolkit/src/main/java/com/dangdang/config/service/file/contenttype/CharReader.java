@@ -0,0 +1,87 @@
+package com.dangdang.config.service.file.contenttype;
+
+import com.dangdang.config.service.exception.InvalidPathException;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * 从ByteBuffer分块解码字符, 供流式解析使用, 不会把整个文件解码到一个字符串中
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+final class CharReader {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final ByteBuffer in;
+
+	private final CharsetDecoder decoder;
+
+	private final char[] buffer = new char[BUFFER_SIZE];
+
+	private final CharBuffer chars = CharBuffer.wrap(buffer);
+
+	private int pos;
+
+	private int limit;
+
+	private boolean decoded;
+
+	private boolean flushed;
+
+	private CharReader(ByteBuffer in, CharsetDecoder decoder) {
+		this.in = in;
+		this.decoder = decoder;
+	}
+
+	/**
+	 * 与InputStreamReader一致, 非法字节替换为U+FFFD
+	 */
+	static CharReader create(ByteBuffer data, String encoding) throws InvalidPathException {
+		try {
+			final CharsetDecoder decoder = Charset.forName(encoding).newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			return new CharReader(data.duplicate(), decoder);
+		} catch (IllegalArgumentException e) {
+			throw new InvalidPathException(e);
+		}
+	}
+
+	/**
+	 * @return 下一个字符, 没有更多内容时返回-1
+	 */
+	int next() {
+		return isEnd() ? -1 : buffer[pos++];
+	}
+
+	/**
+	 * @return 下一个字符但不消费, 没有更多内容时返回-1
+	 */
+	int peek() {
+		return isEnd() ? -1 : buffer[pos];
+	}
+
+	boolean isEnd() {
+		return pos == limit && !fill();
+	}
+
+	private boolean fill() {
+		chars.clear();
+		while (chars.position() == 0 && !flushed) {
+			if (!decoded) {
+				decoded = decoder.decode(in, chars, true).isUnderflow();
+			} else {
+				flushed = decoder.flush(chars).isUnderflow();
+			}
+		}
+		pos = 0;
+		limit = chars.position();
+		return limit > 0;
+	}
+
+}
@@ -0,0 +1,27 @@
+package com.dangdang.config.service.file.contenttype;
+
+import java.util.Collection;
+
+/**
+ * 内容类型扩展点, 通过{@link java.util.ServiceLoader}注册:
+ * META-INF/services/com.dangdang.config.service.file.contenttype.ContentTypeFactory<br>
+ * <br>
+ * 与META-INF/toolkit中注册的内容类型重名时, 以此处注册的为准
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ */
+public interface ContentTypeFactory {
+
+    /**
+     * @return 支持的内容类型名, 如properties、xml
+     */
+    Collection<String> getContentTypeNames();
+
+    /**
+     * 创建内容类型实例, 每个工厂只调用一次, 实例由所有配置组共享, 必须线程安全
+     *
+     * @return
+     */
+    ContentType create();
+
+}
@@ -9,5 +9,11 @@ public final class ContentTypeNames {
 	public static final String PROPERTIES = "properties";
 	
 	public static final String XML = "xml";
+	
+	public static final String JSON = "json";
+	
+	public static final String YAML = "yaml";
+	
+	public static final String YML = "yml";
 
 }
@@ -6,15 +6,18 @@ import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.ServiceLoader;
 
 /**
- * Content type handler class factory
+ * Content type handler class factory<br>
+ * <br>
+ * 内容类型实例在注册时创建并缓存, 所有配置组共享同一实例
  *
  * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
  */
 public final class ContentTypes {
 
-    private Map<String, Class<ContentType>> contentTypes;
+    private Map<String, ContentType> contentTypes;
 
     private static ContentTypes INSTANCE = new ContentTypes();
 
@@ -38,24 +41,51 @@ public final class ContentTypes {
                 }
             }
 
-            // Initialize protocol beans
+            // Initialize content type beans, one instance per class
             contentTypes = new HashMap<>();
+            final Map<String, ContentType> beansByClass = new HashMap<>();
             for (Map.Entry<Object, Object> entry : props.entrySet()) {
                 final String contentTypeName = ((String) entry.getKey()).toLowerCase();
-                @SuppressWarnings("unchecked") final Class<ContentType> contentTypeBeanClazz = (Class<ContentType>) Class.forName((String) entry.getValue());
-                contentTypes.put(contentTypeName, contentTypeBeanClazz);
+                final String className = ((String) entry.getValue()).trim();
+                ContentType contentTypeBean = beansByClass.get(className);
+                if (contentTypeBean == null) {
+                    contentTypeBean = (ContentType) Class.forName(className).newInstance();
+                    beansByClass.put(className, contentTypeBean);
+                }
+                contentTypes.put(contentTypeName, contentTypeBean);
+            }
+
+            // Content types registered by ServiceLoader
+            for (ContentTypeFactory factory : ServiceLoader.load(ContentTypeFactory.class, this.getClass().getClassLoader())) {
+                final ContentType contentTypeBean = factory.create();
+                for (String contentTypeName : factory.getContentTypeNames()) {
+                    contentTypes.put(contentTypeName.toLowerCase(), contentTypeBean);
+                }
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
-    public Class<ContentType> get(String contentTypeName) {
-        final Class<ContentType> contentTypeClass = contentTypes.get(contentTypeName);
-        if (contentTypeClass == null) {
+    /**
+     * @param contentTypeName
+     * @return 共享的内容类型实例
+     */
+    public ContentType getContentType(String contentTypeName) {
+        final ContentType contentType = contentTypes.get(contentTypeName);
+        if (contentType == null) {
             throw new RuntimeException("Content type with name " + contentTypeName + " not registered.");
         }
-        return contentTypeClass;
+        return contentType;
+    }
+
+    /**
+     * @deprecated 内容类型实例已由注册表缓存共享, 使用{@link #getContentType(String)}
+     */
+    @Deprecated
+    @SuppressWarnings("unchecked")
+    public Class<ContentType> get(String contentTypeName) {
+        return (Class<ContentType>) getContentType(contentTypeName).getClass();
     }
 
 }
@@ -0,0 +1,290 @@
+package com.dangdang.config.service.file.contenttype;
+
+import com.dangdang.config.service.exception.InvalidPathException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式解析JSON并展开为a.b[0].c形式的key, 不构建中间的对象树<br>
+ * <br>
+ * 根节点必须是对象或数组; 数字、布尔值保持原文, null及空对象、空数组为空字符串, 重复的key以后出现的为准
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public class JsonContentType implements BufferContentType {
+
+	@Override
+	public Map<String, String> resolve(byte[] data, String encoding) throws InvalidPathException {
+		return resolve(ByteBuffer.wrap(data), encoding);
+	}
+
+	@Override
+	public Map<String, String> resolve(ByteBuffer data, String encoding) throws InvalidPathException {
+		final Map<String, String> propMap = new HashMap<>();
+		new Parser(CharReader.create(data, encoding), propMap).parse();
+		return propMap;
+	}
+
+	private static final class Parser {
+
+		private final CharReader in;
+
+		private final Map<String, String> propMap;
+
+		private final KeyPath path = new KeyPath();
+
+		/**
+		 * 当前所在的对象或数组, 不递归以免嵌套过深时栈溢出
+		 */
+		private final List<Container> containers = new ArrayList<>();
+
+		private final StringBuilder text = new StringBuilder();
+
+		/**
+		 * 已读取的字符数, 用于错误信息
+		 */
+		private long position;
+
+		Parser(CharReader in, Map<String, String> propMap) {
+			this.in = in;
+			this.propMap = propMap;
+		}
+
+		void parse() throws InvalidPathException {
+			final int first = nextNonWhitespace();
+			if (first != '{' && first != '[') {
+				throw error("Root must be an object or an array");
+			}
+			readValue(first);
+
+			while (!containers.isEmpty()) {
+				final Container container = containers.get(containers.size() - 1);
+				int c = nextNonWhitespace();
+				if (c == (container.object ? '}' : ']')) {
+					close(container);
+					continue;
+				}
+				if (container.count > 0) {
+					if (c != ',') {
+						throw error("Expected ',' or '" + (container.object ? '}' : ']') + "'");
+					}
+					c = nextNonWhitespace();
+				}
+
+				path.truncate(container.pathLength);
+				if (container.object) {
+					if (c != '"') {
+						throw error("Expected property name");
+					}
+					path.appendKey(readString());
+					if (nextNonWhitespace() != ':') {
+						throw error("Expected ':'");
+					}
+					c = nextNonWhitespace();
+				} else {
+					path.appendIndex(container.count);
+				}
+				container.count++;
+				readValue(c);
+			}
+
+			if (nextNonWhitespace() != -1) {
+				throw error("Unexpected content after root");
+			}
+		}
+
+		private void readValue(int c) throws InvalidPathException {
+			switch (c) {
+				case '{':
+				case '[':
+					containers.add(new Container(c == '{', path.length()));
+					break;
+				case '"':
+					propMap.put(path.toString(), readString());
+					break;
+				case 't':
+					expectLiteral("true");
+					propMap.put(path.toString(), "true");
+					break;
+				case 'f':
+					expectLiteral("false");
+					propMap.put(path.toString(), "false");
+					break;
+				case 'n':
+					expectLiteral("null");
+					propMap.put(path.toString(), "");
+					break;
+				default:
+					if (c == '-' || (c >= '0' && c <= '9')) {
+						propMap.put(path.toString(), readNumber(c));
+					} else {
+						throw error(c < 0 ? "Unexpected end of input" : "Unexpected character '" + (char) c + "'");
+					}
+			}
+		}
+
+		private void close(Container container) {
+			containers.remove(containers.size() - 1);
+			path.truncate(container.pathLength);
+			if (container.count == 0 && container.pathLength > 0) {
+				propMap.put(path.toString(), "");
+			}
+		}
+
+		private String readString() throws InvalidPathException {
+			text.setLength(0);
+			while (true) {
+				final int c = next();
+				if (c == '"') {
+					return text.toString();
+				}
+				if (c < 0) {
+					throw error("Unterminated string");
+				}
+				if (c < 0x20) {
+					throw error("Control character in string");
+				}
+				if (c != '\\') {
+					text.append((char) c);
+					continue;
+				}
+
+				final int escaped = next();
+				switch (escaped) {
+					case '"':
+					case '\\':
+					case '/':
+						text.append((char) escaped);
+						break;
+					case 'b':
+						text.append('\b');
+						break;
+					case 'f':
+						text.append('\f');
+						break;
+					case 'n':
+						text.append('\n');
+						break;
+					case 'r':
+						text.append('\r');
+						break;
+					case 't':
+						text.append('\t');
+						break;
+					case 'u':
+						int value = 0;
+						for (int i = 0; i < 4; i++) {
+							final int hex = next();
+							final int digit = hex < 0x80 ? Character.digit(hex, 16) : -1;
+							if (digit < 0) {
+								throw error("Malformed \\uxxxx escape");
+							}
+							value = (value << 4) + digit;
+						}
+						text.append((char) value);
+						break;
+					default:
+						throw error("Invalid escape");
+				}
+			}
+		}
+
+		/**
+		 * 按JSON语法校验数字, 返回原文
+		 */
+		private String readNumber(int first) throws InvalidPathException {
+			text.setLength(0);
+			int c = first;
+			if (c == '-') {
+				text.append('-');
+				c = next();
+			}
+			if (c == '0') {
+				text.append('0');
+			} else if (c >= '1' && c <= '9') {
+				text.append((char) c);
+				appendDigits();
+			} else {
+				throw error("Invalid number");
+			}
+			if (in.peek() == '.') {
+				text.append((char) next());
+				if (appendDigits() == 0) {
+					throw error("Invalid number");
+				}
+			}
+			if (in.peek() == 'e' || in.peek() == 'E') {
+				text.append((char) next());
+				if (in.peek() == '+' || in.peek() == '-') {
+					text.append((char) next());
+				}
+				if (appendDigits() == 0) {
+					throw error("Invalid number");
+				}
+			}
+			return text.toString();
+		}
+
+		private int appendDigits() {
+			int count = 0;
+			while (in.peek() >= '0' && in.peek() <= '9') {
+				text.append((char) next());
+				count++;
+			}
+			return count;
+		}
+
+		private void expectLiteral(String literal) throws InvalidPathException {
+			for (int i = 1; i < literal.length(); i++) {
+				if (next() != literal.charAt(i)) {
+					throw error("Invalid literal, expected " + literal);
+				}
+			}
+		}
+
+		private int nextNonWhitespace() {
+			int c;
+			do {
+				c = next();
+			} while (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+			return c;
+		}
+
+		private int next() {
+			final int c = in.next();
+			if (c >= 0) {
+				position++;
+			}
+			return c;
+		}
+
+		private InvalidPathException error(String message) {
+			return new InvalidPathException(message + " at character " + position + " of JSON content.");
+		}
+
+	}
+
+	private static final class Container {
+
+		private final boolean object;
+
+		/**
+		 * 容器自身的key长度, 子元素的key在此基础上追加
+		 */
+		private final int pathLength;
+
+		private int count;
+
+		Container(boolean object, int pathLength) {
+			this.object = object;
+			this.pathLength = pathLength;
+		}
+
+	}
+
+}
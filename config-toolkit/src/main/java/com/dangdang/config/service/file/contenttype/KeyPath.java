@@ -0,0 +1,37 @@
+package com.dangdang.config.service.file.contenttype;
+
+/**
+ * 展开嵌套结构时的当前key, 对象属性以.连接, 数组元素为[下标], 如a.b[0].c
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+final class KeyPath {
+
+	private final StringBuilder path = new StringBuilder();
+
+	int length() {
+		return path.length();
+	}
+
+	void truncate(int length) {
+		path.setLength(length);
+	}
+
+	void appendKey(String key) {
+		if (path.length() > 0) {
+			path.append('.');
+		}
+		path.append(key);
+	}
+
+	void appendIndex(int index) {
+		path.append('[').append(index).append(']');
+	}
+
+	@Override
+	public String toString() {
+		return path.toString();
+	}
+
+}
@@ -2,34 +2,253 @@ package com.dangdang.config.service.file.contenttype;
 
 import com.dangdang.config.service.exception.InvalidPathException;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 
 /**
+ * 单遍解析properties内容, 从字节数组或ByteBuffer分块解码后直接写入结果map, 不经过{@link java.util.Properties}<br>
+ * <br>
+ * 语法与{@link java.util.Properties#load(java.io.Reader)}一致: 注释行、续行、转义及key/value分隔规则
+ *
  * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
  *
  */
-public class PropertiesContentType implements ContentType {
+public class PropertiesContentType implements BufferContentType {
+
+	/**
+	 * 是否只在逻辑行开头识别注释. JDK 8及之前续行之后的#、!是内容, JDK 9起行内容为空时即识别为注释, 与运行时的Properties保持一致
+	 */
+	private static final boolean COMMENT_AT_LINE_START = isCommentAtLineStart();
 
 	@Override
 	public Map<String, String> resolve(byte[] data, String encoding) throws InvalidPathException {
-		Properties props = new Properties();
-		try (Reader reader = new InputStreamReader(new ByteArrayInputStream(data), encoding)) {
-			props.load(reader);
-		} catch (IOException e) {
-			throw new InvalidPathException(e);
-		}
+		return resolve(ByteBuffer.wrap(data), encoding);
+	}
 
+	@Override
+	public Map<String, String> resolve(ByteBuffer data, String encoding) throws InvalidPathException {
 		final HashMap<String, String> propMap = new HashMap<>();
-		for(String key : props.stringPropertyNames()) {
-			propMap.put(key, props.getProperty(key));
+		final LineReader reader = new LineReader(CharReader.create(data, encoding));
+		int limit;
+		while ((limit = reader.readLine()) >= 0) {
+			parseLine(reader, limit, propMap);
 		}
 		return propMap;
 	}
 
+	private static boolean isCommentAtLineStart() {
+		final Properties props = new Properties();
+		try {
+			props.load(new StringReader("\\\n#"));
+		} catch (IOException e) {
+			return true;
+		}
+		return !props.isEmpty();
+	}
+
+	/**
+	 * 拆分key和value, 规则同Properties.load0
+	 */
+	private static void parseLine(LineReader reader, int limit, Map<String, String> propMap) {
+		final char[] line = reader.lineBuf;
+		int keyLen = 0;
+		int valueStart = limit;
+		boolean hasSep = false;
+		boolean precedingBackslash = false;
+
+		while (keyLen < limit) {
+			final char c = line[keyLen];
+			if ((c == '=' || c == ':') && !precedingBackslash) {
+				valueStart = keyLen + 1;
+				hasSep = true;
+				break;
+			} else if (isWhiteSpace(c) && !precedingBackslash) {
+				valueStart = keyLen + 1;
+				break;
+			}
+			precedingBackslash = c == '\\' && !precedingBackslash;
+			keyLen++;
+		}
+		while (valueStart < limit) {
+			final char c = line[valueStart];
+			if (!isWhiteSpace(c)) {
+				if (!hasSep && (c == '=' || c == ':')) {
+					hasSep = true;
+				} else {
+					break;
+				}
+			}
+			valueStart++;
+		}
+
+		final String key = convert(reader, line, 0, keyLen);
+		final String value = convert(reader, line, valueStart, limit - valueStart);
+		propMap.put(key, value);
+	}
+
+	/**
+	 * 处理转义字符, 没有转义时直接构造字符串
+	 */
+	private static String convert(LineReader reader, char[] in, int off, int len) {
+		final int end = off + len;
+		int i = off;
+		while (i < end && in[i] != '\\') {
+			i++;
+		}
+		if (i == end) {
+			return new String(in, off, len);
+		}
+
+		final char[] out = reader.convertBuffer(len);
+		int outLen = i - off;
+		System.arraycopy(in, off, out, 0, outLen);
+		while (i < end) {
+			char c = in[i++];
+			if (c == '\\' && i < end) {
+				c = in[i++];
+				if (c == 'u') {
+					if (i + 4 > end) {
+						throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+					}
+					int value = 0;
+					for (int j = 0; j < 4; j++) {
+						value = (value << 4) + hexDigit(in[i++]);
+					}
+					c = (char) value;
+				} else if (c == 't') {
+					c = '\t';
+				} else if (c == 'r') {
+					c = '\r';
+				} else if (c == 'n') {
+					c = '\n';
+				} else if (c == 'f') {
+					c = '\f';
+				}
+			}
+			out[outLen++] = c;
+		}
+		return new String(out, 0, outLen);
+	}
+
+	private static int hexDigit(char c) {
+		if (c >= '0' && c <= '9') {
+			return c - '0';
+		}
+		if (c >= 'a' && c <= 'f') {
+			return c - 'a' + 10;
+		}
+		if (c >= 'A' && c <= 'F') {
+			return c - 'A' + 10;
+		}
+		throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+	}
+
+	private static boolean isWhiteSpace(int c) {
+		return c == ' ' || c == '\t' || c == '\f';
+	}
+
+	/**
+	 * 按逻辑行读取, 跳过空行和注释行, 合并续行, 规则同Properties.LineReader
+	 */
+	private static final class LineReader {
+
+		private final CharReader in;
+
+		private char[] lineBuf = new char[256];
+
+		private char[] convertBuf = new char[256];
+
+		LineReader(CharReader in) {
+			this.in = in;
+		}
+
+		/**
+		 * @return 逻辑行长度, 没有更多内容时返回-1
+		 */
+		int readLine() {
+			int len = 0;
+			boolean skipWhiteSpace = true;
+			boolean isNewLine = true;
+			boolean isCommentLine = false;
+			boolean appendedLineBegin = false;
+			boolean precedingBackslash = false;
+			boolean skipLF = false;
+
+			while (true) {
+				final int c = in.next();
+				if (c < 0) {
+					if (len == 0 || isCommentLine) {
+						return -1;
+					}
+					return precedingBackslash ? len - 1 : len;
+				}
+
+				if (skipLF) {
+					skipLF = false;
+					if (c == '\n') {
+						continue;
+					}
+				}
+				if (skipWhiteSpace) {
+					if (isWhiteSpace(c)) {
+						continue;
+					}
+					if (!appendedLineBegin && (c == '\r' || c == '\n')) {
+						continue;
+					}
+					skipWhiteSpace = false;
+					appendedLineBegin = false;
+				}
+				if (isNewLine || (!COMMENT_AT_LINE_START && len == 0)) {
+					isNewLine = false;
+					if (c == '#' || c == '!') {
+						isCommentLine = true;
+						continue;
+					}
+				}
+
+				if (c != '\n' && c != '\r') {
+					if (isCommentLine) {
+						continue;
+					}
+					if (len == lineBuf.length) {
+						lineBuf = Arrays.copyOf(lineBuf, len * 2);
+					}
+					lineBuf[len++] = (char) c;
+					precedingBackslash = c == '\\' && !precedingBackslash;
+				} else if (isCommentLine || len == 0) {
+					// 注释和空行不能续行
+					isCommentLine = false;
+					isNewLine = true;
+					skipWhiteSpace = true;
+				} else if (precedingBackslash) {
+					len--;
+					if (in.isEnd()) {
+						// 与Properties一致, 最后一行以续行符结束时保留空行
+						return len;
+					}
+					skipWhiteSpace = true;
+					appendedLineBegin = true;
+					precedingBackslash = false;
+					skipLF = c == '\r';
+				} else {
+					return len;
+				}
+			}
+		}
+
+		char[] convertBuffer(int len) {
+			if (convertBuf.length < len) {
+				convertBuf = new char[Math.max(len, convertBuf.length * 2)];
+			}
+			return convertBuf;
+		}
+
+	}
+
 }
@@ -2,40 +2,95 @@ package com.dangdang.config.service.file.contenttype;
 
 import com.dangdang.config.service.exception.InvalidPathException;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Properties;
 
 /**
  * <p>
  * The XML document must have the following DOCTYPE declaration:
- * 
+ *
  * <pre>
  * &lt;!DOCTYPE properties SYSTEM "http://java.sun.com/dtd/properties.dtd"&gt;
  * </pre>
- * 
+ *
  * Furthermore, the document must satisfy the properties DTD described above.
- * 
+ * <p>
+ * 使用StAX流式解析, 不构建DOM, 结果与{@link java.util.Properties#loadFromXML(java.io.InputStream)}一致.
+ * 不加载DTD, 也不解析外部实体, 文档结构按DTD的约束检查.
+ *
  * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
  *
  */
-public class XmlContentType implements ContentType {
+public class XmlContentType implements BufferContentType {
+
+	private static final String ROOT = "properties";
+
+	private static final String COMMENT = "comment";
+
+	private static final String ENTRY = "entry";
+
+	private static final String KEY = "key";
+
+	private static final XMLInputFactory FACTORY;
+
+	static {
+		FACTORY = XMLInputFactory.newInstance();
+		FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
 
 	@Override
 	public Map<String, String> resolve(byte[] data, String encoding) throws InvalidPathException {
-		Properties props = new Properties();
-		try (InputStream in = new ByteArrayInputStream(data)) {
-			props.loadFromXML(in);
-		} catch (IOException e) {
-			throw new InvalidPathException(e);
-		}
+		return resolve(ByteBuffer.wrap(data), encoding);
+	}
 
+	@Override
+	public Map<String, String> resolve(ByteBuffer data, String encoding) throws InvalidPathException {
 		final HashMap<String, String> propMap = new HashMap<>();
-		for(String key : props.stringPropertyNames()) {
-			propMap.put(key, props.getProperty(key));
+		XMLStreamReader reader = null;
+		try {
+			// 与Properties.loadFromXML一致, 编码由XML声明决定
+			reader = FACTORY.createXMLStreamReader(new ByteBufferInputStream(data));
+			// 跳过DOCTYPE、注释等, 定位到根元素
+			while (reader.next() != XMLStreamConstants.START_ELEMENT) {
+				continue;
+			}
+			if (!ROOT.equals(reader.getLocalName())) {
+				throw new InvalidPathException("Root element must be <properties>, but was <" + reader.getLocalName() + ">.");
+			}
+
+			// 只允许一个comment, 且在所有entry之前
+			boolean first = true;
+			while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+				final String element = reader.getLocalName();
+				if (COMMENT.equals(element) && first) {
+					reader.getElementText();
+				} else if (ENTRY.equals(element)) {
+					final String key = reader.getAttributeValue(null, KEY);
+					if (key == null) {
+						throw new InvalidPathException("Attribute key is required for <entry>.");
+					}
+					propMap.put(key, reader.getElementText());
+				} else {
+					throw new InvalidPathException("Unexpected element <" + element + "> in <properties>.");
+				}
+				first = false;
+			}
+		} catch (XMLStreamException e) {
+			throw new InvalidPathException(e);
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (XMLStreamException e) {
+					// ignore
+				}
+			}
 		}
 		return propMap;
 	}
@@ -0,0 +1,597 @@
+package com.dangdang.config.service.file.contenttype;
+
+import com.dangdang.config.service.exception.InvalidPathException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式解析YAML并展开为a.b[0].c形式的key, 逐行处理, 不构建中间的对象树<br>
+ * <br>
+ * 支持配置文件中常用的子集:
+ * <ul>
+ * <li>缩进表示的映射和序列, 包括与父级key同一缩进的序列及{@code - key: value}形式的序列元素</li>
+ * <li>普通、单引号、双引号标量, 行尾注释</li>
+ * <li>单行的流式集合, 如{@code [a, b]}、{@code {a: 1}}</li>
+ * <li>{@code |}、{@code >}块标量及其+/-指示符</li>
+ * <li>多个文档(---), 后面文档中的key覆盖前面的</li>
+ * </ul>
+ * 不支持锚点、别名、标签、复杂key及跨行的普通或引号标量. 标量保持原文, null(~)为空字符串
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public class YamlContentType implements BufferContentType {
+
+	@Override
+	public Map<String, String> resolve(byte[] data, String encoding) throws InvalidPathException {
+		return resolve(ByteBuffer.wrap(data), encoding);
+	}
+
+	@Override
+	public Map<String, String> resolve(ByteBuffer data, String encoding) throws InvalidPathException {
+		final Map<String, String> propMap = new HashMap<>();
+		new Parser(CharReader.create(data, encoding), propMap).parse();
+		return propMap;
+	}
+
+	private static final class Parser {
+
+		private final CharReader in;
+
+		private final Map<String, String> propMap;
+
+		private final KeyPath path = new KeyPath();
+
+		private final List<Block> blocks = new ArrayList<>();
+
+		private final StringBuilder text = new StringBuilder();
+
+		private String pushedBackLine;
+
+		private int lineNumber;
+
+		/**
+		 * 值为空的key, 其值由后续更深缩进的行决定, 没有时为空字符串
+		 */
+		private boolean pending;
+
+		private int pendingIndent;
+
+		private int pendingPathLength;
+
+		/**
+		 * 映射中的key允许后面紧跟同一缩进的序列
+		 */
+		private boolean pendingAllowsCompactSequence;
+
+		private boolean documentStarted;
+
+		Parser(CharReader in, Map<String, String> propMap) {
+			this.in = in;
+			this.propMap = propMap;
+		}
+
+		void parse() throws InvalidPathException {
+			String line;
+			while ((line = readLine()) != null) {
+				if (line.trim().isEmpty()) {
+					continue;
+				}
+				final int indent = indentOf(line);
+				if (line.charAt(indent) == '#') {
+					continue;
+				}
+				if (indent == 0 && (isMarker(line, "---") || isMarker(line, "..."))) {
+					endDocument();
+					continue;
+				}
+				if (indent == 0 && line.charAt(0) == '%') {
+					continue;
+				}
+				processLine(indent, line.substring(indent));
+			}
+			endDocument();
+		}
+
+		private void endDocument() {
+			resolvePending();
+			blocks.clear();
+			documentStarted = false;
+		}
+
+		private void processLine(int indent, String content) throws InvalidPathException {
+			final boolean item = isSequenceItem(content);
+
+			if (pending) {
+				pending = false;
+				if (indent > pendingIndent || (indent == pendingIndent && item && pendingAllowsCompactSequence)) {
+					blocks.add(new Block(item, indent, pendingPathLength));
+				} else {
+					propMap.put(path.toString(), "");
+				}
+			}
+
+			while (!blocks.isEmpty()) {
+				final Block top = top();
+				if (top.indent > indent || (top.sequence && top.indent == indent && !item && blocks.size() > 1)) {
+					blocks.remove(blocks.size() - 1);
+				} else {
+					break;
+				}
+			}
+
+			if (blocks.isEmpty()) {
+				if (documentStarted) {
+					throw error("Bad indentation");
+				}
+				documentStarted = true;
+				blocks.add(new Block(item, indent, 0));
+			}
+
+			final Block block = top();
+			if (block.indent != indent) {
+				throw error("Bad indentation");
+			}
+			if (block.sequence != item) {
+				throw error(item ? "Unexpected sequence item" : "Expected sequence item");
+			}
+			if (item) {
+				processItem(block, indent, content);
+			} else {
+				processEntry(block, indent, content);
+			}
+		}
+
+		private void processItem(Block block, int indent, String content) throws InvalidPathException {
+			path.truncate(block.pathLength);
+			path.appendIndex(block.count++);
+
+			final int spaces = indentOf(content.substring(1));
+			final String rest = content.substring(1 + spaces);
+			if (rest.isEmpty() || rest.charAt(0) == '#') {
+				setPending(indent, false);
+				return;
+			}
+
+			// - key: value 或 - - value, 元素内容作为更深一层的块
+			final int restIndent = indent + 1 + spaces;
+			if (isSequenceItem(rest) || keyEnd(rest) >= 0) {
+				blocks.add(new Block(isSequenceItem(rest), restIndent, path.length()));
+				processLine(restIndent, rest);
+			} else {
+				readValue(rest, indent);
+			}
+		}
+
+		private void processEntry(Block block, int indent, String content) throws InvalidPathException {
+			final int keyEnd = keyEnd(content);
+			if (keyEnd < 0) {
+				throw error("Expected 'key: value'");
+			}
+
+			path.truncate(block.pathLength);
+			path.appendKey(readKey(content.substring(0, keyEnd)));
+			block.count++;
+
+			final String rest = content.substring(keyEnd + 1).trim();
+			if (rest.isEmpty() || rest.charAt(0) == '#') {
+				setPending(indent, true);
+			} else {
+				readValue(rest, indent);
+			}
+		}
+
+		private void setPending(int indent, boolean allowsCompactSequence) {
+			pending = true;
+			pendingIndent = indent;
+			pendingPathLength = path.length();
+			pendingAllowsCompactSequence = allowsCompactSequence;
+		}
+
+		private void resolvePending() {
+			if (pending) {
+				pending = false;
+				path.truncate(pendingPathLength);
+				propMap.put(path.toString(), "");
+			}
+		}
+
+		private void readValue(String value, int indent) throws InvalidPathException {
+			switch (value.charAt(0)) {
+				case '"':
+				case '\'':
+					final int[] end = new int[1];
+					final String scalar = readQuoted(value, 0, end);
+					checkTrailing(value, end[0]);
+					propMap.put(path.toString(), scalar);
+					break;
+				case '[':
+				case '{':
+					final int flowEnd = readFlow(value, 0);
+					checkTrailing(value, flowEnd);
+					break;
+				case '|':
+				case '>':
+					readBlockScalar(value, indent);
+					break;
+				case '&':
+				case '*':
+				case '!':
+					throw error("Anchors, aliases and tags are not supported");
+				default:
+					propMap.put(path.toString(), plainScalar(stripComment(value)));
+			}
+		}
+
+		/**
+		 * 块标量: 后续缩进大于当前行的内容
+		 */
+		private void readBlockScalar(String header, int indent) throws InvalidPathException {
+			final boolean literal = header.charAt(0) == '|';
+			char chomping = ' ';
+			int blockIndent = -1;
+			final String indicators = stripComment(header.substring(1)).trim();
+			for (int i = 0; i < indicators.length(); i++) {
+				final char c = indicators.charAt(i);
+				if (c == '+' || c == '-') {
+					chomping = c;
+				} else if (c >= '1' && c <= '9') {
+					blockIndent = indent + (c - '0');
+				} else {
+					throw error("Invalid block scalar header");
+				}
+			}
+
+			final List<String> lines = new ArrayList<>();
+			String line;
+			while ((line = readLine()) != null) {
+				// 只有空白(包括tab)的行是空行
+				if (line.trim().isEmpty()) {
+					lines.add("");
+					continue;
+				}
+				final int lineIndent = indentOf(line);
+				if (blockIndent < 0) {
+					blockIndent = lineIndent;
+				}
+				if (lineIndent < blockIndent || lineIndent <= indent) {
+					pushedBackLine = line;
+					lineNumber--;
+					break;
+				}
+				lines.add(line.substring(blockIndent));
+			}
+
+			int contentLines = lines.size();
+			while (contentLines > 0 && lines.get(contentLines - 1).isEmpty()) {
+				contentLines--;
+			}
+
+			text.setLength(0);
+			for (int i = 0; i < contentLines; i++) {
+				final String current = lines.get(i);
+				if (i > 0) {
+					text.append(literal ? "\n" : foldedBreak(lines.get(i - 1), current));
+				}
+				text.append(current);
+			}
+			if (contentLines > 0 && chomping != '-') {
+				text.append('\n');
+			}
+			if (chomping == '+') {
+				for (int i = contentLines; i < lines.size(); i++) {
+					text.append('\n');
+				}
+			}
+			propMap.put(path.toString(), text.toString());
+		}
+
+		/**
+		 * 折叠块标量中两行之间的换行: 普通行之间为空格, 普通行后紧跟空行时省略, 其余保留换行
+		 */
+		private static String foldedBreak(String previous, String current) {
+			final boolean previousFolded = !previous.isEmpty() && previous.charAt(0) != ' ';
+			if (previousFolded && !current.isEmpty() && current.charAt(0) != ' ') {
+				return " ";
+			}
+			return previousFolded && current.isEmpty() ? "" : "\n";
+		}
+
+		/**
+		 * 单行的流式集合
+		 *
+		 * @return 集合结束后的位置
+		 */
+		private int readFlow(String line, int start) throws InvalidPathException {
+			final boolean sequence = line.charAt(start) == '[';
+			final char close = sequence ? ']' : '}';
+			final int pathLength = path.length();
+			int count = 0;
+			int i = skipSpaces(line, start + 1);
+			while (true) {
+				if (i >= line.length()) {
+					throw error("Multi-line flow collections are not supported");
+				}
+				if (line.charAt(i) == close) {
+					break;
+				}
+
+				path.truncate(pathLength);
+				if (sequence) {
+					path.appendIndex(count);
+				} else {
+					final int[] keyEnd = new int[1];
+					path.appendKey(readFlowScalar(line, i, keyEnd, true));
+					i = skipSpaces(line, keyEnd[0]);
+					if (i >= line.length() || line.charAt(i) != ':') {
+						throw error("Expected ':' in flow mapping");
+					}
+					i = skipSpaces(line, i + 1);
+				}
+				count++;
+
+				if (i < line.length() && (line.charAt(i) == '[' || line.charAt(i) == '{')) {
+					i = readFlow(line, i);
+				} else {
+					final int[] valueEnd = new int[1];
+					propMap.put(path.toString(), readFlowScalar(line, i, valueEnd, false));
+					i = valueEnd[0];
+				}
+
+				i = skipSpaces(line, i);
+				if (i < line.length() && line.charAt(i) == ',') {
+					i = skipSpaces(line, i + 1);
+				} else if (i >= line.length() || line.charAt(i) != close) {
+					throw error("Expected ',' or '" + close + "'");
+				}
+			}
+
+			path.truncate(pathLength);
+			if (count == 0) {
+				propMap.put(path.toString(), "");
+			}
+			return i + 1;
+		}
+
+		private String readFlowScalar(String line, int start, int[] end, boolean key) throws InvalidPathException {
+			if (start < line.length() && (line.charAt(start) == '"' || line.charAt(start) == '\'')) {
+				return readQuoted(line, start, end);
+			}
+			int i = start;
+			while (i < line.length()) {
+				final char c = line.charAt(i);
+				if (c == ',' || c == ']' || c == '}' || (key && c == ':')) {
+					break;
+				}
+				i++;
+			}
+			end[0] = i;
+			final String scalar = line.substring(start, i).trim();
+			return key ? scalar : plainScalar(scalar);
+		}
+
+		private String readQuoted(String line, int start, int[] end) throws InvalidPathException {
+			final char quote = line.charAt(start);
+			text.setLength(0);
+			int i = start + 1;
+			while (i < line.length()) {
+				final char c = line.charAt(i++);
+				if (c == quote) {
+					if (quote == '\'' && i < line.length() && line.charAt(i) == '\'') {
+						text.append('\'');
+						i++;
+						continue;
+					}
+					end[0] = i;
+					return text.toString();
+				}
+				if (c == '\\' && quote == '"' && i < line.length()) {
+					i = readEscape(line, i);
+				} else {
+					text.append(c);
+				}
+			}
+			throw error("Multi-line quoted scalars are not supported");
+		}
+
+		private int readEscape(String line, int start) throws InvalidPathException {
+			final char c = line.charAt(start);
+			int i = start + 1;
+			switch (c) {
+				case 'n':
+					text.append('\n');
+					break;
+				case 't':
+					text.append('\t');
+					break;
+				case 'r':
+					text.append('\r');
+					break;
+				case '0':
+					text.append('\0');
+					break;
+				case ' ':
+				case '"':
+				case '/':
+				case '\\':
+					text.append(c);
+					break;
+				case 'x':
+				case 'u':
+				case 'U':
+					final int digits = c == 'x' ? 2 : c == 'u' ? 4 : 8;
+					if (i + digits > line.length()) {
+						throw error("Invalid escape");
+					}
+					try {
+						text.appendCodePoint(Integer.parseInt(line.substring(i, i + digits), 16));
+					} catch (IllegalArgumentException e) {
+						throw error("Invalid escape");
+					}
+					i += digits;
+					break;
+				default:
+					throw error("Invalid escape");
+			}
+			return i;
+		}
+
+		private String readKey(String key) throws InvalidPathException {
+			final String trimmed = key.trim();
+			if (!trimmed.isEmpty() && (trimmed.charAt(0) == '"' || trimmed.charAt(0) == '\'')) {
+				final int[] end = new int[1];
+				final String quoted = readQuoted(trimmed, 0, end);
+				if (end[0] != trimmed.length()) {
+					throw error("Invalid key");
+				}
+				return quoted;
+			}
+			if (trimmed.startsWith("?")) {
+				throw error("Complex keys are not supported");
+			}
+			return trimmed;
+		}
+
+		/**
+		 * @return 映射中key后面冒号的位置, 不是映射时返回-1
+		 */
+		private int keyEnd(String content) throws InvalidPathException {
+			int i = 0;
+			if (content.charAt(0) == '"' || content.charAt(0) == '\'') {
+				final int[] end = new int[1];
+				readQuoted(content, 0, end);
+				i = skipSpaces(content, end[0]);
+				return i < content.length() && content.charAt(i) == ':' ? i : -1;
+			}
+			if (content.charAt(0) == '[' || content.charAt(0) == '{') {
+				return -1;
+			}
+			for (; i < content.length(); i++) {
+				final char c = content.charAt(i);
+				if (c == ':' && (i + 1 == content.length() || content.charAt(i + 1) == ' ' || content.charAt(i + 1) == '\t')) {
+					return i;
+				}
+				if (c == '#' && i > 0 && content.charAt(i - 1) == ' ') {
+					return -1;
+				}
+			}
+			return -1;
+		}
+
+		private void checkTrailing(String line, int end) throws InvalidPathException {
+			final String trailing = line.substring(end).trim();
+			if (!trailing.isEmpty() && trailing.charAt(0) != '#') {
+				throw error("Unexpected content after value");
+			}
+		}
+
+		private static String stripComment(String value) {
+			for (int i = 1; i < value.length(); i++) {
+				if (value.charAt(i) == '#' && (value.charAt(i - 1) == ' ' || value.charAt(i - 1) == '\t')) {
+					return value.substring(0, i).trim();
+				}
+			}
+			return value.trim();
+		}
+
+		private static String plainScalar(String value) {
+			if (value.equals("~") || value.equals("null") || value.equals("Null") || value.equals("NULL")) {
+				return "";
+			}
+			return value;
+		}
+
+		private static boolean isSequenceItem(String content) {
+			return content.charAt(0) == '-' && (content.length() == 1 || content.charAt(1) == ' ');
+		}
+
+		private static boolean isMarker(String line, String marker) {
+			return line.startsWith(marker) && (line.length() == marker.length() || line.charAt(marker.length()) == ' ');
+		}
+
+		private static int skipSpaces(String line, int start) {
+			int i = start;
+			while (i < line.length() && line.charAt(i) == ' ') {
+				i++;
+			}
+			return i;
+		}
+
+		private int indentOf(String line) throws InvalidPathException {
+			int i = 0;
+			while (i < line.length() && line.charAt(i) == ' ') {
+				i++;
+			}
+			if (i < line.length() && line.charAt(i) == '\t' && line.trim().length() > 0) {
+				throw error("Tabs are not allowed for indentation");
+			}
+			return i;
+		}
+
+		private Block top() {
+			return blocks.get(blocks.size() - 1);
+		}
+
+		private String readLine() {
+			lineNumber++;
+			if (pushedBackLine != null) {
+				final String line = pushedBackLine;
+				pushedBackLine = null;
+				return line;
+			}
+			if (in.isEnd()) {
+				return null;
+			}
+			final StringBuilder line = new StringBuilder();
+			int c;
+			while ((c = in.next()) >= 0 && c != '\n') {
+				if (c == '\r') {
+					if (in.peek() == '\n') {
+						in.next();
+					}
+					break;
+				}
+				line.append((char) c);
+			}
+			// 忽略BOM
+			if (lineNumber == 1 && line.length() > 0 && line.charAt(0) == '\uFEFF') {
+				line.deleteCharAt(0);
+			}
+			return line.toString();
+		}
+
+		private InvalidPathException error(String message) {
+			return new InvalidPathException(message + " at line " + lineNumber + " of YAML content.");
+		}
+
+	}
+
+	/**
+	 * 缩进表示的映射或序列
+	 */
+	private static final class Block {
+
+		private final boolean sequence;
+
+		private final int indent;
+
+		/**
+		 * 块自身的key长度, 元素的key在此基础上追加
+		 */
+		private final int pathLength;
+
+		private int count;
+
+		Block(boolean sequence, int indent, int pathLength) {
+			this.sequence = sequence;
+			this.indent = indent;
+			this.pathLength = pathLength;
+		}
+
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.dangdang.config.service.file.protocol;
+
+import com.dangdang.config.service.exception.InvalidPathException;
+import com.dangdang.config.service.file.FileLocation;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 可选能力: 以ByteBuffer读取文件, 交给{@link com.dangdang.config.service.file.contenttype.BufferContentType}直接解析
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public interface BufferProtocol extends Protocol {
+
+	/**
+	 * Read data of file as a read-only buffer
+	 *
+	 * @param location
+	 * @return
+	 */
+	ByteBuffer readBuffer(FileLocation location) throws InvalidPathException;
+
+}
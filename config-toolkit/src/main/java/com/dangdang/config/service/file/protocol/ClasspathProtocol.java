@@ -20,11 +20,7 @@ import java.util.Map;
  */
 public class ClasspathProtocol extends LocalFileProtocol {
 
-	private static Map<String, FileSystem> fsMap;
-
-	static {
-		fsMap = new HashMap<>();
-	}
+	private static final Map<String, FileSystem> fsMap = new HashMap<>();
 
 	@Override
 	protected Path getPath(FileLocation location) throws InvalidPathException {
@@ -36,10 +32,13 @@ public class ClasspathProtocol extends LocalFileProtocol {
 				final Map<String, String> env = new HashMap<>();
 				final String[] array = uri.toString().split("!");
 				FileSystem fs;
-				if (!fsMap.containsKey(array[0])) {
-					fsMap.put(array[0], FileSystems.newFileSystem(URI.create(array[0]), env));
+				synchronized (fsMap) {
+					fs = fsMap.get(array[0]);
+					if (fs == null) {
+						fs = FileSystems.newFileSystem(URI.create(array[0]), env);
+						fsMap.put(array[0], fs);
+					}
 				}
-				fs = fsMap.get(array[0]);
 				return fs.getPath(array[1], array[2]);
 			}
 			return Paths.get(url.toURI());
@@ -50,4 +49,14 @@ public class ClasspathProtocol extends LocalFileProtocol {
 		}
 	}
 
+	@Override
+	public void close() throws IOException {
+		synchronized (fsMap) {
+			for (FileSystem fs : fsMap.values()) {
+				fs.close();
+			}
+			fsMap.clear();
+		}
+	}
+
 }
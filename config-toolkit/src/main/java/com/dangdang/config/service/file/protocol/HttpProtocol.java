@@ -3,49 +3,308 @@ package com.dangdang.config.service.file.protocol;
 import com.dangdang.config.service.exception.InvalidPathException;
 import com.dangdang.config.service.file.FileConfigGroup;
 import com.dangdang.config.service.file.FileLocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
 /**
+ * 通过条件GET(If-None-Match/If-Modified-Since)轮询文件变化, 只有200响应才重新加载配置组.<br>
+ * <br>
+ * 所有配置组共用一个守护线程轮询, 每次的间隔在{@link com.dangdang.config.service.file.FileConfigProfile#getPollInterval()}基础上随机浮动,
+ * 避免多个配置组同时请求
+ *
  * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
  *
  */
 public class HttpProtocol implements Protocol {
 
-	@Override
-	public void close() throws IOException {
+	private static final Logger LOGGER = LoggerFactory.getLogger(HttpProtocol.class);
+
+	private static final String THREAD_NAME = "config-toolkit-http-poller";
+
+	private static final int CONNECT_TIMEOUT = 10000;
+
+	private static final int READ_TIMEOUT = 30000;
+
+	private static final int BUFFER_SIZE = 8192;
 
+	/**
+	 * 轮询间隔的随机浮动比例
+	 */
+	private static final double JITTER = 0.2;
+
+	/**
+	 * 此时间内再次读取同一地址时直接使用上次的响应, 避免轮询触发重新加载时重复请求
+	 */
+	private static final long REUSE_MILLIS = 1000;
+
+	private final ConcurrentMap<String, Resource> resources = new ConcurrentHashMap<>();
+
+	/**
+	 * 配置组的equals比较的是配置内容, 按引用区分
+	 */
+	private final Map<FileConfigGroup, PollTask> pollTasks = new IdentityHashMap<>();
+
+	private ScheduledExecutorService scheduler;
+
+	@Override
+	public synchronized void close() throws IOException {
+		for (PollTask task : pollTasks.values()) {
+			task.cancel();
+		}
+		pollTasks.clear();
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
 	}
 
 	@Override
 	public byte[] read(FileLocation location) throws InvalidPathException {
+		final Resource resource = getResource(location);
+		synchronized (resource) {
+			if (resource.body == null || System.currentTimeMillis() - resource.fetchedAt > REUSE_MILLIS) {
+				fetch(resource);
+			}
+			return resource.body;
+		}
+	}
+
+	@Override
+	public synchronized void watch(FileLocation location, FileConfigGroup fileConfigGroup) throws InvalidPathException {
+		final long interval = fileConfigGroup.getConfigProfile().getPollInterval();
+		if (interval <= 0 || pollTasks.containsKey(fileConfigGroup)) {
+			return;
+		}
+
+		if (scheduler == null) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					final Thread thread = new Thread(r, THREAD_NAME);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+
+		final PollTask task = new PollTask(getResource(location), fileConfigGroup, interval);
+		pollTasks.put(fileConfigGroup, task);
+		task.schedule();
+	}
+
+	@Override
+	public synchronized void unwatch(FileLocation location, FileConfigGroup fileConfigGroup) throws InvalidPathException {
+		final PollTask task = pollTasks.remove(fileConfigGroup);
+		if (task != null) {
+			task.cancel();
+		}
+		if (pollTasks.isEmpty() && scheduler != null) {
+			scheduler.shutdown();
+			scheduler = null;
+		}
+	}
+
+	private synchronized void schedule(PollTask task, long delay) {
+		if (scheduler != null && pollTasks.get(task.configGroup) == task) {
+			task.future = scheduler.schedule(task, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private Resource getResource(FileLocation location) throws InvalidPathException {
+		final String url = location.getProtocol() + ":" + location.getFile();
+		Resource resource = resources.get(url);
+		if (resource == null) {
+			try {
+				resource = new Resource(new URL(url));
+			} catch (MalformedURLException e) {
+				throw new InvalidPathException(e);
+			}
+			final Resource existing = resources.putIfAbsent(url, resource);
+			if (existing != null) {
+				resource = existing;
+			}
+		}
+		return resource;
+	}
+
+	/**
+	 * 发送条件GET, 内容有变化时更新缓存的响应并增加版本号
+	 */
+	private void fetch(Resource resource) throws InvalidPathException {
 		try {
-			URL url = new URL(location.getProtocol() + ":" + location.getFile());
-			try (InputStream in = url.openStream()) {
-				try(ByteArrayOutputStream buffer = new ByteArrayOutputStream()) {
-					int nRead;
-					byte[] data = new byte[1024];
-					while ((nRead = in.read(data, 0, data.length)) != -1) {
-						buffer.write(data, 0, nRead);
-					}
-
-					buffer.flush();
-					return buffer.toByteArray();
+			final HttpURLConnection connection = (HttpURLConnection) resource.url.openConnection();
+			connection.setConnectTimeout(CONNECT_TIMEOUT);
+			connection.setReadTimeout(READ_TIMEOUT);
+			connection.setRequestProperty("Accept-Encoding", "gzip");
+			if (resource.body != null) {
+				if (resource.etag != null) {
+					connection.setRequestProperty("If-None-Match", resource.etag);
+				}
+				if (resource.lastModified != null) {
+					connection.setRequestProperty("If-Modified-Since", resource.lastModified);
 				}
 			}
-		} catch (MalformedURLException e) {
-			throw new InvalidPathException(e);
+
+			final int responseCode = connection.getResponseCode();
+			if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && resource.body != null) {
+				// 读完响应体才能复用keep-alive连接
+				drain(connection.getInputStream());
+				resource.fetchedAt = System.currentTimeMillis();
+				return;
+			}
+			if (responseCode != HttpURLConnection.HTTP_OK) {
+				drain(connection.getErrorStream());
+				throw new InvalidPathException("Unexpected response code " + responseCode + " from " + resource.url);
+			}
+
+			InputStream in = connection.getInputStream();
+			if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+				in = new GZIPInputStream(in, BUFFER_SIZE);
+			}
+			final byte[] body = readFully(in, connection.getContentLength());
+
+			resource.body = body;
+			resource.etag = connection.getHeaderField("ETag");
+			resource.lastModified = connection.getHeaderField("Last-Modified");
+			resource.fetchedAt = System.currentTimeMillis();
+			resource.version++;
 		} catch (IOException e) {
 			throw new InvalidPathException(e);
 		}
 	}
 
-	@Override
-	public void watch(FileLocation location, FileConfigGroup fileConfigGroup) throws InvalidPathException {
+	private static byte[] readFully(InputStream in, int contentLength) throws IOException {
+		try (InputStream input = in) {
+			final ByteArrayOutputStream buffer = new ByteArrayOutputStream(contentLength > 0 ? contentLength : BUFFER_SIZE);
+			final byte[] data = new byte[BUFFER_SIZE];
+			int nRead;
+			while ((nRead = input.read(data, 0, data.length)) != -1) {
+				buffer.write(data, 0, nRead);
+			}
+			return buffer.toByteArray();
+		}
+	}
+
+	private static void drain(InputStream in) throws IOException {
+		if (in == null) {
+			return;
+		}
+		try (InputStream input = in) {
+			final byte[] data = new byte[BUFFER_SIZE];
+			while (input.read(data) != -1) {
+				continue;
+			}
+		}
+	}
+
+	/**
+	 * 同一地址的最近一次响应, 多个配置组共享
+	 */
+	private static final class Resource {
+
+		private final URL url;
+
+		private byte[] body;
+
+		private String etag;
+
+		private String lastModified;
+
+		private long fetchedAt;
+
+		/**
+		 * 每收到一次新内容加1
+		 */
+		private long version;
+
+		Resource(URL url) {
+			this.url = url;
+		}
+
+	}
+
+	private final class PollTask implements Runnable {
+
+		private final Resource resource;
+
+		private final FileConfigGroup configGroup;
+
+		private final long interval;
+
+		/**
+		 * 配置组已加载的内容版本
+		 */
+		private long loadedVersion;
+
+		private volatile boolean cancelled;
+
+		private volatile ScheduledFuture<?> future;
+
+		PollTask(Resource resource, FileConfigGroup configGroup, long interval) {
+			this.resource = resource;
+			this.configGroup = configGroup;
+			this.interval = interval;
+			synchronized (resource) {
+				this.loadedVersion = resource.version;
+			}
+		}
+
+		void schedule() {
+			final long jitter = (long) (interval * JITTER);
+			HttpProtocol.this.schedule(this, interval - jitter + ThreadLocalRandom.current().nextLong(2 * jitter + 1));
+		}
+
+		void cancel() {
+			cancelled = true;
+			final ScheduledFuture<?> scheduled = future;
+			if (scheduled != null) {
+				scheduled.cancel(false);
+			}
+		}
+
+		@Override
+		public void run() {
+			if (cancelled) {
+				return;
+			}
+			try {
+				final boolean changed;
+				synchronized (resource) {
+					fetch(resource);
+					// 其他配置组轮询到的新内容同样需要加载
+					changed = resource.version != loadedVersion;
+					loadedVersion = resource.version;
+				}
+				if (changed) {
+					LOGGER.debug("{} changed.", resource.url);
+					configGroup.reload();
+				}
+			} catch (Exception e) {
+				LOGGER.warn("Poll " + resource.url + " failed.", e);
+			} finally {
+				if (!cancelled) {
+					schedule();
+				}
+			}
+		}
 
 	}
 
@@ -1,20 +1,25 @@
 package com.dangdang.config.service.file.protocol;
 
 import com.dangdang.config.service.exception.InvalidPathException;
-import com.dangdang.config.service.file.FileChangeEventListener;
 import com.dangdang.config.service.file.FileConfigGroup;
 import com.dangdang.config.service.file.FileLocation;
+import com.dangdang.config.service.file.FileWatcher;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.*;
 
 /**
  * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
  *
  */
-public abstract class LocalFileProtocol implements Protocol {
+public abstract class LocalFileProtocol implements BufferProtocol {
 
-	private WatchService watcher;
+	/**
+	 * 单次从通道读取的最大字节数, 避免JDK为一次大读取分配同样大小的临时直接缓冲区
+	 */
+	private static final int READ_CHUNK_SIZE = 64 * 1024;
 
 	@Override
 	public final byte[] read(FileLocation location) throws InvalidPathException {
@@ -29,15 +34,46 @@ public abstract class LocalFileProtocol implements Protocol {
 		}
 	}
 
+	/**
+	 * 分块读到堆上, 读完即关闭文件, 不使用内存映射
+	 */
+	@Override
+	public final ByteBuffer readBuffer(FileLocation location) throws InvalidPathException {
+		try {
+			Path path = getPath(location);
+			if (!Files.exists(path)) {
+				throw new InvalidPathException("The file is not exists.");
+			}
+			try (SeekableByteChannel channel = Files.newByteChannel(path, StandardOpenOption.READ)) {
+				ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size() + 1, Integer.MAX_VALUE - 8));
+				while (true) {
+					if (!buffer.hasRemaining()) {
+						// 读取期间文件变大
+						final ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2);
+						buffer.flip();
+						buffer = grown.put(buffer);
+					}
+					final int limit = buffer.limit();
+					buffer.limit(Math.min(limit, buffer.position() + READ_CHUNK_SIZE));
+					final int n = channel.read(buffer);
+					buffer.limit(limit);
+					if (n < 0) {
+						break;
+					}
+				}
+				buffer.flip();
+				return buffer.asReadOnlyBuffer();
+			}
+		} catch (IOException e) {
+			throw new InvalidPathException(e);
+		}
+	}
+
 	@Override
 	public final void watch(FileLocation location, FileConfigGroup fileConfigGroup) throws InvalidPathException {
 		// Register file change listener
 		try {
-			watcher = FileSystems.getDefault().newWatchService();
-			Path path = getPath(location).toAbsolutePath();
-
-			path.getParent().register(watcher, StandardWatchEventKinds.ENTRY_MODIFY);
-			new Thread(new FileChangeEventListener(watcher, fileConfigGroup, path)).start();
+			FileWatcher.getInstance().subscribe(getPath(location), fileConfigGroup);
 		} catch (IOException e) {
 			throw new InvalidPathException(e);
 		} catch (UnsupportedOperationException e){
@@ -45,13 +81,15 @@ public abstract class LocalFileProtocol implements Protocol {
 		}
 	}
 
+	@Override
+	public final void unwatch(FileLocation location, FileConfigGroup fileConfigGroup) throws InvalidPathException {
+		FileWatcher.getInstance().unsubscribe(getPath(location), fileConfigGroup);
+	}
+
 	protected abstract Path getPath(FileLocation location) throws InvalidPathException;
 
 	@Override
 	public void close() throws IOException {
-		if (watcher != null) {
-			watcher.close();
-		}
 	}
 
 }
@@ -7,6 +7,7 @@ import com.dangdang.config.service.file.FileLocation;
 import com.dangdang.config.service.file.FileConfigGroup;
 
 /**
+ * 协议实例由{@link Protocols}缓存并被所有配置组共享, 实现必须线程安全
  * 
  * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
  *
@@ -29,4 +30,12 @@ public interface Protocol extends Closeable {
 	 */
 	void watch(FileLocation location, FileConfigGroup fileConfigGroup) throws InvalidPathException;
 
+	/**
+	 * Remove the watcher registered by {@link #watch(FileLocation, FileConfigGroup)}
+	 * 
+	 * @param location
+	 * @param fileConfigGroup
+	 */
+	void unwatch(FileLocation location, FileConfigGroup fileConfigGroup) throws InvalidPathException;
+
 }
@@ -0,0 +1,27 @@
+package com.dangdang.config.service.file.protocol;
+
+import java.util.Collection;
+
+/**
+ * 协议扩展点, 通过{@link java.util.ServiceLoader}注册:
+ * META-INF/services/com.dangdang.config.service.file.protocol.ProtocolFactory<br>
+ * <br>
+ * 与META-INF/toolkit中注册的协议重名时, 以此处注册的为准
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ */
+public interface ProtocolFactory {
+
+    /**
+     * @return 支持的协议名, 如http、https
+     */
+    Collection<String> getProtocolNames();
+
+    /**
+     * 创建协议实例, 每个工厂只调用一次, 实例由所有配置组共享, 必须线程安全
+     *
+     * @return
+     */
+    Protocol create();
+
+}
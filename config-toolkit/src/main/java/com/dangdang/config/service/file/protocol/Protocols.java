@@ -1,20 +1,31 @@
 package com.dangdang.config.service.file.protocol;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.ServiceLoader;
 
 /**
- * Protocol factory
+ * Protocol factory<br>
+ * <br>
+ * 协议实例在注册时创建并缓存, 所有配置组共享同一实例; 实例持有的资源由本注册表负责关闭
  *
  * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
  */
-public final class Protocols {
+public final class Protocols implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Protocols.class);
 
-    private Map<String, Class<Protocol>> protocols;
+    private Map<String, Protocol> protocols;
 
     private static Protocols INSTANCE = new Protocols();
 
@@ -34,12 +45,26 @@ public final class Protocols {
                 }
             }
 
-            // Initialize protocol beans
+            // Initialize protocol beans, one instance per class
             protocols = new HashMap<>();
+            final Map<String, Protocol> beansByClass = new HashMap<>();
             for (Map.Entry<Object, Object> entry : props.entrySet()) {
                 final String protocolName = ((String) entry.getKey()).toLowerCase();
-                @SuppressWarnings("unchecked") final Class<Protocol> protocolBeanClazz = (Class<Protocol>) Class.forName((String) entry.getValue());
-                protocols.put(protocolName, protocolBeanClazz);
+                final String className = ((String) entry.getValue()).trim();
+                Protocol protocolBean = beansByClass.get(className);
+                if (protocolBean == null) {
+                    protocolBean = (Protocol) Class.forName(className).newInstance();
+                    beansByClass.put(className, protocolBean);
+                }
+                protocols.put(protocolName, protocolBean);
+            }
+
+            // Protocols registered by ServiceLoader
+            for (ProtocolFactory factory : ServiceLoader.load(ProtocolFactory.class, this.getClass().getClassLoader())) {
+                final Protocol protocolBean = factory.create();
+                for (String protocolName : factory.getProtocolNames()) {
+                    protocols.put(protocolName.toLowerCase(), protocolBean);
+                }
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -50,12 +75,42 @@ public final class Protocols {
         return INSTANCE;
     }
 
-    public Class<Protocol> get(String protocolName) {
-        final Class<Protocol> protocolClass = protocols.get(protocolName);
-        if (protocolClass == null) {
+    /**
+     * @param protocolName
+     * @return 共享的协议实例
+     */
+    public Protocol getProtocol(String protocolName) {
+        final Protocol protocol = protocols.get(protocolName);
+        if (protocol == null) {
             throw new IllegalArgumentException("Procotol with name " + protocolName + " not registered.");
         }
-        return protocolClass;
+        return protocol;
+    }
+
+    /**
+     * @deprecated 协议实例已由注册表缓存共享, 使用{@link #getProtocol(String)}
+     */
+    @Deprecated
+    @SuppressWarnings("unchecked")
+    public Class<Protocol> get(String protocolName) {
+        return (Class<Protocol>) getProtocol(protocolName).getClass();
+    }
+
+    /**
+     * 关闭所有协议实例持有的资源
+     */
+    @Override
+    public void close() {
+        final Map<Protocol, Boolean> closed = new IdentityHashMap<>();
+        for (Protocol protocol : protocols.values()) {
+            if (closed.put(protocol, Boolean.TRUE) == null) {
+                try {
+                    protocol.close();
+                } catch (IOException e) {
+                    LOGGER.warn("Close protocol " + protocol.getClass().getName() + " failed.", e);
+                }
+            }
+        }
     }
 
 }
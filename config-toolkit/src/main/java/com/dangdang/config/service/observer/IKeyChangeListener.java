@@ -0,0 +1,18 @@
+package com.dangdang.config.service.observer;
+
+/**
+ * 配置项变化的同步监听, 配置项新增、修改或删除时在修改线程中回调
+ * 
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public interface IKeyChangeListener {
+
+	/**
+	 * 配置项发生变化
+	 * 
+	 * @param key
+	 */
+	void keyChanged(String key);
+
+}
@@ -0,0 +1,213 @@
+package com.dangdang.config.service.stat;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 配置组中各配置项的访问统计<br>
+ * <br>
+ * 按采样率记录读取次数, 采样率为N时每次读取以1/N的概率计数, 报告中的次数为估算值; 可通过JMX查看或导出到文件,
+ * 用于生成{@code KeyLoadingMode.INCLUDE}列表及延迟加载的预加载列表
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ */
+public class KeyAccessStatistics implements KeyAccessStatisticsMBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KeyAccessStatistics.class);
+
+    private static final String OBJECT_NAME_PATTERN = "com.dangdang.config:type=KeyAccessStatistics,name=%s";
+
+    private final String groupName;
+
+    private final int sampleRate;
+
+    private final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    private ObjectName objectName;
+
+    public KeyAccessStatistics(String groupName, int sampleRate) {
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("Sample rate must be positive.");
+        }
+        this.groupName = groupName;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * 记录一次读取
+     *
+     * @param key
+     */
+    public void record(String key) {
+        if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return;
+        }
+
+        AtomicLong counter = counters.get(key);
+        if (counter == null) {
+            final AtomicLong newCounter = new AtomicLong();
+            counter = counters.putIfAbsent(key, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        counter.incrementAndGet();
+    }
+
+    /**
+     * @return 各key的估算访问次数
+     */
+    public Map<String, Long> snapshot() {
+        final Map<String, Long> snapshot = new HashMap<>();
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().get() * sampleRate);
+        }
+        return snapshot;
+    }
+
+    /**
+     * 注册到JMX
+     */
+    public void register() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            objectName = new ObjectName(String.format(OBJECT_NAME_PATTERN, ObjectName.quote(groupName)));
+            server.registerMBean(this, objectName);
+        } catch (InstanceAlreadyExistsException e) {
+            LOGGER.warn("Access statistics of group {} already registered.", groupName);
+            objectName = null;
+        } catch (JMException e) {
+            LOGGER.error(e.getMessage(), e);
+            objectName = null;
+        }
+    }
+
+    /**
+     * 从JMX注销
+     */
+    public void unregister() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                LOGGER.warn(e.getMessage(), e);
+            }
+            objectName = null;
+        }
+    }
+
+    @Override
+    public String getGroupName() {
+        return groupName;
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public int getKeyCount() {
+        return counters.size();
+    }
+
+    @Override
+    public String[] getTopKeys(int size) {
+        final List<Map.Entry<String, Long>> entries = sortedEntries();
+        final String[] topKeys = new String[Math.min(size, entries.size())];
+        for (int i = 0; i < topKeys.length; i++) {
+            topKeys[i] = entries.get(i).getKey() + "=" + entries.get(i).getValue();
+        }
+        return topKeys;
+    }
+
+    @Override
+    public String getKeysReadAtLeast(long minCount) {
+        final StringBuilder builder = new StringBuilder();
+        for (String key : keysReadAtLeast(minCount)) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(key);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 返回访问次数不少于minCount的key
+     *
+     * @param minCount
+     * @return
+     */
+    public Set<String> keysReadAtLeast(long minCount) {
+        final Set<String> keys = new TreeSet<>();
+        for (Map.Entry<String, Long> entry : snapshot().entrySet()) {
+            if (entry.getValue() >= minCount) {
+                keys.add(entry.getKey());
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public void dump(String file) {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(new File(file)), "UTF-8")) {
+            writer.write(String.format("# Key access statistics of config group: %s, sample rate: 1/%d%n", groupName, sampleRate));
+            for (Map.Entry<String, Long> entry : sortedEntries()) {
+                writer.write(entry.getKey() + "=" + entry.getValue() + System.lineSeparator());
+            }
+        } catch (IOException e) {
+            LOGGER.error(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void reset() {
+        counters.clear();
+    }
+
+    /**
+     * 按访问次数倒序排列
+     */
+    private List<Map.Entry<String, Long>> sortedEntries() {
+        final List<Map.Entry<String, Long>> entries = new ArrayList<>(snapshot().entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(Map.Entry<String, Long> o1, Map.Entry<String, Long> o2) {
+                return o2.getValue().compareTo(o1.getValue());
+            }
+        });
+        return entries;
+    }
+
+    @Override
+    public String toString() {
+        return "KeyAccessStatistics{" +
+                "groupName='" + groupName + '\'' +
+                ", sampleRate=" + sampleRate +
+                ", keyCount=" + counters.size() +
+                '}';
+    }
+}
@@ -0,0 +1,40 @@
+package com.dangdang.config.service.stat;
+
+/**
+ * 配置项访问统计的JMX接口
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ */
+public interface KeyAccessStatisticsMBean {
+
+    String getGroupName();
+
+    int getSampleRate();
+
+    /**
+     * @return 被访问过的key数量
+     */
+    int getKeyCount();
+
+    /**
+     * @param size
+     * @return 访问次数最多的key, 格式为key=count
+     */
+    String[] getTopKeys(int size);
+
+    /**
+     * @param minCount
+     * @return 访问次数不少于minCount的key, 以逗号分隔, 可直接用作INCLUDE列表或预加载列表
+     */
+    String getKeysReadAtLeast(long minCount);
+
+    /**
+     * 将统计结果写入文件
+     *
+     * @param file
+     */
+    void dump(String file);
+
+    void reset();
+
+}
@@ -0,0 +1,196 @@
+package com.dangdang.config.service.support.spring;
+
+import com.dangdang.config.service.ConfigGroup;
+import com.dangdang.config.service.GeneralConfigGroup;
+import com.dangdang.config.service.observer.IKeyChangeListener;
+import com.dangdang.config.service.stat.KeyAccessStatistics;
+import com.dangdang.config.service.util.Tuple;
+import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PreDestroy;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Spring Property Source merging all configuration groups<br>
+ * <br>
+ * 按配置组顺序预先计算每个key的生效值, 查找只需一次哈希; 配置组变化时只更新变化的key.
+ * 未命中或更靠前的配置组中该key尚未按需加载时依次查找各配置组
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ */
+public class ConfigGroupCompositeResource extends EnumerablePropertySource<List<ConfigGroup>> implements Closeable {
+
+    /**
+     * 每个配置组及其internalConfigGroup链, 链上有非GeneralConfigGroup时为null, 不建索引
+     */
+    private final List<List<GeneralConfigGroup>> layers;
+
+    /**
+     * key -> (提供生效值的配置组, 生效值)
+     */
+    private final Map<String, Tuple<GeneralConfigGroup, String>> index = new ConcurrentHashMap<>();
+
+    private final IKeyChangeListener listener = new IKeyChangeListener() {
+
+        @Override
+        public void keyChanged(String key) {
+            refresh(key);
+        }
+    };
+
+    private volatile String[] propertyNames;
+
+    public ConfigGroupCompositeResource(List<ConfigGroup> configGroups) {
+        super(UUID.randomUUID().toString(), configGroups);
+        this.layers = resolveLayers(configGroups);
+
+        if (layers != null) {
+            for (List<GeneralConfigGroup> groupLayers : layers) {
+                for (GeneralConfigGroup layer : groupLayers) {
+                    layer.addKeyChangeListener(listener);
+                }
+            }
+            synchronized (index) {
+                for (int i = layers.size() - 1; i >= 0; i--) {
+                    final List<GeneralConfigGroup> groupLayers = layers.get(i);
+                    for (int j = groupLayers.size() - 1; j >= 0; j--) {
+                        final GeneralConfigGroup layer = groupLayers.get(j);
+                        for (Map.Entry<String, String> entry : layer.entrySet()) {
+                            index.put(entry.getKey(), new Tuple<>(layer, entry.getValue()));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<List<GeneralConfigGroup>> resolveLayers(List<ConfigGroup> configGroups) {
+        final List<List<GeneralConfigGroup>> layers = new ArrayList<>();
+        for (ConfigGroup configGroup : configGroups) {
+            final List<GeneralConfigGroup> groupLayers = new ArrayList<>();
+            ConfigGroup layer = configGroup;
+            while (layer != null) {
+                if (!(layer instanceof GeneralConfigGroup)) {
+                    return null;
+                }
+                groupLayers.add((GeneralConfigGroup) layer);
+                layer = ((GeneralConfigGroup) layer).getInternalConfigGroup();
+            }
+            layers.add(groupLayers);
+        }
+        return layers;
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        final Tuple<GeneralConfigGroup, String> entry = index.get(name);
+        if (entry != null && !isPendingAbove(name, entry.getFirst())) {
+            final KeyAccessStatistics statistics = entry.getFirst().getAccessStatistics();
+            if (statistics != null) {
+                statistics.record(name);
+            }
+            return entry.getSecond();
+        }
+
+        for (ConfigGroup configGroup : super.getSource()) {
+            final String value = configGroup.get(name);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 排在生效配置组之前的配置组中该key尚未按需加载时, 索引中的值不可信, 需依次查找各配置组
+     */
+    private boolean isPendingAbove(String key, GeneralConfigGroup source) {
+        for (List<GeneralConfigGroup> groupLayers : layers) {
+            for (GeneralConfigGroup layer : groupLayers) {
+                if (layer == source) {
+                    return false;
+                }
+                if (layer.isPending(key)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String[] getPropertyNames() {
+        if (layers == null) {
+            final Set<String> names = new LinkedHashSet<>();
+            for (ConfigGroup configGroup : super.getSource()) {
+                names.addAll(configGroup.keySet());
+            }
+            return StringUtils.toStringArray(names);
+        }
+
+        String[] names = propertyNames;
+        if (names == null) {
+            // 与refresh在同一把锁下生成并发布, 避免发布已过期的key列表
+            synchronized (index) {
+                names = propertyNames;
+                if (names == null) {
+                    names = StringUtils.toStringArray(index.keySet());
+                    propertyNames = names;
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * 重新计算单个key的生效值
+     */
+    private void refresh(String key) {
+        synchronized (index) {
+            for (List<GeneralConfigGroup> groupLayers : layers) {
+                for (GeneralConfigGroup layer : groupLayers) {
+                    final String value = layer.getOwnValue(key);
+                    if (value != null) {
+                        if (index.put(key, new Tuple<>(layer, value)) == null) {
+                            propertyNames = null;
+                        }
+                        return;
+                    }
+                }
+            }
+            if (index.remove(key) != null) {
+                propertyNames = null;
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    @PreDestroy
+    public void close() throws IOException {
+        if (layers != null) {
+            for (List<GeneralConfigGroup> groupLayers : layers) {
+                for (GeneralConfigGroup layer : groupLayers) {
+                    layer.removeKeyChangeListener(listener);
+                }
+            }
+        }
+        for (ConfigGroup configGroup : super.getSource()) {
+            configGroup.close();
+        }
+    }
+
+}
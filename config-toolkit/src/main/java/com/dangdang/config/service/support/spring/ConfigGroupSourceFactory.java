@@ -19,6 +19,8 @@ import com.dangdang.config.service.ConfigGroup;
 import org.springframework.core.env.MutablePropertySources;
 import org.springframework.core.env.PropertySources;
 
+import java.util.Arrays;
+
 /**
  * Factory to create PropertySource for configuration group
  * 
@@ -39,4 +41,16 @@ public class ConfigGroupSourceFactory {
 		return sources;
 	}
 
+	/**
+	 * 所有配置组合并为一个PropertySource, 保持配置组的优先级
+	 * 
+	 * @param configGroups
+	 * @return
+	 */
+	public static PropertySources createComposite(ConfigGroup... configGroups) {
+		final MutablePropertySources sources = new MutablePropertySources();
+		sources.addLast(new ConfigGroupCompositeResource(Arrays.asList(configGroups)));
+		return sources;
+	}
+
 }
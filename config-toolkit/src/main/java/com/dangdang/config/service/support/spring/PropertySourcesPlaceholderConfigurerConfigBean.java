@@ -26,7 +26,7 @@ public class PropertySourcesPlaceholderConfigurerConfigBean extends AbstractSing
 
 		// Register property sources
 		BeanDefinitionBuilder configGroupSourceFactoryBuilder = BeanDefinitionBuilder.genericBeanDefinition(ConfigGroupSourceFactory.class);
-		configGroupSourceFactoryBuilder.setFactoryMethod("create");
+		configGroupSourceFactoryBuilder.setFactoryMethod(Boolean.valueOf(element.getAttribute("composite")) ? "createComposite" : "create");
 		configGroupSourceFactoryBuilder.addConstructorArgValue(list);
 		String generatedSourceFactoryName = parserContext.getReaderContext().generateBeanName(configGroupSourceFactoryBuilder.getRawBeanDefinition());
 		parserContext
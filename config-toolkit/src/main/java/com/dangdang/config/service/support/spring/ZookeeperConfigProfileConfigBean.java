@@ -2,6 +2,7 @@ package com.dangdang.config.service.support.spring;
 
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.xml.AbstractSingleBeanDefinitionParser;
+import org.springframework.util.StringUtils;
 import org.w3c.dom.Element;
 
 import com.dangdang.config.service.zookeeper.ZookeeperConfigProfile;
@@ -21,6 +22,10 @@ public class ZookeeperConfigProfileConfigBean extends AbstractSingleBeanDefiniti
 		builder.addConstructorArgValue(rootNode);
 		String version = element.getAttribute("version");
 		builder.addConstructorArgValue(version);
+		String followGroupEpoch = element.getAttribute("follow-group-epoch");
+		if (StringUtils.hasText(followGroupEpoch)) {
+			builder.addPropertyValue("followGroupEpoch", Boolean.valueOf(followGroupEpoch));
+		}
 	}
 
 }
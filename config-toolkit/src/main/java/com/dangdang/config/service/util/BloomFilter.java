@@ -0,0 +1,98 @@
+package com.dangdang.config.service.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 字符串的布隆过滤器, 用于快速判断key一定不存在<br>
+ * 使用String自身缓存的hashCode做双重哈希, 判断时不产生额外计算
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+
+    private final int numBits;
+
+    private final int numHashes;
+
+    private final int capacity;
+
+    private int insertions;
+
+    /**
+     * @param expectedInsertions 预计放入的元素数量
+     * @param fpp                期望的误判率
+     */
+    public BloomFilter(int expectedInsertions, double fpp) {
+        final int expected = Math.max(expectedInsertions, 1);
+        final long optimalBits = (long) (-expected * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        this.numBits = (int) Math.max(64, Math.min(optimalBits, Integer.MAX_VALUE - 63));
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / expected * Math.log(2)));
+        this.bits = new AtomicLongArray((numBits + 63) >>> 6);
+        this.capacity = expected;
+    }
+
+    /**
+     * 放入元素, 位的设置是线程安全的, 计数由调用方同步
+     *
+     * @param key
+     */
+    public void put(String key) {
+        final int hash1 = key.hashCode();
+        final int hash2 = mix(hash1);
+        for (int i = 1; i <= numHashes; i++) {
+            final int bit = index(hash1 + i * hash2);
+            final int word = bit >>> 6;
+            final long mask = 1L << bit;
+            long current;
+            do {
+                current = bits.get(word);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(word, current, current | mask));
+        }
+        insertions++;
+    }
+
+    /**
+     * @param key
+     * @return false时key一定不存在
+     */
+    public boolean mightContain(String key) {
+        final int hash1 = key.hashCode();
+        final int hash2 = mix(hash1);
+        for (int i = 1; i <= numHashes; i++) {
+            final int bit = index(hash1 + i * hash2);
+            if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 放入的元素是否已超过预计数量, 超过后误判率会上升
+     */
+    public boolean isSaturated() {
+        return insertions > capacity;
+    }
+
+    private int index(int combinedHash) {
+        return (combinedHash & Integer.MAX_VALUE) % numBits;
+    }
+
+    /**
+     * murmur3 finalizer
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash | 1;
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.dangdang.config.service.zookeeper;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 配置组epoch, 由config-face写入配置组节点的数据中<br>
+ * <br>
+ * 数据格式为UTF-8文本, 第一行为单调递增的版本号, 之后每行一个本次变更的key, 单独一行{@code *}表示需要全量加载
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ */
+final class GroupEpoch {
+
+    private static final String ALL_KEYS = "*";
+
+    /**
+     * 无法解析时视为版本0并全量加载
+     */
+    private static final GroupEpoch UNKNOWN = new GroupEpoch(0, null);
+
+    private final long revision;
+
+    /**
+     * 变更的key, 为null时表示需要全量加载
+     */
+    private final Set<String> changedKeys;
+
+    private GroupEpoch(long revision, Set<String> changedKeys) {
+        this.revision = revision;
+        this.changedKeys = changedKeys;
+    }
+
+    static GroupEpoch parse(byte[] data) {
+        if (data == null || data.length == 0) {
+            return UNKNOWN;
+        }
+
+        final String[] lines;
+        try {
+            lines = new String(data, "UTF-8").split("\n");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+
+        final long revision;
+        try {
+            revision = Long.parseLong(lines[0].trim());
+        } catch (NumberFormatException e) {
+            return UNKNOWN;
+        }
+
+        final Set<String> changedKeys = new HashSet<>();
+        for (int i = 1; i < lines.length; i++) {
+            final String key = lines[i].trim();
+            if (ALL_KEYS.equals(key)) {
+                return new GroupEpoch(revision, null);
+            }
+            if (!key.isEmpty()) {
+                changedKeys.add(key);
+            }
+        }
+        return new GroupEpoch(revision, Collections.unmodifiableSet(changedKeys));
+    }
+
+    long getRevision() {
+        return revision;
+    }
+
+    boolean isFullReload() {
+        return changedKeys == null;
+    }
+
+    Set<String> getChangedKeys() {
+        return changedKeys;
+    }
+
+    @Override
+    public String toString() {
+        return "GroupEpoch{" +
+                "revision=" + revision +
+                ", changedKeys=" + changedKeys +
+                '}';
+    }
+}
@@ -27,16 +27,20 @@ import org.apache.curator.framework.api.GetDataBuilder;
 import org.apache.curator.framework.state.ConnectionState;
 import org.apache.curator.framework.state.ConnectionStateListener;
 import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.WatchedEvent;
 import org.apache.zookeeper.Watcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.PreDestroy;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 
 /**
@@ -59,6 +63,16 @@ public class ZookeeperConfigGroup extends GeneralConfigGroup {
 
     private ConfigLocalCache configLocalCache;
 
+    /**
+     * 最近一次加载的配置组epoch版本号, 仅在跟随epoch时使用
+     */
+    private volatile long epochRevision;
+
+    /**
+     * 延迟加载模式下已知存在但尚未加载值的key
+     */
+    private final Set<String> pendingKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
     static final Logger LOGGER = LoggerFactory.getLogger(ZookeeperConfigGroup.class);
 
     public ZookeeperConfigGroup(ZookeeperConfigProfile configProfile, String node, boolean enumerable) {
@@ -80,6 +94,7 @@ public class ZookeeperConfigGroup extends GeneralConfigGroup {
         }
 
         initConfigs();
+        enableAccessStatistics(getNodePath(), configProfile.getAccessStatisticsSampleRate());
     }
 
     /**
@@ -104,7 +119,18 @@ public class ZookeeperConfigGroup extends GeneralConfigGroup {
                                 loadNode();
                                 break;
                             case NodeDataChanged:
-                                reloadKey(watchedEvent.getPath());
+                                if (isGroupNode(watchedEvent.getPath())) {
+                                    reloadEpoch();
+                                } else {
+                                    reloadKey(watchedEvent.getPath());
+                                }
+                                break;
+                            case NodeCreated:
+                            case NodeDeleted:
+                                // 配置组节点被删除或重新创建时, epoch从头开始
+                                if (isGroupNode(watchedEvent.getPath())) {
+                                    loadNode();
+                                }
                                 break;
                             default:
                                 break;
@@ -147,13 +173,30 @@ public class ZookeeperConfigGroup extends GeneralConfigGroup {
      * 加载节点并监听节点变化
      */
     void loadNode() {
-        final String nodePath = ZKPaths.makePath(configProfile.getVersionedRootNode(), node);
+        final String nodePath = getNodePath();
 
         final GetChildrenBuilder childrenBuilder = client.getChildren();
 
         try {
-            final List<String> children = childrenBuilder.watched().forPath(nodePath);
-            if (children != null) {
+            final List<String> children;
+            if (configProfile.isFollowGroupEpoch()) {
+                // 只监听配置组节点上的epoch, 子节点及配置项不再注册watcher
+                final byte[] epoch = getGroupEpoch(nodePath);
+                if (epoch == null) {
+                    cleanAndPutAll(Collections.<String, String>emptyMap());
+                    pendingKeys.clear();
+                    epochRevision = 0;
+                    children = null;
+                } else {
+                    epochRevision = GroupEpoch.parse(epoch).getRevision();
+                    children = childrenBuilder.forPath(nodePath);
+                }
+            } else {
+                children = childrenBuilder.watched().forPath(nodePath);
+            }
+            if (children != null && configProfile.isLazyLoading()) {
+                loadKeyNames(nodePath, children);
+            } else if (children != null) {
                 final Map<String, String> configs = new HashMap<>();
                 for (String child : children) {
                     final Tuple<String, String> keyValue = loadKey(ZKPaths.makePath(nodePath, child));
@@ -172,6 +215,83 @@ public class ZookeeperConfigGroup extends GeneralConfigGroup {
         }
     }
 
+    /**
+     * 读取配置组节点的epoch并监听数据变化及删除; 节点不存在时改为监听节点的创建
+     *
+     * @return epoch数据, 配置组节点不存在时返回null
+     */
+    private byte[] getGroupEpoch(final String nodePath) throws Exception {
+        while (true) {
+            try {
+                return client.getData().watched().forPath(nodePath);
+            } catch (KeeperException.NoNodeException e) {
+                if (client.checkExists().watched().forPath(nodePath) == null) {
+                    LOGGER.debug("Group node not exists, wait for creation: {}", nodePath);
+                    return null;
+                }
+                // 期间被重新创建, 重新读取
+            }
+        }
+    }
+
+    /**
+     * 延迟加载模式下只记录配置项名称, 已加载的配置项由各自的watcher或epoch更新
+     */
+    private void loadKeyNames(final String nodePath, final List<String> children) throws Exception {
+        final Set<String> keys = new HashSet<>();
+        for (String child : children) {
+            if (isKeyIncluded(child)) {
+                keys.add(child);
+            }
+        }
+
+        retainKeys(keys);
+        pendingKeys.retainAll(keys);
+        for (String key : keys) {
+            if (getOwnValue(key) == null) {
+                pendingKeys.add(key);
+            }
+        }
+
+        final Set<String> warmUpKeys = configProfile.getWarmUpKeys();
+        if (warmUpKeys != null) {
+            for (String key : warmUpKeys) {
+                loadOnDemand(key);
+            }
+        }
+    }
+
+    @Override
+    protected boolean isFullyLoaded() {
+        return !configProfile.isLazyLoading();
+    }
+
+    @Override
+    public boolean isPending(String key) {
+        return pendingKeys.contains(key);
+    }
+
+    @Override
+    protected boolean loadOnDemand(final String key) {
+        if (!pendingKeys.contains(key)) {
+            return false;
+        }
+
+        try {
+            final Tuple<String, String> keyValue = loadKey(ZKPaths.makePath(getNodePath(), key));
+            if (keyValue != null) {
+                super.put(keyValue.getFirst(), keyValue.getSecond());
+            }
+            pendingKeys.remove(key);
+            return keyValue != null;
+        } catch (KeeperException.NoNodeException e) {
+            pendingKeys.remove(key);
+            return false;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     void reloadKey(final String nodePath) {
         try {
             final Tuple<String, String> keyValue = loadKey(nodePath);
@@ -187,29 +307,85 @@ public class ZookeeperConfigGroup extends GeneralConfigGroup {
         }
     }
 
+    /**
+     * 配置组epoch变化时, 只重新加载epoch中列出的key; 版本号不连续时说明错过了变更, 全量加载
+     */
+    void reloadEpoch() {
+        final String nodePath = getNodePath();
+        try {
+            final byte[] data = getGroupEpoch(nodePath);
+            if (data == null) {
+                loadNode();
+                return;
+            }
+            final GroupEpoch epoch = GroupEpoch.parse(data);
+            LOGGER.debug("Group epoch changed: {}", epoch);
+            if (epoch.isFullReload() || epoch.getRevision() != epochRevision + 1) {
+                loadNode();
+                return;
+            }
+
+            for (String key : epoch.getChangedKeys()) {
+                if (configProfile.isLazyLoading() && getOwnValue(key) == null) {
+                    // 尚未加载的key只记录是否存在, 首次访问时再获取值
+                    if (isKeyIncluded(key) && client.checkExists().forPath(ZKPaths.makePath(nodePath, key)) != null) {
+                        pendingKeys.add(key);
+                    } else {
+                        pendingKeys.remove(key);
+                    }
+                    continue;
+                }
+                try {
+                    final Tuple<String, String> keyValue = loadKey(ZKPaths.makePath(nodePath, key));
+                    if (keyValue != null) {
+                        super.put(keyValue.getFirst(), keyValue.getSecond());
+                    }
+                } catch (KeeperException.NoNodeException e) {
+                    removeKey(key);
+                    pendingKeys.remove(key);
+                }
+            }
+            epochRevision = epoch.getRevision();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        if (getConfigLocalCache() != null) {
+            getConfigLocalCache().saveLocalCache(this, getNode());
+        }
+    }
+
+    private String getNodePath() {
+        return ZKPaths.makePath(configProfile.getVersionedRootNode(), node);
+    }
+
+    private boolean isGroupNode(final String path) {
+        return configProfile.isFollowGroupEpoch() && getNodePath().equals(path);
+    }
+
     private Tuple<String, String> loadKey(final String nodePath) throws Exception {
         final String nodeName = ZKPaths.getNodeFromPath(nodePath);
+        if (!isKeyIncluded(nodeName)) {
+            return null;
+        }
+
+        final GetDataBuilder data = client.getData();
+        final byte[] bytes = configProfile.isFollowGroupEpoch() ? data.forPath(nodePath) : data.watched().forPath(nodePath);
+        final String value = new String(bytes, "UTF-8");
+        return new Tuple<>(nodeName, value);
+    }
+
+    private boolean isKeyIncluded(final String nodeName) {
         final Set<String> keysSpecified = configProfile.getKeysSpecified();
         switch (configProfile.getKeyLoadingMode()) {
             case INCLUDE:
-                if (keysSpecified == null || !keysSpecified.contains(nodeName)) {
-                    return null;
-                }
-                break;
+                return keysSpecified != null && keysSpecified.contains(nodeName);
             case EXCLUDE:
-                if (keysSpecified.contains(nodeName)) {
-                    return null;
-                }
-                break;
+                return !keysSpecified.contains(nodeName);
             case ALL:
-                break;
             default:
-                break;
+                return true;
         }
-
-        final GetDataBuilder data = client.getData();
-        final String value = new String(data.watched().forPath(nodePath), "UTF-8");
-        return new Tuple<>(nodeName, value);
     }
 
     public String getNode() {
@@ -232,6 +408,7 @@ public class ZookeeperConfigGroup extends GeneralConfigGroup {
     @PreDestroy
     @Override
     public void close() {
+        disableAccessStatistics();
         if (client != null) {
             client.close();
         }
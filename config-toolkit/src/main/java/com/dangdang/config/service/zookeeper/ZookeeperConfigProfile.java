@@ -20,6 +20,8 @@ import org.apache.curator.RetryPolicy;
 import org.apache.curator.retry.ExponentialBackoffRetry;
 import org.apache.curator.utils.ZKPaths;
 
+import java.util.Set;
+
 /**
  * 基本配置
  *
@@ -50,6 +52,23 @@ public class ZookeeperConfigProfile extends ConfigProfile {
      */
     private final boolean openLocalCache;
 
+    /**
+     * 是否只监听配置组节点上的epoch, 由config-face在修改配置时递增, 变更时只加载epoch中列出的key.<br>
+     * 不再监听配置项节点, 所有修改配置的程序都必须同时递增epoch, 否则客户端收不到变更
+     */
+    private boolean followGroupEpoch = false;
+
+    /**
+     * 是否延迟加载配置值, 开启后只加载配置项名称, 首次访问某个key时才获取其值<br>
+     * 注意: 开启后配置组的Map视图(keySet/size等)只包含已加载的配置项
+     */
+    private boolean lazyLoading = false;
+
+    /**
+     * 延迟加载时需要预先加载的key
+     */
+    private Set<String> warmUpKeys;
+
     public ZookeeperConfigProfile(final String connectStr, final String rootNode, final String version) {
         this(connectStr, rootNode, version, false);
     }
@@ -95,6 +114,30 @@ public class ZookeeperConfigProfile extends ConfigProfile {
         return openLocalCache;
     }
 
+    public boolean isFollowGroupEpoch() {
+        return followGroupEpoch;
+    }
+
+    public void setFollowGroupEpoch(boolean followGroupEpoch) {
+        this.followGroupEpoch = followGroupEpoch;
+    }
+
+    public boolean isLazyLoading() {
+        return lazyLoading;
+    }
+
+    public void setLazyLoading(boolean lazyLoading) {
+        this.lazyLoading = lazyLoading;
+    }
+
+    public Set<String> getWarmUpKeys() {
+        return warmUpKeys;
+    }
+
+    public void setWarmUpKeys(Set<String> warmUpKeys) {
+        this.warmUpKeys = warmUpKeys;
+    }
+
     @Override
     public String toString() {
         return "ZookeeperConfigProfile{" +
@@ -102,6 +145,8 @@ public class ZookeeperConfigProfile extends ConfigProfile {
                 ", rootNode='" + rootNode + '\'' +
                 ", retryPolicy=" + retryPolicy +
                 ", openLocalCache=" + openLocalCache +
+                ", followGroupEpoch=" + followGroupEpoch +
+                ", lazyLoading=" + lazyLoading +
                 '}';
     }
 }
@@ -0,0 +1,106 @@
+package com.dangdang.config.service;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public class GeneralConfigGroupTest {
+
+    @Test
+    public void overlayFollowsIncrementalChanges() throws Exception {
+        final MemoryConfigGroup lower = new MemoryConfigGroup(null);
+        lower.put("a", "lower-a");
+        lower.put("b", "lower-b");
+        final MemoryConfigGroup upper = new MemoryConfigGroup(lower);
+        upper.put("a", "upper-a");
+        upper.enableOverlay();
+
+        assertEquals("upper-a", upper.get("a"));
+        assertEquals("lower-b", upper.get("b"));
+        assertNull(upper.get("c"));
+
+        // 下层新增及修改的key实时反映, 被上层覆盖的key不受影响
+        lower.put("c", "lower-c");
+        lower.put("a", "lower-a2");
+        upper.put("b", "upper-b");
+        assertEquals("lower-c", upper.get("c"));
+        assertEquals("upper-a", upper.get("a"));
+        assertEquals("upper-b", upper.get("b"));
+
+        // 全量加载只保留新内容
+        final Map<String, String> configs = new HashMap<>();
+        configs.put("d", "upper-d");
+        upper.load(configs);
+        assertEquals("lower-a2", upper.get("a"));
+        assertEquals("lower-b", upper.get("b"));
+        assertEquals("upper-d", upper.get("d"));
+    }
+
+    @Test
+    public void overlayFallsBackAfterRemoval() throws Exception {
+        final MemoryConfigGroup lower = new MemoryConfigGroup(null);
+        lower.put("a", "lower-a");
+        lower.put("b", "lower-b");
+        final MemoryConfigGroup upper = new MemoryConfigGroup(lower);
+        upper.put("a", "upper-a");
+        upper.enableOverlay();
+
+        // 上层删除后露出下层的值, 各层都删除后返回null
+        upper.delete("a");
+        assertEquals("lower-a", upper.get("a"));
+        lower.delete("a");
+        assertNull(upper.get("a"));
+        lower.delete("b");
+        assertNull(upper.get("b"));
+
+        upper.disableOverlay();
+        lower.put("b", "lower-b2");
+        assertEquals("lower-b2", upper.get("b"));
+    }
+
+    @Test
+    public void overlayLoadsPendingKeyOfHigherLayer() throws Exception {
+        final MemoryConfigGroup lower = new MemoryConfigGroup(null);
+        lower.put("a", "lower-a");
+        lower.put("b", "lower-b");
+        final MemoryConfigGroup upper = new MemoryConfigGroup(lower, true);
+        upper.pend("a", "upper-a");
+        upper.pend("c", "upper-c");
+        upper.enableOverlay();
+
+        // 上层尚未加载的key优先于合并视图中下层的值
+        assertEquals("upper-a", upper.get("a"));
+        assertEquals("upper-a", upper.getOwnValue("a"));
+        assertEquals("lower-b", upper.get("b"));
+        assertEquals("upper-c", upper.get("c"));
+
+        // 加载后的变化同样反映到合并视图
+        upper.put("a", "upper-a2");
+        assertEquals("upper-a2", upper.get("a"));
+        upper.delete("a");
+        assertEquals("lower-a", upper.get("a"));
+    }
+
+    @Test
+    public void overlayOnLazyLowerLayer() throws Exception {
+        final MemoryConfigGroup lower = new MemoryConfigGroup(null, true);
+        lower.pend("a", "lower-a");
+        final MemoryConfigGroup upper = new MemoryConfigGroup(lower);
+        upper.put("b", "upper-b");
+        upper.enableOverlay();
+
+        // 合并视图未命中时按链查找, 触发下层按需加载
+        assertEquals("lower-a", upper.get("a"));
+        assertEquals("upper-b", upper.get("b"));
+        assertNull(upper.get("c"));
+    }
+
+}
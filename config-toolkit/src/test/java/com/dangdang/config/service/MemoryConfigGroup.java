@@ -0,0 +1,65 @@
+package com.dangdang.config.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 测试用的内存配置组, 可模拟延迟加载
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public class MemoryConfigGroup extends GeneralConfigGroup {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean lazy;
+
+    private final Map<String, String> pending = new HashMap<>();
+
+    public MemoryConfigGroup(ConfigGroup internalConfigGroup) {
+        this(internalConfigGroup, false);
+    }
+
+    public MemoryConfigGroup(ConfigGroup internalConfigGroup, boolean lazy) {
+        super(internalConfigGroup);
+        this.lazy = lazy;
+    }
+
+    public void pend(String key, String value) {
+        pending.put(key, value);
+    }
+
+    public void delete(String key) {
+        removeKey(key);
+    }
+
+    public void load(Map<String, String> configs) {
+        cleanAndPutAll(configs);
+    }
+
+    @Override
+    protected boolean isFullyLoaded() {
+        return !lazy;
+    }
+
+    @Override
+    public boolean isPending(String key) {
+        return pending.containsKey(key);
+    }
+
+    @Override
+    protected boolean loadOnDemand(String key) {
+        final String value = pending.remove(key);
+        if (value == null) {
+            return false;
+        }
+        put(key, value);
+        return true;
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.dangdang.config.service.file;
+
+import com.dangdang.config.service.ConfigGroup;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public class DirectoryConfigGroupTest {
+
+	private static final long TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(15);
+
+	private Path directory;
+
+	private DirectoryConfigGroup group;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("config-toolkit");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (group != null) {
+			group.close();
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (Path path : stream) {
+				Files.delete(path);
+			}
+		}
+		Files.delete(directory);
+	}
+
+	@Test
+	public void laterFileWins() throws Exception {
+		write("b.properties", "key=b\nb=1\n");
+		write("a.properties", "key=a\na=1\n");
+		write("c.txt", "key=c\n");
+
+		group = newGroup();
+		assertEquals("b", group.get("key"));
+		assertEquals("1", group.get("a"));
+		assertEquals("1", group.get("b"));
+		assertNull(group.get("c"));
+	}
+
+	@Test
+	public void reloadChangedFiles() throws Exception {
+		write("a.properties", "key=a\na=1\n");
+		group = newGroup();
+		assertEquals("a", group.get("key"));
+
+		// 新建的文件排在后面, 覆盖已有的key
+		write("b.properties", "key=b\n");
+		awaitValue("key", "b");
+
+		write("a.properties", "key=a\na=2\n");
+		awaitValue("a", "2");
+		assertEquals("b", group.get("key"));
+
+		// 删除后露出前面文件的值
+		Files.delete(directory.resolve("b.properties"));
+		awaitValue("key", "a");
+	}
+
+	@Test
+	public void skipUnchangedFile() throws Exception {
+		write("a.properties", "key=a\n");
+		group = newGroup();
+
+		group.fileChanged(directory.resolve("a.properties"));
+		assertEquals(1, group.getSkippedReloads());
+		assertEquals("a", group.get("key"));
+	}
+
+	@Test
+	public void rescanWhenEventsOverflowed() throws Exception {
+		write("a.properties", "key=a\n");
+		write("b.properties", "key=b\n");
+		group = newGroup();
+
+		// 以目录本身通知时重新扫描, 不依赖单个文件的事件
+		Files.delete(directory.resolve("b.properties"));
+		write("c.properties", "c=1\n");
+		group.fileChanged(directory);
+		assertEquals("a", group.get("key"));
+		assertEquals("1", group.get("c"));
+	}
+
+	@Test
+	public void createByLocation() throws Exception {
+		final ConfigGroup created = FileConfigGroup.create(null, new FileConfigProfile("UTF-8", "properties"), "file:" + directory.toAbsolutePath() + "/");
+		try {
+			assertTrue(created instanceof DirectoryConfigGroup);
+		} finally {
+			created.close();
+		}
+	}
+
+	private DirectoryConfigGroup newGroup() {
+		return new DirectoryConfigGroup(new FileConfigProfile("UTF-8", "properties"), "file:" + directory.toAbsolutePath());
+	}
+
+	private void write(String name, String content) throws IOException {
+		Files.write(directory.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void awaitValue(String key, String value) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (!value.equals(group.get(key)) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		assertEquals(value, group.get(key));
+	}
+
+}
@@ -0,0 +1,69 @@
+package com.dangdang.config.service.file;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public class FileConfigGroupTest {
+
+	private Path file;
+
+	private FileConfigGroup group;
+
+	@Before
+	public void setUp() throws Exception {
+		file = Files.createTempFile("config-toolkit", ".properties");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (group != null) {
+			group.close();
+		}
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void reloadLargeFile() throws Exception {
+		// 远大于单次读取的块大小
+		final StringBuilder content = new StringBuilder();
+		for (int i = 0; content.length() < 2 * 1024 * 1024; i++) {
+			content.append("key").append(i).append('=').append("value").append(i).append('\n');
+		}
+		Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+
+		group = new FileConfigGroup(new FileConfigProfile("UTF-8", "properties"), "file:" + file.toAbsolutePath());
+		assertEquals("value1", group.get("key1"));
+		assertEquals("value99999", group.get("key99999"));
+
+		// 加载后文件未被占用, 可以直接改写为较短的内容
+		Files.write(file, "key1=changed\n".getBytes(StandardCharsets.UTF_8));
+		group.reload();
+
+		assertEquals("changed", group.get("key1"));
+		assertNull(group.get("key2"));
+	}
+
+	@Test
+	public void reloadUnchangedFile() throws Exception {
+		Files.write(file, "key1=value1\n".getBytes(StandardCharsets.UTF_8));
+
+		group = new FileConfigGroup(new FileConfigProfile("UTF-8", "properties"), "file:" + file.toAbsolutePath());
+		group.reload();
+
+		assertEquals(1, group.getSkippedReloads());
+		assertEquals("value1", group.get("key1"));
+	}
+
+}
@@ -0,0 +1,68 @@
+package com.dangdang.config.service.file;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public class FileWatcherTest {
+
+	private Path directory;
+
+	private Path file;
+
+	private final FileChangeListener failing = new FileChangeListener() {
+		@Override
+		public void fileChanged(Path file) {
+			throw new InternalError("a fault occurred in an unsafe memory access operation");
+		}
+	};
+
+	private final Semaphore notified = new Semaphore(0);
+
+	private final FileChangeListener counting = new FileChangeListener() {
+		@Override
+		public void fileChanged(Path file) {
+			notified.release();
+		}
+	};
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("config-toolkit");
+		file = Files.createFile(directory.resolve("config.properties"));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileWatcher.getInstance().unsubscribe(file, failing);
+		FileWatcher.getInstance().unsubscribe(file, counting);
+		Files.deleteIfExists(file);
+		Files.deleteIfExists(directory);
+	}
+
+	@Test
+	public void failingListenerDoesNotStopWatcher() throws Exception {
+		// 先订阅的监听抛出Error, 后订阅的监听仍收到通知, 且之后的变化继续通知
+		assertTrue(FileWatcher.getInstance().subscribe(file, failing));
+		assertTrue(FileWatcher.getInstance().subscribe(file, counting));
+
+		Files.write(file, "a=1".getBytes(StandardCharsets.UTF_8));
+		assertTrue(notified.tryAcquire(10, TimeUnit.SECONDS));
+
+		Files.write(file, "a=2".getBytes(StandardCharsets.UTF_8));
+		assertTrue(notified.tryAcquire(10, TimeUnit.SECONDS));
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.dangdang.config.service.file.contenttype;
+
+import com.dangdang.config.service.exception.InvalidPathException;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public class CharReaderTest {
+
+	@Test
+	public void readAcrossBuffers() throws Exception {
+		// 多字节字符和代理对跨越8192个字符的解码缓冲区
+		final StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			content.append(i % 3 == 0 ? "\ud83d\ude00" : i % 3 == 1 ? "\u4e2d" : "a");
+		}
+		assertEquals(content.toString(), readAll(CharReader.create(ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8)), "UTF-8")));
+	}
+
+	@Test
+	public void peekDoesNotConsume() throws Exception {
+		final CharReader reader = CharReader.create(ByteBuffer.wrap("ab".getBytes(StandardCharsets.UTF_8)), "UTF-8");
+		assertEquals('a', reader.peek());
+		assertEquals('a', reader.next());
+		assertEquals('b', reader.peek());
+		assertEquals('b', reader.next());
+		assertTrue(reader.isEnd());
+		assertEquals(-1, reader.peek());
+		assertEquals(-1, reader.next());
+	}
+
+	@Test
+	public void emptyInput() throws Exception {
+		final CharReader reader = CharReader.create(ByteBuffer.allocate(0), "UTF-8");
+		assertTrue(reader.isEnd());
+		assertEquals(-1, reader.next());
+	}
+
+	@Test
+	public void malformedInputIsReplaced() throws Exception {
+		// 与InputStreamReader一致, 包括末尾被截断的多字节字符
+		final byte[] data = {'a', (byte) 0xff, 'b', (byte) 0xe4, (byte) 0xb8};
+		assertEquals(new String(data, StandardCharsets.UTF_8), readAll(CharReader.create(ByteBuffer.wrap(data), "UTF-8")));
+	}
+
+	@Test
+	public void sourceBufferIsNotConsumed() throws Exception {
+		final ByteBuffer data = ByteBuffer.allocateDirect(3);
+		data.put(new byte[] {'a', 'b', 'c'}).flip();
+		data.position(1);
+		final CharReader reader = CharReader.create(data, "ISO-8859-1");
+		assertEquals("bc", readAll(reader));
+		assertEquals(1, data.position());
+	}
+
+	@Test(expected = InvalidPathException.class)
+	public void unsupportedEncoding() throws Exception {
+		CharReader.create(ByteBuffer.allocate(0), "no-such-encoding");
+	}
+
+	private static String readAll(CharReader reader) {
+		final StringBuilder result = new StringBuilder();
+		int c;
+		while ((c = reader.next()) >= 0) {
+			result.append((char) c);
+		}
+		return result.toString();
+	}
+
+}
@@ -0,0 +1,119 @@
+package com.dangdang.config.service.file.contenttype;
+
+import com.dangdang.config.service.exception.InvalidPathException;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public class JsonContentTypeTest {
+
+	private final JsonContentType contentType = new JsonContentType();
+
+	@Test
+	public void nestedObjects() throws Exception {
+		assertEquals(map("a.b.c", "1", "a.d", "x", "e", "true"),
+				resolve("{\"a\": {\"b\": {\"c\": 1}, \"d\": \"x\"}, \"e\": true}"));
+	}
+
+	@Test
+	public void arrays() throws Exception {
+		assertEquals(map("a[0]", "1", "a[1][0]", "2", "a[1][1]", "3", "a[2].b", "false", "c[0][0]", "x"),
+				resolve("{\"a\": [1, [2, 3], {\"b\": false}], \"c\": [[\"x\"]]}"));
+		assertEquals(map("[0]", "1", "[1].a", "2"), resolve("[1, {\"a\": 2}]"));
+	}
+
+	@Test
+	public void scalars() throws Exception {
+		assertEquals(map("a", "-0.5e+10", "b", "0", "c", "1E3", "d", "", "e", "false"),
+				resolve("{\"a\":-0.5e+10,\"b\":0,\"c\":1E3,\"d\":null,\"e\":false}"));
+	}
+
+	@Test
+	public void emptyContainers() throws Exception {
+		assertEquals(map("a", "", "b", "", "c.d", ""), resolve("{\"a\": {}, \"b\": [], \"c\": {\"d\": []}}"));
+		assertEquals(Collections.emptyMap(), resolve("{}"));
+		assertEquals(Collections.emptyMap(), resolve(" [ ] "));
+	}
+
+	@Test
+	public void duplicateKeys() throws Exception {
+		assertEquals(map("a", "2"), resolve("{\"a\": 1, \"a\": 2}"));
+	}
+
+	@Test
+	public void escapes() throws Exception {
+		assertEquals(map("k\"\\", "\"\\/\b\f\n\r\t\u00e9\u4e2d"),
+				resolve("{\"k\\\"\\\\\": \"\\\"\\\\\\/\\b\\f\\n\\r\\t\\u00e9\\u4E2D\"}"));
+	}
+
+	@Test
+	public void surrogatePairs() throws Exception {
+		assertEquals(map("emoji", "\ud83d\ude00"), resolve("{\"emoji\": \"\\ud83d\\ude00\"}"));
+		assertEquals(map("\ud83d\ude00", "\ud83d\ude01"), resolve("{\"\ud83d\ude00\": \"\ud83d\ude01\"}"));
+	}
+
+	@Test
+	public void surrogatePairAcrossDecodeBuffer() throws Exception {
+		// 4字节的UTF-8字符跨越CharReader的缓冲区边界
+		final StringBuilder value = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			value.append("a\ud83d\ude00");
+		}
+		assertEquals(map("v", value.toString()), resolve("{\"v\": \"" + value + "\"}"));
+	}
+
+	@Test
+	public void emptyDocuments() throws Exception {
+		assertRejected("", "Root must be an object or an array");
+		assertRejected(" \n\t", "Root must be an object or an array");
+		assertRejected("1", "Root must be an object or an array");
+	}
+
+	@Test
+	public void malformedDocuments() throws Exception {
+		assertRejected("{\"a\": \"\\u12g4\"}", "Malformed \\uxxxx escape");
+		assertRejected("{\"a\": \"\\x\"}", "Invalid escape");
+		assertRejected("{\"a\": 1} {}", "Unexpected content after root");
+		assertRejected("{\"a\": \"x", "Unterminated string");
+		assertRejected("{\"a\": \"\n\"}", "Control character in string");
+		assertRejected("{\"a\": 01}", "Expected ',' or '}'");
+		assertRejected("{\"a\": 1.}", "Invalid number");
+		assertRejected("{\"a\": tru}", "Invalid literal, expected true");
+		assertRejected("{a: 1}", "Expected property name");
+		assertRejected("{\"a\" 1}", "Expected ':'");
+		assertRejected("[1, 2", "Expected ',' or ']'");
+		assertRejected("{\"a\": ", "Unexpected end of input");
+	}
+
+	private Map<String, String> resolve(String content) throws InvalidPathException {
+		return contentType.resolve(content.getBytes(StandardCharsets.UTF_8), "UTF-8");
+	}
+
+	private void assertRejected(String content, String message) {
+		try {
+			fail("Accepted " + content + " as " + resolve(content));
+		} catch (InvalidPathException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+		}
+	}
+
+	private static Map<String, String> map(String... keyValues) {
+		final Map<String, String> map = new HashMap<>();
+		for (int i = 0; i < keyValues.length; i += 2) {
+			map.put(keyValues[i], keyValues[i + 1]);
+		}
+		return map;
+	}
+
+}
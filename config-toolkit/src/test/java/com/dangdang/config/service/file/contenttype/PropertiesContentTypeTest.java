@@ -0,0 +1,145 @@
+package com.dangdang.config.service.file.contenttype;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 解析结果与{@link Properties#load(java.io.Reader)}对比
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public class PropertiesContentTypeTest {
+
+	/**
+	 * JDK 8的Properties在这两种情况下会读到行缓冲之外的旧内容: 以反斜杠结尾的注释之后的行, 以及行尾不完整的\\uxxxx转义
+	 */
+	private static final Pattern JDK8_OVERREAD = Pattern.compile("[#!][^\\r\\n]*\\\\[\\r\\n]|\\\\u[^\\r\\n]{0,3}([\\r\\n]|\\z)");
+
+	private final PropertiesContentType contentType = new PropertiesContentType();
+
+	@Test
+	public void comments() throws Exception {
+		assertSameAsProperties("#comment\n!comment\na=1\n  # indented comment\nb=2 # not a comment");
+		assertSameAsProperties("#comment ends with backslash \\\na=1");
+		assertSameAsProperties("#a=1");
+		assertSameAsProperties("a=1\n#");
+	}
+
+	@Test
+	public void commentCharAfterContinuation() throws Exception {
+		assertSameAsProperties("\\\n#a=b");
+		assertSameAsProperties("x=1\n\\\n#a=b");
+		assertSameAsProperties("\\\n   !a=b\nc=d");
+		assertSameAsProperties("\\\r\n#a=b\r\n#c=d");
+		assertSameAsProperties("\\\n\\\n#a=b");
+		assertSameAsProperties("k=\\\n#v");
+	}
+
+	@Test
+	public void continuations() throws Exception {
+		assertSameAsProperties("a=1\\\n  2\\\r\n\t3\\\r  4");
+		assertSameAsProperties("a=1\\\\\nb=2");
+		assertSameAsProperties("a=1\\\n\nb=2");
+		assertSameAsProperties("a=1\\");
+		assertSameAsProperties("a=1\\\n");
+		assertSameAsProperties("\\");
+	}
+
+	@Test
+	public void separatorsAndEmptyKeys() throws Exception {
+		assertSameAsProperties("a=1\nb:2\nc 3\nd\t=\t4\ne  :  5\nf\ng=\nh  ==6");
+		assertSameAsProperties("=1\n:2\n = 3");
+		assertSameAsProperties("a\\=b=c\na\\:b:c\na\\ b c");
+		assertSameAsProperties("\f a = 1 \f");
+	}
+
+	@Test
+	public void escapes() throws Exception {
+		assertSameAsProperties("a=\\t\\r\\n\\f\\\\\\x\\\"");
+		assertSameAsProperties("\\u4e2d\\u6587=\\u00E9\\ud83d\\ude00");
+		assertSameAsProperties("a=\\u");
+		assertSameAsProperties("a=\\u12");
+		assertSameAsProperties("a=\\u12zz");
+	}
+
+	@Test
+	public void unicode() throws Exception {
+		assertSameAsProperties("中文=值\né=ü\nemoji=\ud83d\ude00");
+	}
+
+	@Test
+	public void lineLongerThanBuffers() throws Exception {
+		final StringBuilder content = new StringBuilder("key=");
+		for (int i = 0; i < 20000; i++) {
+			content.append(i % 10 == 0 ? "\\\n  " : "值");
+		}
+		assertSameAsProperties(content.toString());
+	}
+
+	@Test
+	public void randomInputs() throws Exception {
+		final char[] alphabet = {'a', 'b', '=', ':', ' ', '\t', '\f', '\\', '\\', '\n', '\r', '#', '!', 'u', '0', 'F', '中'};
+		final Random random = new Random(20180101L);
+		for (int i = 0; i < 200000; i++) {
+			final char[] content = new char[random.nextInt(24)];
+			for (int j = 0; j < content.length; j++) {
+				content[j] = alphabet[random.nextInt(alphabet.length)];
+			}
+			final String input = new String(content);
+			if (!JDK8_OVERREAD.matcher(input).find()) {
+				assertSameAsProperties(input);
+			}
+		}
+	}
+
+	@Test
+	public void resolveBuffer() throws Exception {
+		final ByteBuffer data = ByteBuffer.allocateDirect(32);
+		data.put("a=1\n#b=2\nc=\\u00e9".getBytes(StandardCharsets.ISO_8859_1)).flip();
+		final Map<String, String> expected = new HashMap<>();
+		expected.put("a", "1");
+		expected.put("c", "\u00e9");
+		assertEquals(expected, contentType.resolve(data, "ISO-8859-1"));
+		assertEquals(0, data.position());
+	}
+
+	private void assertSameAsProperties(String content) throws Exception {
+		Map<Object, Object> expected = null;
+		IllegalArgumentException expectedError = null;
+		try {
+			final Properties props = new Properties();
+			props.load(new StringReader(content));
+			expected = new HashMap<>(props);
+		} catch (IllegalArgumentException e) {
+			expectedError = e;
+		}
+
+		try {
+			final Map<String, String> actual = contentType.resolve(content.getBytes(StandardCharsets.UTF_8), "UTF-8");
+			if (expectedError != null) {
+				fail("Expected " + expectedError + " for " + escape(content) + " but was " + actual);
+			}
+			assertEquals(escape(content), expected, new HashMap<Object, Object>(actual));
+		} catch (IllegalArgumentException e) {
+			assertTrue("Unexpected " + e + " for " + escape(content), expectedError != null);
+		}
+	}
+
+	private static String escape(String content) {
+		return "\"" + content.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t").replace("\f", "\\f") + "\"";
+	}
+
+}
@@ -0,0 +1,102 @@
+package com.dangdang.config.service.file.contenttype;
+
+import com.dangdang.config.service.exception.InvalidPathException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * 解析结果与{@link Properties#loadFromXML(java.io.InputStream)}对比
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public class XmlContentTypeTest {
+
+	private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<!DOCTYPE properties SYSTEM \"http://java.sun.com/dtd/properties.dtd\">\n";
+
+	private final XmlContentType contentType = new XmlContentType();
+
+	@Test
+	public void entries() throws Exception {
+		assertSameAsProperties(HEADER + "<properties>\n<comment>comment</comment>\n<entry key=\"a\">1</entry>\n<entry key=\"b.c\">2</entry>\n</properties>");
+		assertSameAsProperties(HEADER + "<properties><entry key=\"a\">1</entry><entry key=\"a\">2</entry></properties>");
+		assertSameAsProperties(HEADER + "<properties/>");
+	}
+
+	@Test
+	public void emptyKeysAndValues() throws Exception {
+		assertSameAsProperties(HEADER + "<properties><entry key=\"\">1</entry><entry key=\"a\"/><entry key=\"b\"></entry></properties>");
+	}
+
+	@Test
+	public void whitespaceIsPreserved() throws Exception {
+		assertSameAsProperties(HEADER + "<properties><entry key=\" a \">  1\n\t2  </entry></properties>");
+	}
+
+	@Test
+	public void escapes() throws Exception {
+		assertSameAsProperties(HEADER + "<properties><entry key=\"&lt;a&gt;\">&amp;&quot;&apos;&#x4e2d;&#25991;</entry>"
+				+ "<entry key=\"cdata\"><![CDATA[<b>&amp;</b>]]></entry>"
+				+ "<entry key=\"mixed\">a<!-- comment -->b<![CDATA[c]]>d</entry></properties>");
+	}
+
+	@Test
+	public void unicode() throws Exception {
+		assertSameAsProperties(HEADER + "<properties><entry key=\"中文\">值</entry><entry key=\"é\">ü</entry></properties>");
+	}
+
+	@Test
+	public void declaredEncoding() throws Exception {
+		final String content = "<?xml version=\"1.0\" encoding=\"UTF-16\"?>\n"
+				+ "<!DOCTYPE properties SYSTEM \"http://java.sun.com/dtd/properties.dtd\">\n"
+				+ "<properties><entry key=\"中文\">值</entry></properties>";
+		assertSameAsProperties(content, StandardCharsets.UTF_16);
+	}
+
+	@Test
+	public void invalidDocuments() throws Exception {
+		assertBothRejected(HEADER + "<properties><entry>1</entry></properties>");
+		assertBothRejected(HEADER + "<properties><comment>a</comment><comment>b</comment></properties>");
+		assertBothRejected(HEADER + "<properties><unknown/></properties>");
+		assertBothRejected(HEADER + "<properties><entry key=\"a\">1</entry>");
+	}
+
+	private void assertSameAsProperties(String content) throws Exception {
+		assertSameAsProperties(content, StandardCharsets.UTF_8);
+	}
+
+	private void assertSameAsProperties(String content, Charset charset) throws Exception {
+		final byte[] data = content.getBytes(charset);
+		final Properties props = new Properties();
+		props.loadFromXML(new ByteArrayInputStream(data));
+		assertEquals(new HashMap<>(props), new HashMap<Object, Object>(contentType.resolve(data, "UTF-8")));
+	}
+
+	private void assertBothRejected(String content) throws Exception {
+		final byte[] data = content.getBytes(StandardCharsets.UTF_8);
+		try {
+			new Properties().loadFromXML(new ByteArrayInputStream(data));
+			fail("Properties accepted " + content);
+		} catch (IOException e) {
+			// expected
+		}
+		try {
+			final Map<String, String> result = contentType.resolve(data, "UTF-8");
+			fail("Accepted " + content + " as " + result);
+		} catch (InvalidPathException e) {
+			// expected
+		}
+	}
+
+}
@@ -0,0 +1,127 @@
+package com.dangdang.config.service.file.contenttype;
+
+import com.dangdang.config.service.exception.InvalidPathException;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public class YamlContentTypeTest {
+
+	private final YamlContentType contentType = new YamlContentType();
+
+	@Test
+	public void nestedMappings() throws Exception {
+		assertEquals(map("a.b.c", "1", "a.d", "x y", "e", "", "f", ""),
+				resolve("a:\n  b:\n    c: 1 # comment\n  d: x y\ne:\nf: ~\n"));
+	}
+
+	@Test
+	public void sequences() throws Exception {
+		assertEquals(map("a[0]", "1", "a[1]", "2", "b[0]", "x", "b[1]", "y"),
+				resolve("a:\n  - 1\n  - 2\nb:\n- x\n- y\n"));
+		assertEquals(map("a[0].name", "x", "a[0].port", "80", "a[1].name", "y", "a[1].tags[0]", "t"),
+				resolve("a:\n  - name: x\n    port: 80\n  - name: y\n    tags:\n      - t\n"));
+		assertEquals(map("[0][0]", "1", "[0][1]", "2", "[1]", ""), resolve("- - 1\n  - 2\n-\n"));
+	}
+
+	@Test
+	public void quotedScalars() throws Exception {
+		assertEquals(map("a", "it's # not a comment", "b", "tab\there \u00e9 \ud83d\ude00", "c d", "1"),
+				resolve("a: 'it''s # not a comment'\nb: \"tab\\there \\u00e9 \\U0001F600\"\n\"c d\": 1\n"));
+	}
+
+	@Test
+	public void surrogatePairs() throws Exception {
+		assertEquals(map("\ud83d\ude00", "\ud83d\ude01"), resolve("\ud83d\ude00: \ud83d\ude01\n"));
+		final StringBuilder value = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			value.append("a\ud83d\ude00");
+		}
+		assertEquals(map("v", value.toString()), resolve("v: " + value));
+	}
+
+	@Test
+	public void flowCollections() throws Exception {
+		assertEquals(map("a[0]", "1", "a[1]", "x y", "b.c", "2", "b.d[0]", "", "e", "", "f", ""),
+				resolve("a: [1, 'x y']\nb: {c: 2, d: [null]}\ne: []\nf: {}\n"));
+	}
+
+	@Test
+	public void blockScalars() throws Exception {
+		assertEquals(map("a", "line1\nline2\n", "b", "folded text\n", "c", "keep\n\n", "d", "strip"),
+				resolve("a: |\n  line1\n  line2\nb: >\n  folded\n  text\nc: |+\n  keep\n\nd: |-\n  strip\n"));
+	}
+
+	@Test
+	public void whitespaceOnlyLinesWithTabs() throws Exception {
+		assertEquals(map("a", "1", "b", "2"), resolve("a: 1\n\t\nb: 2"));
+		assertEquals(map("a", "1", "b", "2"), resolve("a: 1\n  \t \nb: 2\n"));
+		assertEquals(map("a", "line1\n\nline2\n", "b", "2"), resolve("a: |\n  line1\n\t\n  line2\nb: 2\n"));
+	}
+
+	@Test
+	public void multipleDocuments() throws Exception {
+		assertEquals(map("a", "2", "b", "1", "c", "3"), resolve("%YAML 1.2\n---\na: 1\nb: 1\n---\na: 2\n...\nc: 3\n"));
+	}
+
+	@Test
+	public void emptyDocuments() throws Exception {
+		assertEquals(Collections.emptyMap(), resolve(""));
+		assertEquals(Collections.emptyMap(), resolve("\n  \n# only comments\n"));
+		assertEquals(Collections.emptyMap(), resolve("---\n...\n"));
+		assertEquals(map("a", "1"), resolve("\uFEFFa: 1\r\n"));
+	}
+
+	@Test
+	public void unsupportedConstructs() throws Exception {
+		assertRejected("a: &anchor 1\n", "Anchors, aliases and tags are not supported");
+		assertRejected("a: *alias\n", "Anchors, aliases and tags are not supported");
+		assertRejected("a: !!str 1\n", "Anchors, aliases and tags are not supported");
+		assertRejected("a: [1,\n  2]\n", "Multi-line flow collections are not supported");
+		assertRejected("a: \"x\n  y\"\n", "Multi-line quoted scalars are not supported");
+		assertRejected("? a: 1\n", "Complex keys are not supported");
+		assertRejected("a:\n\tb: 1\n", "Tabs are not allowed for indentation");
+	}
+
+	@Test
+	public void malformedDocuments() throws Exception {
+		assertRejected("a: 1\n  b: 2\n", "Bad indentation");
+		assertRejected("- 1\nb: 2\n", "Expected sequence item");
+		assertRejected("a: 1\n- 2\n", "Unexpected sequence item");
+		assertRejected("a\n", "Expected 'key: value'");
+		assertRejected("a: \"\\q\"\n", "Invalid escape");
+		assertRejected("a: 'x' y\n", "Unexpected content after value");
+	}
+
+	private Map<String, String> resolve(String content) throws InvalidPathException {
+		return contentType.resolve(content.getBytes(StandardCharsets.UTF_8), "UTF-8");
+	}
+
+	private void assertRejected(String content, String message) {
+		try {
+			fail("Accepted " + content + " as " + resolve(content));
+		} catch (InvalidPathException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+		}
+	}
+
+	private static Map<String, String> map(String... keyValues) {
+		final Map<String, String> map = new HashMap<>();
+		for (int i = 0; i < keyValues.length; i += 2) {
+			map.put(keyValues[i], keyValues[i + 1]);
+		}
+		return map;
+	}
+
+}
@@ -0,0 +1,150 @@
+package com.dangdang.config.service.stat;
+
+import com.dangdang.config.service.file.FileConfigGroup;
+import com.dangdang.config.service.file.FileConfigProfile;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ */
+public class KeyAccessStatisticsTest {
+
+    @Test
+    public void countsEveryReadWithoutSampling() {
+        final KeyAccessStatistics statistics = new KeyAccessStatistics("group", 1);
+        record(statistics, "a", 3);
+        record(statistics, "b", 1);
+
+        assertEquals(Long.valueOf(3), statistics.snapshot().get("a"));
+        assertEquals(Long.valueOf(1), statistics.snapshot().get("b"));
+        assertEquals(2, statistics.getKeyCount());
+
+        statistics.reset();
+        assertTrue(statistics.snapshot().isEmpty());
+    }
+
+    @Test
+    public void sampledCountIsEstimated() {
+        final KeyAccessStatistics statistics = new KeyAccessStatistics("group", 10);
+        record(statistics, "a", 100000);
+
+        // 估算值是采样次数乘以采样率
+        final long estimated = statistics.snapshot().get("a");
+        assertEquals(0, estimated % 10);
+        assertTrue("estimated: " + estimated, estimated > 90000 && estimated < 110000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sampleRateMustBePositive() {
+        new KeyAccessStatistics("group", 0);
+    }
+
+    @Test
+    public void topKeysOrderedByCount() {
+        final KeyAccessStatistics statistics = new KeyAccessStatistics("group", 1);
+        record(statistics, "a", 1);
+        record(statistics, "b", 3);
+        record(statistics, "c", 2);
+
+        assertEquals(Arrays.asList("b=3", "c=2"), Arrays.asList(statistics.getTopKeys(2)));
+        assertEquals(Arrays.asList("b=3", "c=2", "a=1"), Arrays.asList(statistics.getTopKeys(10)));
+    }
+
+    @Test
+    public void keysReadAtLeastForIncludeList() {
+        final KeyAccessStatistics statistics = new KeyAccessStatistics("group", 1);
+        record(statistics, "c", 5);
+        record(statistics, "a", 2);
+        record(statistics, "b", 1);
+
+        assertEquals(new HashSet<>(Arrays.asList("a", "c")), statistics.keysReadAtLeast(2));
+        // 按key排序, 可以直接作为INCLUDE列表
+        assertEquals("a,c", statistics.getKeysReadAtLeast(2));
+        assertEquals("", statistics.getKeysReadAtLeast(6));
+    }
+
+    @Test
+    public void dumpSortedByCount() throws Exception {
+        final KeyAccessStatistics statistics = new KeyAccessStatistics("group", 1);
+        record(statistics, "a", 1);
+        record(statistics, "b", 2);
+
+        final Path file = Files.createTempFile("config-toolkit", ".properties");
+        try {
+            statistics.dump(file.toString());
+            final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            assertEquals(Arrays.asList("# Key access statistics of config group: group, sample rate: 1/1", "b=2", "a=1"), lines);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void registeredUntilGroupClosed() throws Exception {
+        final Path file = Files.createTempFile("config-toolkit", ".properties");
+        final String location = "file:" + file.toAbsolutePath();
+        final ObjectName objectName = new ObjectName("com.dangdang.config:type=KeyAccessStatistics,name=" + ObjectName.quote(location));
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            Files.write(file, "a=1\nb=2\n".getBytes(StandardCharsets.UTF_8));
+            final FileConfigProfile profile = new FileConfigProfile("UTF-8", "properties");
+            profile.setAccessStatisticsSampleRate(1);
+            final FileConfigGroup group = new FileConfigGroup(profile, location);
+            try {
+                assertTrue(server.isRegistered(objectName));
+                assertEquals("1", group.get("a"));
+                assertEquals("1", group.get("a"));
+                assertNull(group.get("missing"));
+                assertEquals(Collections.singletonMap("a", 2L), group.getAccessStatistics().snapshot());
+                assertEquals(1, server.getAttribute(objectName, "KeyCount"));
+            } finally {
+                group.close();
+            }
+            assertFalse(server.isRegistered(objectName));
+            assertNull(group.getAccessStatistics());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void duplicateRegistrationIgnored() throws Exception {
+        final KeyAccessStatistics first = new KeyAccessStatistics("duplicate", 1);
+        final KeyAccessStatistics second = new KeyAccessStatistics("duplicate", 1);
+        final ObjectName objectName = new ObjectName("com.dangdang.config:type=KeyAccessStatistics,name=" + ObjectName.quote("duplicate"));
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        first.register();
+        try {
+            second.register();
+            // 后注册的不生效, 注销时也不会注销先注册的
+            second.unregister();
+            assertTrue(server.isRegistered(objectName));
+        } finally {
+            first.unregister();
+        }
+        assertFalse(server.isRegistered(objectName));
+    }
+
+    private static void record(KeyAccessStatistics statistics, String key, int times) {
+        for (int i = 0; i < times; i++) {
+            statistics.record(key);
+        }
+    }
+
+}
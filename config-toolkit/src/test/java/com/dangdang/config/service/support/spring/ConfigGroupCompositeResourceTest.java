@@ -0,0 +1,71 @@
+package com.dangdang.config.service.support.spring;
+
+import com.dangdang.config.service.ConfigGroup;
+import com.dangdang.config.service.MemoryConfigGroup;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ *
+ */
+public class ConfigGroupCompositeResourceTest {
+
+    @Test
+    public void earlierGroupWins() throws Exception {
+        final MemoryConfigGroup first = new MemoryConfigGroup(null);
+        first.put("a", "first-a");
+        final MemoryConfigGroup second = new MemoryConfigGroup(null);
+        second.put("a", "second-a");
+        second.put("b", "second-b");
+        final ConfigGroupCompositeResource resource = new ConfigGroupCompositeResource(Arrays.<ConfigGroup> asList(first, second));
+
+        assertEquals("first-a", resource.getProperty("a"));
+        assertEquals("second-b", resource.getProperty("b"));
+
+        first.put("b", "first-b");
+        first.delete("a");
+        assertEquals("second-a", resource.getProperty("a"));
+        assertEquals("first-b", resource.getProperty("b"));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), new HashSet<>(Arrays.asList(resource.getPropertyNames())));
+
+        second.delete("a");
+        assertNull(resource.getProperty("a"));
+        assertEquals(new HashSet<>(Arrays.asList("b")), new HashSet<>(Arrays.asList(resource.getPropertyNames())));
+    }
+
+    @Test
+    public void pendingKeyOfEarlierGroupWins() throws Exception {
+        final MemoryConfigGroup first = new MemoryConfigGroup(null, true);
+        first.pend("a", "first-a");
+        final MemoryConfigGroup second = new MemoryConfigGroup(null);
+        second.put("a", "second-a");
+        final ConfigGroupCompositeResource resource = new ConfigGroupCompositeResource(Arrays.<ConfigGroup> asList(first, second));
+
+        // 靠前的配置组尚未加载的key优先于索引中靠后配置组的值
+        assertEquals("first-a", resource.getProperty("a"));
+        assertEquals("first-a", first.getOwnValue("a"));
+        assertEquals("first-a", resource.getProperty("a"));
+
+        first.delete("a");
+        assertEquals("second-a", resource.getProperty("a"));
+    }
+
+    @Test
+    public void pendingKeyOfInternalGroupWins() throws Exception {
+        final MemoryConfigGroup internal = new MemoryConfigGroup(null, true);
+        internal.pend("a", "internal-a");
+        final MemoryConfigGroup first = new MemoryConfigGroup(internal);
+        final MemoryConfigGroup second = new MemoryConfigGroup(null);
+        second.put("a", "second-a");
+        final ConfigGroupCompositeResource resource = new ConfigGroupCompositeResource(Arrays.<ConfigGroup> asList(first, second));
+
+        assertEquals("internal-a", resource.getProperty("a"));
+    }
+
+}
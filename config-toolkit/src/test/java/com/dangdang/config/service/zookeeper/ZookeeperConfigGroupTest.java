@@ -0,0 +1,197 @@
+package com.dangdang.config.service.zookeeper;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 跟随配置组epoch及延迟加载时的加载
+ *
+ * @author <a href="mailto:wangyuxuan@dangdang.com">Yuxuan Wang</a>
+ */
+public class ZookeeperConfigGroupTest {
+
+    private static final String GROUP = "/root/1.0.0/group";
+
+    private TestingServer server;
+
+    private CuratorFramework client;
+
+    private ZookeeperConfigGroup group;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new TestingServer();
+        client = CuratorFrameworkFactory.newClient(server.getConnectString(), new RetryOneTime(1000));
+        client.start();
+        client.blockUntilConnected();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (group != null) {
+            group.close();
+        }
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void epochReloadsListedKeys() throws Exception {
+        client.create().creatingParentsIfNeeded().forPath(GROUP, bytes("0\n"));
+        client.create().forPath(GROUP + "/a", bytes("1"));
+        client.create().forPath(GROUP + "/b", bytes("1"));
+        group = createGroup();
+        assertEquals("1", group.get("a"));
+
+        client.inTransaction().setData().forPath(GROUP + "/a", bytes("2")).and()
+                .setData().forPath(GROUP + "/b", bytes("2")).and()
+                .setData().forPath(GROUP, bytes("1\na")).and().commit();
+        awaitValue("a", "2");
+        // 没有写入epoch的修改不会通知到客户端
+        assertEquals("1", group.get("b"));
+    }
+
+    @Test
+    public void groupDeletedAndRecreated() throws Exception {
+        client.create().creatingParentsIfNeeded().forPath(GROUP, bytes("0\n"));
+        client.create().forPath(GROUP + "/a", bytes("1"));
+        group = createGroup();
+        assertEquals("1", group.get("a"));
+
+        client.delete().deletingChildrenIfNeeded().forPath(GROUP);
+        awaitValue("a", null);
+
+        client.inTransaction().create().forPath(GROUP, bytes("0\n")).and()
+                .create().forPath(GROUP + "/a", bytes("2")).and().commit();
+        awaitValue("a", "2");
+
+        // 重新创建后继续跟随epoch
+        client.inTransaction().setData().forPath(GROUP + "/a", bytes("3")).and()
+                .setData().forPath(GROUP, bytes("1\na")).and().commit();
+        awaitValue("a", "3");
+    }
+
+    @Test
+    public void groupCreatedAfterStart() throws Exception {
+        client.create().creatingParentsIfNeeded().forPath("/root/1.0.0");
+        group = createGroup();
+        assertTrue(group.isEmpty());
+
+        client.inTransaction().create().forPath(GROUP, bytes("0\n")).and()
+                .create().forPath(GROUP + "/a", bytes("1")).and().commit();
+        awaitValue("a", "1");
+    }
+
+    @Test
+    public void lazyGetLoadsAndWatchesKey() throws Exception {
+        client.create().creatingParentsIfNeeded().forPath(GROUP + "/a", bytes("1"));
+        client.create().forPath(GROUP + "/b", bytes("1"));
+        group = createLazyGroup(false, null);
+        assertNull(group.getOwnValue("a"));
+        assertTrue(group.isPending("a"));
+
+        assertEquals("1", group.get("a"));
+        assertFalse(group.isPending("a"));
+        assertTrue(group.isPending("b"));
+
+        // 首次访问时注册了watcher, 之后的修改自动更新
+        client.setData().forPath(GROUP + "/a", bytes("2"));
+        awaitValue("a", "2");
+        assertNull(group.getOwnValue("b"));
+    }
+
+    @Test
+    public void lazyWarmUpKeysPreloaded() throws Exception {
+        client.create().creatingParentsIfNeeded().forPath(GROUP + "/a", bytes("1"));
+        client.create().forPath(GROUP + "/b", bytes("1"));
+        group = createLazyGroup(false, Collections.singleton("a"));
+
+        assertEquals("1", group.getOwnValue("a"));
+        assertFalse(group.isPending("a"));
+        assertNull(group.getOwnValue("b"));
+        assertTrue(group.isPending("b"));
+    }
+
+    @Test
+    public void lazyDeletedPendingKey() throws Exception {
+        client.create().creatingParentsIfNeeded().forPath(GROUP, bytes("0\n"));
+        client.create().forPath(GROUP + "/a", bytes("1"));
+        group = createLazyGroup(true, null);
+        assertTrue(group.isPending("a"));
+
+        // 没有写入epoch的删除不会通知到客户端, 首次访问时才发现节点已不存在
+        client.delete().forPath(GROUP + "/a");
+        assertNull(group.get("a"));
+        assertFalse(group.isPending("a"));
+    }
+
+    @Test
+    public void lazyEpochKeepsUnloadedKeysPending() throws Exception {
+        client.create().creatingParentsIfNeeded().forPath(GROUP, bytes("0\n"));
+        client.create().forPath(GROUP + "/a", bytes("1"));
+        client.create().forPath(GROUP + "/b", bytes("1"));
+        group = createLazyGroup(true, null);
+        assertEquals("1", group.get("a"));
+
+        client.inTransaction().setData().forPath(GROUP + "/a", bytes("2")).and()
+                .setData().forPath(GROUP + "/b", bytes("2")).and()
+                .create().forPath(GROUP + "/c", bytes("2")).and()
+                .setData().forPath(GROUP, bytes("1\na\nb\nc")).and().commit();
+        // 已加载的key重新加载, 未加载的key只记录存在
+        awaitValue("a", "2");
+        assertNull(group.getOwnValue("b"));
+        assertTrue(group.isPending("b"));
+        assertTrue(group.isPending("c"));
+        assertEquals("2", group.get("b"));
+        assertEquals("2", group.get("c"));
+    }
+
+    private ZookeeperConfigGroup createGroup() {
+        final ZookeeperConfigProfile profile = new ZookeeperConfigProfile(server.getConnectString(), "/root", "1.0.0");
+        profile.setFollowGroupEpoch(true);
+        return new ZookeeperConfigGroup(profile, "group");
+    }
+
+    private ZookeeperConfigGroup createLazyGroup(boolean followGroupEpoch, Set<String> warmUpKeys) {
+        final ZookeeperConfigProfile profile = new ZookeeperConfigProfile(server.getConnectString(), "/root", "1.0.0");
+        profile.setFollowGroupEpoch(followGroupEpoch);
+        profile.setLazyLoading(true);
+        profile.setWarmUpKeys(warmUpKeys);
+        return new ZookeeperConfigGroup(profile, "group");
+    }
+
+    private void awaitValue(String key, String value) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (!equals(value, group.get(key)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        if (value == null) {
+            assertNull(group.get(key));
+        } else {
+            assertEquals(value, group.get(key));
+        }
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+}